@@ -0,0 +1,65 @@
+package org.ketchup.bookie.benchmarks;
+
+import org.ketchup.bookie.common.pojo.Booking;
+import org.ketchup.bookie.server.repository.journal.BookingJournal;
+import org.ketchup.bookie.server.repository.journal.FsyncPolicy;
+import org.ketchup.bookie.server.repository.journal.JournalEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of durable appends to a {@link BookingJournal}, each thread appending an event then waiting until it is
+ * durable, as the request workers do. With the always fsync policy the throughput should grow with the number of
+ * threads (-t) while the fsync rate stays roughly the same, since all the events appended during an fsync share the
+ * next one (group commit).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class BookingJournalBenchmark {
+
+    @Param({"always", "interval", "none"})
+    private String fsync;
+
+    private Path directory;
+    private BookingJournal journal;
+
+    @State(Scope.Thread)
+    public static class Appender {
+        private int nextBookingId;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        journal = new BookingJournal(directory.resolve("bookings.journal"), FsyncPolicy.fromValue(fsync), 100, 0);
+    }
+
+    @Benchmark
+    public long appendDurable(Appender appender) throws IOException {
+        Booking booking = new Booking(++appender.nextBookingId, (int) Thread.currentThread().getId(), 0, 60);
+        long seq = journal.append(new JournalEvent(JournalEvent.Type.ADD, booking));
+        journal.awaitDurable(seq);
+        return seq;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,158 @@
+package org.ketchup.bookie.benchmarks;
+
+import org.ketchup.bookie.common.enums.FacilityType;
+import org.ketchup.bookie.common.pojo.Booking;
+import org.ketchup.bookie.common.pojo.Facility;
+import org.ketchup.bookie.server.config.Config;
+import org.ketchup.bookie.server.config.Constants;
+import org.ketchup.bookie.server.repository.BookingRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Startup time of a {@link BookingRepository} with a long booking history, replaying the whole journal or loading a
+ * snapshot with an empty journal tail.
+ * <p>
+ * The history is made of book / change / remove cycles spread over the facilities, so the journal grows with the number
+ * of changes while the number of bookings stays bounded.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookingRecoveryBenchmark {
+
+    @Param({"1000"})
+    private int facilityCount;
+
+    /**
+     * Number of changes in the history
+     */
+    @Param({"1000000"})
+    private int changeCount;
+
+    /**
+     * journal: replay the whole journal, snapshot: load a snapshot taken after the last change
+     */
+    @Param({"journal", "snapshot"})
+    private String recovery;
+
+    private Path directory;
+    private Config config;
+    private BookingRepository repository;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("recovery");
+        config = new BenchmarkConfig(directory);
+        BookingRepository history = start();
+        List<Facility> facilities = new ArrayList<>(facilityCount);
+        for (int facilityId = 1; facilityId <= facilityCount; facilityId++) {
+            facilities.add(new Facility(facilityId, "Facility " + facilityId, FacilityType.MEETING_ROOM));
+        }
+        history.addAllFacilities(facilities);
+        writeHistory(history);
+        if (recovery.equals("snapshot")) {
+            history.takeSnapshot();
+        }
+        history.destroy();
+    }
+
+    @Benchmark
+    public BookingRepository recover() throws Exception {
+        repository = start();
+        return repository;
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() throws Exception {
+        repository.destroy();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private BookingRepository start() throws Exception {
+        BookingRepository bookingRepository = new BookingRepository(config);
+        bookingRepository.afterPropertiesSet();
+        return bookingRepository;
+    }
+
+    private void writeHistory(BookingRepository history) throws Exception {
+        SplittableRandom random = new SplittableRandom(42);
+        int bookingId = 1;
+        int changes = 0;
+        while (changes < changeCount) {
+            int facilityId = random.nextInt(1, facilityCount + 1);
+            int start = random.nextInt(0, Constants.MINUTES_IN_WEEK - 180);
+            Booking booking = new Booking(bookingId++, facilityId, start, start + 60);
+            if (!history.addBooking(booking)) continue;
+            changes++;
+            if (history.changeBooking(booking.getBookingId(), 30)) changes++;
+            // Keep about one booking in ten
+            if (random.nextInt(10) != 0 && history.removeBooking(booking.getBookingId())) changes++;
+        }
+    }
+
+    /**
+     * Journal without fsync and snapshots taken explicitly, in a temporary directory.
+     */
+    private static class BenchmarkConfig extends Config {
+        private final Path directory;
+
+        private BenchmarkConfig(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public String getBookingTimeline() {
+            return "interval";
+        }
+
+        @Override
+        public boolean isBookingJournalEnabled() {
+            return true;
+        }
+
+        @Override
+        public String getBookingJournalPath() {
+            return directory.resolve("bookings.journal").toString();
+        }
+
+        @Override
+        public String getBookingJournalFsync() {
+            return "none";
+        }
+
+        @Override
+        public long getBookingJournalFsyncIntervalMs() {
+            return 100;
+        }
+
+        @Override
+        public String getBookingSnapshotPath() {
+            return directory.resolve("bookings.snapshot").toString();
+        }
+
+        @Override
+        public long getBookingSnapshotIntervalS() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.ketchup.bookie.benchmarks;
+
+import org.ketchup.bookie.common.enums.FacilityType;
+import org.ketchup.bookie.common.exception.UnavailableFacilityException;
+import org.ketchup.bookie.common.pojo.Booking;
+import org.ketchup.bookie.common.pojo.Facility;
+import org.ketchup.bookie.server.config.Constants;
+import org.ketchup.bookie.server.repository.BookingRepository;
+import org.ketchup.bookie.server.repository.timeline.FacilityTimelineType;
+import org.ketchup.bookie.server.repository.timeline.MappedTimelineStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded cost of the {@link BookingRepository} operations, on facilities already holding about half a week of
+ * bookings. See {@link BookingRepositoryContentionBenchmark} for multithreaded throughput.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BookingRepositoryBenchmark {
+
+    @Param({"1", "100"})
+    private int facilityCount;
+
+    /**
+     * Length of each booking, in minutes
+     */
+    @Param({"30", "240"})
+    private int bookingLength;
+
+    @Param({"interval", "bitset", "mapped"})
+    private String timeline;
+
+    private BookingRepository repository;
+    // Only with the mapped timeline
+    private Path storePath;
+    private MappedTimelineStore timelineStore;
+    private SplittableRandom random;
+    private int nextBookingId;
+    // Booking moved back and forth by changeBooking()
+    private int movingBookingId;
+    private int movingOffset;
+
+    @Setup(Level.Trial)
+    public void setup() throws UnavailableFacilityException, IOException {
+        if (FacilityTimelineType.fromValue(timeline) == FacilityTimelineType.MAPPED) {
+            storePath = Files.createTempFile("timelines", ".dat");
+            timelineStore = new MappedTimelineStore(storePath, Constants.MINUTES_IN_WEEK);
+            repository = new BookingRepository(timelineStore);
+        } else {
+            repository = new BookingRepository(FacilityTimelineType.fromValue(timeline));
+        }
+        random = new SplittableRandom(42);
+        for (int facilityId = 0; facilityId < facilityCount; facilityId++) {
+            repository.addFacility(new Facility(facilityId, "Facility " + facilityId, FacilityType.MEETING_ROOM));
+            // Every other slot of the week is booked
+            for (int start = 0; start + bookingLength <= Constants.MINUTES_IN_WEEK; start += 2 * bookingLength) {
+                repository.addBooking(new Booking(++nextBookingId, facilityId, start, start + bookingLength));
+            }
+        }
+        // Keep the free slot after the first booking of facility 0 for changeBooking()
+        movingBookingId = 1;
+        movingOffset = bookingLength;
+    }
+
+    @Benchmark
+    public boolean checkAvailability() throws UnavailableFacilityException {
+        int start = random.nextInt(Constants.MINUTES_IN_WEEK - bookingLength);
+        return repository.checkAvailability(random.nextInt(facilityCount), start, start + bookingLength);
+    }
+
+    /**
+     * Book a free slot, then release it so that the state of the repository stays the same across invocations.
+     */
+    @Benchmark
+    public boolean addAndRemoveBooking() throws UnavailableFacilityException {
+        int slots = Constants.MINUTES_IN_WEEK / (2 * bookingLength);
+        int start = random.nextInt(slots) * 2 * bookingLength + bookingLength;
+        int bookingId = ++nextBookingId;
+        boolean added = repository.addBooking(new Booking(bookingId, random.nextInt(facilityCount), start, start + bookingLength));
+        repository.removeBooking(bookingId);
+        return added;
+    }
+
+    @Benchmark
+    public boolean changeBooking() throws UnavailableFacilityException {
+        boolean changed = repository.changeBooking(movingBookingId, movingOffset);
+        movingOffset = -movingOffset;
+        return changed;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (timelineStore != null) {
+            timelineStore.close();
+            Files.delete(storePath);
+        }
+    }
+}
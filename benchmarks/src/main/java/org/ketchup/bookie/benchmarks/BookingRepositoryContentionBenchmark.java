@@ -0,0 +1,78 @@
+package org.ketchup.bookie.benchmarks;
+
+import org.ketchup.bookie.common.enums.FacilityType;
+import org.ketchup.bookie.common.exception.UnavailableFacilityException;
+import org.ketchup.bookie.common.pojo.Booking;
+import org.ketchup.bookie.common.pojo.Facility;
+import org.ketchup.bookie.server.config.Constants;
+import org.ketchup.bookie.server.repository.BookingRepository;
+import org.ketchup.bookie.server.repository.timeline.FacilityTimelineType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multithreaded throughput of {@link BookingRepository}, with each thread working on its own facility (should scale
+ * linearly up to the number of cores, since facilities never share a lock) or all threads working on the same facility
+ * (serialized by the facility's lock). Compare thread counts with -t.
+ * <p>
+ * Each operation is a book / check / change / extend / remove cycle on a short booking.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class BookingRepositoryContentionBenchmark {
+
+    // Facilities registered, enough for one per thread
+    private static final int MAX_THREADS = 256;
+
+    @Param({"distinct", "shared"})
+    private String facilities;
+
+    @Param({"interval", "bitset"})
+    private String timeline;
+
+    private BookingRepository repository;
+    private final AtomicInteger nextBookingId = new AtomicInteger();
+    private final AtomicInteger nextThreadIndex = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Worker {
+        private int facilityId;
+        private SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void setup(BookingRepositoryContentionBenchmark benchmark) {
+            int threadIndex = benchmark.nextThreadIndex.getAndIncrement();
+            facilityId = benchmark.facilities.equals("distinct") ? threadIndex % MAX_THREADS : 0;
+            random = new SplittableRandom(threadIndex);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        repository = new BookingRepository(FacilityTimelineType.fromValue(timeline));
+        for (int facilityId = 0; facilityId < MAX_THREADS; facilityId++) {
+            repository.addFacility(new Facility(facilityId, "Facility " + facilityId, FacilityType.MEETING_ROOM));
+        }
+    }
+
+    @Benchmark
+    public boolean bookingCycle(Worker worker) throws UnavailableFacilityException {
+        int bookingId = nextBookingId.incrementAndGet();
+        int start = worker.random.nextInt(Constants.MINUTES_IN_WEEK - 180);
+        if (!repository.addBooking(new Booking(bookingId, worker.facilityId, start, start + 60))) {
+            return false;
+        }
+        repository.checkAvailability(worker.facilityId, start, start + 120);
+        repository.changeBooking(bookingId, 30);
+        repository.extendBooking(bookingId, 30);
+        return repository.removeBooking(bookingId);
+    }
+}
@@ -0,0 +1,76 @@
+package org.ketchup.bookie.benchmarks;
+
+import org.ketchup.bookie.common.enums.FacilityType;
+import org.ketchup.bookie.common.pojo.Facility;
+import org.ketchup.bookie.server.repository.BookingRepository;
+import org.ketchup.bookie.server.repository.timeline.FacilityTimelineType;
+import org.ketchup.bookie.server.util.CsvUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time taken to load a large facility catalog the way FacilityRepository does: rows are streamed from the CSV file in
+ * parallel chunks into the facility map and registered with a {@link BookingRepository}, which allocates no timeline
+ * until a facility is booked. Run with -prof gc for the memory allocated.
+ * <p>
+ * Some names contain commas, quotes or line breaks, so that chunks must end at row boundaries.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class FacilityCsvLoadBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int facilityCount;
+
+    @Param({"interval", "bitset"})
+    private String timeline;
+
+    private Path csvPath;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        csvPath = Files.createTempFile("facilities", ".csv");
+        List<Facility> facilities = new ArrayList<>(facilityCount);
+        for (int id = 1; id <= facilityCount; id++) {
+            String name = switch (id % 100) {
+                case 0 -> "Room, level " + id % 7;
+                case 1 -> "The \"big\" room " + id;
+                case 2 -> "Two-line\nroom " + id;
+                default -> "Room " + id;
+            };
+            facilities.add(new Facility(id, name, FacilityType.fromValue(id % 3)));
+        }
+        CsvUtils.writeFacilitiesToCsv(csvPath, facilities);
+    }
+
+    @Benchmark
+    public Map<Integer, Facility> load() throws IOException {
+        Map<Integer, Facility> facilities = new ConcurrentHashMap<>();
+        BookingRepository bookingRepository = new BookingRepository(FacilityTimelineType.fromValue(timeline));
+        long loaded = CsvUtils.readFacilitiesFromCsv(csvPath, facility -> {
+            facilities.put(facility.getId(), facility);
+            bookingRepository.addFacility(facility);
+        });
+        if (loaded != facilityCount || facilities.size() != facilityCount) {
+            throw new IllegalStateException("Expected " + facilityCount + " facilities, loaded " + loaded);
+        }
+        return facilities;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(csvPath);
+    }
+}
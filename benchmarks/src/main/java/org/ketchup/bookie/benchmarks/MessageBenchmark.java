@@ -0,0 +1,74 @@
+package org.ketchup.bookie.benchmarks;
+
+import org.ketchup.bookie.common.enums.FacilityType;
+import org.ketchup.bookie.common.exception.SerializationException;
+import org.ketchup.bookie.common.pojo.Facility;
+import org.ketchup.bookie.common.util.SerializeUtils;
+import org.openjdk.jmh.annotations.*;
+import org.tomato.bookie.distributedSystem.message.Request;
+import org.tomato.bookie.distributedSystem.message.Response;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trips (serialize then deserialize) of {@link Request} and {@link Response}, the way a datagram goes through
+ * the client and the server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageBenchmark {
+
+    /**
+     * Number of facilities in the LIST_FACILITIES response
+     */
+    @Param({"10", "1000"})
+    private int facilityCount;
+
+    private Request bookRequest;
+    private Response bookResponse;
+    private Response listResponse;
+
+    @Setup
+    public void setup() throws SerializationException {
+        bookRequest = new Request(Request.Operation.BOOK_FACILITY, Map.of(
+                "facilityId", SerializeUtils.serializeInt(3),
+                "bookingStartTime", SerializeUtils.serializeInt(600),
+                "bookingEndTime", SerializeUtils.serializeInt(720)
+        ));
+        bookResponse = Response.success(bookRequest.getRequestId(), Map.of("bookingId", SerializeUtils.serializeInt(1_234_567)));
+
+        Map<String, byte[]> facilities = new HashMap<>(facilityCount);
+        for (int i = 0; i < facilityCount; i++) {
+            facilities.put("facility-" + i, new Facility(i, "Seminar Room " + i, FacilityType.MEETING_ROOM).toBytes());
+        }
+        listResponse = Response.success(UUID.randomUUID(), facilities);
+    }
+
+    @Benchmark
+    public Request bookRequestRoundTrip() throws SerializationException {
+        Request deserialized = new Request();
+        deserialized.fromBytes(bookRequest.toBytes());
+        return deserialized;
+    }
+
+    @Benchmark
+    public Response bookResponseRoundTrip() throws SerializationException {
+        Response deserialized = new Response();
+        deserialized.fromBytes(bookResponse.toBytes());
+        return deserialized;
+    }
+
+    @Benchmark
+    public Response listFacilitiesResponseRoundTrip() throws SerializationException {
+        Response deserialized = new Response();
+        deserialized.fromBytes(listResponse.toBytes());
+        return deserialized;
+    }
+}
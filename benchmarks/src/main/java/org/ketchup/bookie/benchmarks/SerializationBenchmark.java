@@ -0,0 +1,100 @@
+package org.ketchup.bookie.benchmarks;
+
+import org.ketchup.bookie.common.enums.FacilityType;
+import org.ketchup.bookie.common.enums.SerializableDataType;
+import org.ketchup.bookie.common.exception.SerializationException;
+import org.ketchup.bookie.common.pojo.Availability;
+import org.ketchup.bookie.common.pojo.Facility;
+import org.ketchup.bookie.common.util.SerializeUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of the primitives in {@link SerializeUtils}, of {@link Availability} and of the facility list
+ * returned by LIST_FACILITIES.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    @Param({"10", "1000"})
+    private int facilityCount;
+
+    private byte[] serializedInt;
+    private byte[] serializedString;
+    private Availability availability;
+    private byte[] serializedAvailability;
+    private Map<String, byte[]> facilities;
+    private byte[] serializedFacilities;
+
+    @Setup
+    public void setup() throws SerializationException {
+        serializedInt = SerializeUtils.serializeInt(1_000_000);
+        serializedString = SerializeUtils.serializeString("Lecture Theatre 1");
+
+        // About one third of the week booked, in bookings of up to 2 hours
+        Random random = new Random(42);
+        availability = new Availability();
+        availability.setFacilityId(1);
+        for (int minute = 0; minute < 7 * 24 * 60; minute += random.nextInt(60, 360)) {
+            availability.setBooked(minute, Math.min(minute + random.nextInt(30, 120), 7 * 24 * 60), true);
+        }
+        serializedAvailability = availability.toBytes();
+
+        facilities = new HashMap<>(facilityCount);
+        for (int i = 0; i < facilityCount; i++) {
+            facilities.put("facility-" + i, new Facility(i, "Seminar Room " + i, FacilityType.MEETING_ROOM).toBytes());
+        }
+        serializedFacilities = SerializeUtils.serializeMap(facilities, SerializableDataType.BYTES);
+    }
+
+    @Benchmark
+    public byte[] serializeInt() throws SerializationException {
+        return SerializeUtils.serializeInt(1_000_000);
+    }
+
+    @Benchmark
+    public int deserializeInt() throws SerializationException {
+        return SerializeUtils.deserializeInt(serializedInt);
+    }
+
+    @Benchmark
+    public byte[] serializeString() throws SerializationException {
+        return SerializeUtils.serializeString("Lecture Theatre 1");
+    }
+
+    @Benchmark
+    public String deserializeString() throws SerializationException {
+        return SerializeUtils.deserializeString(serializedString);
+    }
+
+    @Benchmark
+    public byte[] availabilityToBytes() throws SerializationException {
+        return availability.toBytes();
+    }
+
+    @Benchmark
+    public Availability availabilityFromBytes() throws SerializationException {
+        Availability deserialized = new Availability();
+        deserialized.fromBytes(serializedAvailability);
+        return deserialized;
+    }
+
+    @Benchmark
+    public byte[] encodeFacilityList() throws SerializationException {
+        return SerializeUtils.serializeMap(facilities, SerializableDataType.BYTES);
+    }
+
+    @Benchmark
+    public Map<String, Object> decodeFacilityList() throws SerializationException {
+        return SerializeUtils.deserializeMap(serializedFacilities, SerializableDataType.BYTES);
+    }
+}
@@ -0,0 +1,129 @@
+package org.ketchup.bookie.client.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.tomato.bookie.distributedSystem.message.Request;
+
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Drives a server with many concurrent closed-loop {@link VirtualClient}s and reports the throughput and the latency
+ * percentiles of each operation.
+ * <pre>
+ * java -cp client-1.0-SNAPSHOT-jar-with-dependencies.jar org.ketchup.bookie.client.loadtest.LoadGenerator \
+ *     127.0.0.1 55555 --clients 32 --duration 30 --mix book=30,query=60,list=10 --record requests.log
+ * java -cp client-1.0-SNAPSHOT-jar-with-dependencies.jar org.ketchup.bookie.client.loadtest.LoadGenerator \
+ *     127.0.0.1 55555 --clients 32 --replay requests.log
+ * </pre>
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config;
+        try {
+            config = parseArgs(args);
+        } catch (RuntimeException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Usage: java LoadGenerator <serverIP> <serverPort> [--clients n] [--duration seconds] " +
+                    "[--warmup seconds] [--timeout ms] [--facilities n] [--mix book=30,change=10,extend=10,query=40,list=5,monitor=5] " +
+                    "[--record file] [--replay file]");
+            System.exit(1);
+            return;
+        }
+        run(config);
+    }
+
+    static LoadTestConfig parseArgs(String[] args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Missing server address");
+        }
+        LoadTestConfig config = new LoadTestConfig();
+        config.setServerIP(args[0]);
+        config.setServerPort(Integer.parseInt(args[1]));
+        for (int i = 2; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--clients" -> config.setClients(Integer.parseInt(value));
+                case "--duration" -> config.setDurationSeconds(Integer.parseInt(value));
+                case "--warmup" -> config.setWarmupSeconds(Integer.parseInt(value));
+                case "--timeout" -> config.setTimeoutMs(Integer.parseInt(value));
+                case "--facilities" -> config.setFacilityCount(Integer.parseInt(value));
+                case "--mix" -> config.setMix(OperationMix.parse(value));
+                case "--record" -> config.setRecordPath(Path.of(value));
+                case "--replay" -> config.setReplayPath(Path.of(value));
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        return config;
+    }
+
+    public static void run(LoadTestConfig config) throws Exception {
+        InetAddress serverAddress = InetAddress.getByName(config.getServerIP());
+        RequestLog replayLog = Objects.nonNull(config.getReplayPath()) ? RequestLog.forReplay(config.getReplayPath()) : null;
+        // A replay is measured from the start and runs until the log is exhausted (or the duration is over)
+        int warmupSeconds = Objects.nonNull(replayLog) ? 0 : config.getWarmupSeconds();
+        System.out.println("Load test against " + config.getServerIP() + ":" + config.getServerPort() + " with " +
+                config.getClients() + " clients, " + (Objects.nonNull(replayLog) ?
+                "replaying " + replayLog.size() + " requests from " + config.getReplayPath() :
+                "mix " + config.getMix() + " for " + warmupSeconds + "s warm-up + " + config.getDurationSeconds() + "s"));
+
+        long startedAt = System.nanoTime();
+        long measureFrom = startedAt + warmupSeconds * 1_000_000_000L;
+        long endAt = measureFrom + config.getDurationSeconds() * 1_000_000_000L;
+        VirtualClient.Stats total = new VirtualClient.Stats();
+        ExecutorService executor = Executors.newFixedThreadPool(config.getClients());
+        try (RequestLog recordLog = Objects.nonNull(config.getRecordPath()) ? RequestLog.forRecording(config.getRecordPath()) : null) {
+            List<Future<VirtualClient.Stats>> futures = new ArrayList<>(config.getClients());
+            for (int i = 0; i < config.getClients(); i++) {
+                futures.add(executor.submit(new VirtualClient(config, serverAddress, measureFrom, endAt, recordLog, replayLog)));
+            }
+            for (Future<VirtualClient.Stats> future : futures) {
+                total.add(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        double measuredSeconds = (Math.min(System.nanoTime(), endAt) - measureFrom) / 1e9;
+        printReport(total, measuredSeconds);
+    }
+
+    private static void printReport(VirtualClient.Stats stats, double measuredSeconds) {
+        System.out.printf("%n%-20s %10s %10s %8s %8s %10s %10s %10s %10s%n",
+                "operation", "count", "req/s", "errors", "timeouts", "p50 (us)", "p99 (us)", "p999 (us)", "max (us)");
+        Histogram all = new Histogram(3);
+        long totalErrors = 0;
+        long totalTimeouts = 0;
+        for (Request.Operation operation : Request.Operation.values()) {
+            Histogram histogram = stats.getLatencies().get(operation);
+            long[] failures = stats.getErrorsAndTimeouts().getOrDefault(operation, new long[2]);
+            if (Objects.isNull(histogram) && failures[1] == 0) continue;
+            long count = Objects.nonNull(histogram) ? histogram.getTotalCount() : 0;
+            totalErrors += failures[0];
+            totalTimeouts += failures[1];
+            if (Objects.nonNull(histogram)) {
+                all.add(histogram);
+            }
+            printRow(operation.toString(), histogram, count, failures, measuredSeconds);
+        }
+        printRow("TOTAL", all, all.getTotalCount(), new long[] {totalErrors, totalTimeouts}, measuredSeconds);
+    }
+
+    private static void printRow(String name, Histogram histogram, long count, long[] failures, double measuredSeconds) {
+        boolean hasLatencies = Objects.nonNull(histogram) && histogram.getTotalCount() > 0;
+        System.out.printf("%-20s %10d %10.0f %8d %8d %10d %10d %10d %10d%n", name, count, count / measuredSeconds,
+                failures[0], failures[1],
+                hasLatencies ? histogram.getValueAtPercentile(50) : 0,
+                hasLatencies ? histogram.getValueAtPercentile(99) : 0,
+                hasLatencies ? histogram.getValueAtPercentile(99.9) : 0,
+                hasLatencies ? histogram.getMaxValue() : 0);
+    }
+}
@@ -0,0 +1,24 @@
+package org.ketchup.bookie.client.loadtest;
+
+import lombok.Data;
+
+import java.nio.file.Path;
+
+@Data
+public class LoadTestConfig {
+    private String serverIP = "127.0.0.1";
+    private int serverPort = 55555;
+    // Number of virtual clients, each with its own socket and at most one request in flight
+    private int clients = 16;
+    private int durationSeconds = 30;
+    // Requests sent during the warm-up are not part of the report
+    private int warmupSeconds = 5;
+    private int timeoutMs = 1000;
+    // Facilities are picked uniformly among 1 .. facilityCount (the IDs of data/facilities.csv)
+    private int facilityCount = 9;
+    private OperationMix mix = OperationMix.parse("book=30,change=10,extend=10,query=40,list=5,monitor=5");
+    // Write every request sent to this file, to replay it later
+    private Path recordPath;
+    // Send the requests of this file instead of generating them
+    private Path replayPath;
+}
@@ -0,0 +1,85 @@
+package org.ketchup.bookie.client.loadtest;
+
+import org.tomato.bookie.distributedSystem.message.Request;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Relative weights of the operations sent by the virtual clients, e.g. "book=30,query=60,list=10".
+ */
+public class OperationMix {
+    private final Request.Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    private OperationMix(Map<Request.Operation, Integer> weights) {
+        operations = new Request.Operation[weights.size()];
+        cumulativeWeights = new int[weights.size()];
+        int index = 0;
+        int total = 0;
+        for (Map.Entry<Request.Operation, Integer> entry : weights.entrySet()) {
+            total += entry.getValue();
+            operations[index] = entry.getKey();
+            cumulativeWeights[index] = total;
+            index++;
+        }
+    }
+
+    /**
+     * @param mix comma-separated operation=weight pairs. Operations: book, change, extend, query, list, monitor
+     * @return
+     */
+    public static OperationMix parse(String mix) {
+        Map<Request.Operation, Integer> weights = new EnumMap<>(Request.Operation.class);
+        for (String pair : mix.split(",")) {
+            String[] operationAndWeight = pair.trim().split("=");
+            if (operationAndWeight.length != 2) {
+                throw new IllegalArgumentException("[parse] Expected operation=weight, got " + pair);
+            }
+            int weight = Integer.parseInt(operationAndWeight[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("[parse] Weight of " + operationAndWeight[0] + " must not be negative");
+            }
+            if (weight > 0) {
+                weights.put(operationFromName(operationAndWeight[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("[parse] Operation mix has no operation with a positive weight");
+        }
+        return new OperationMix(weights);
+    }
+
+    private static Request.Operation operationFromName(String name) {
+        return switch (name.toLowerCase()) {
+            case "book" -> Request.Operation.BOOK_FACILITY;
+            case "change" -> Request.Operation.CHANGE_BOOKING;
+            case "extend" -> Request.Operation.EXTEND_BOOKING;
+            case "query" -> Request.Operation.QUERY_AVAILABILITY;
+            case "list" -> Request.Operation.LIST_FACILITIES;
+            case "monitor" -> Request.Operation.MONITOR_FACILITY;
+            default -> throw new IllegalArgumentException("[operationFromName] Unknown operation " + name);
+        };
+    }
+
+    public Request.Operation next() {
+        int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) return operations[i];
+        }
+        return operations[operations.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(",");
+        int previous = 0;
+        for (int i = 0; i < operations.length; i++) {
+            joiner.add(operations[i] + "=" + (cumulativeWeights[i] - previous));
+            previous = cumulativeWeights[i];
+        }
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,120 @@
+package org.ketchup.bookie.client.loadtest;
+
+import org.ketchup.bookie.common.exception.SerializationException;
+import org.ketchup.bookie.common.util.SerializeUtils;
+import org.tomato.bookie.distributedSystem.message.Request;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Log of the requests sent during a load test, one line per request:
+ * <pre>
+ * &lt;operation&gt; &lt;serialized request, base64&gt; &lt;bookingId returned by BOOK_FACILITY, or -&gt;
+ * </pre>
+ * When replaying, each request is sent again with a new requestId, and the bookingId of CHANGE_BOOKING and
+ * EXTEND_BOOKING requests is replaced with the one returned by the replayed BOOK_FACILITY request, once it is known.
+ */
+public class RequestLog implements Closeable {
+    private final BufferedWriter writer;
+    private final List<Entry> entries;
+    private final AtomicInteger nextEntry = new AtomicInteger(0);
+    // { recorded bookingId : bookingId returned during the replay }
+    private final Map<Integer, Integer> replayedBookingIds = new ConcurrentHashMap<>();
+
+    public record Entry(Request request, int recordedBookingId) {
+    }
+
+    private RequestLog(BufferedWriter writer, List<Entry> entries) {
+        this.writer = writer;
+        this.entries = entries;
+    }
+
+    public static RequestLog forRecording(Path path) throws IOException {
+        return new RequestLog(Files.newBufferedWriter(path, StandardCharsets.UTF_8), List.of());
+    }
+
+    public static RequestLog forReplay(Path path) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) continue;
+                String[] columns = line.split(" ");
+                Request request = new Request();
+                request.fromBytes(Base64.getDecoder().decode(columns[1]));
+                entries.add(new Entry(request, columns[2].equals("-") ? -1 : Integer.parseInt(columns[2])));
+            }
+        } catch (SerializationException | RuntimeException e) {
+            throw new IOException("[forReplay] Malformed request log " + path, e);
+        }
+        return new RequestLog(null, entries);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the next recorded entry, or null once every entry has been handed out
+     */
+    public Entry nextEntry() {
+        int index = nextEntry.getAndIncrement();
+        return index < entries.size() ? entries.get(index) : null;
+    }
+
+    /**
+     * Copy a recorded request with a new requestId, so that the server does not treat it as a retransmission.
+     * @param entry
+     * @return
+     * @throws SerializationException
+     */
+    public Request toReplayRequest(Entry entry) throws SerializationException {
+        Request recorded = entry.request();
+        Map<String, byte[]> parameters = new HashMap<>(recorded.getParameters());
+        byte[] bookingId = parameters.get("bookingId");
+        if (Objects.nonNull(bookingId)) {
+            Integer replayedBookingId = replayedBookingIds.get(SerializeUtils.deserializeInt(bookingId));
+            if (Objects.nonNull(replayedBookingId)) {
+                parameters.put("bookingId", SerializeUtils.serializeInt(replayedBookingId));
+            }
+        }
+        return new Request(recorded.getOperation(), parameters);
+    }
+
+    public void replayedBooking(Entry entry, int bookingId) {
+        if (entry.recordedBookingId() >= 0) {
+            replayedBookingIds.put(entry.recordedBookingId(), bookingId);
+        }
+    }
+
+    /**
+     * @param request
+     * @param bookingId bookingId returned for a BOOK_FACILITY request, or -1
+     * @throws IOException
+     */
+    public synchronized void record(Request request, int bookingId) throws IOException {
+        byte[] requestBytes;
+        try {
+            requestBytes = request.toBytes();
+        } catch (SerializationException e) {
+            throw new IOException("[record] Failed to serialize request", e);
+        }
+        writer.write(request.getOperation() + " " + Base64.getEncoder().encodeToString(requestBytes) + " " +
+                (bookingId >= 0 ? String.valueOf(bookingId) : "-"));
+        writer.newLine();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (Objects.nonNull(writer)) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.ketchup.bookie.client.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.ketchup.bookie.client.service.RequestBuilder;
+import org.ketchup.bookie.common.exception.SerializationException;
+import org.ketchup.bookie.common.util.SerializeUtils;
+import org.tomato.bookie.distributedSystem.message.Request;
+import org.tomato.bookie.distributedSystem.message.Response;
+
+import java.io.IOException;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A closed-loop client: sends one request, waits for its response (or for the timeout), then sends the next one.
+ * Each virtual client has its own socket, so that the server sees them as distinct clients.
+ * Statistics are only touched by the thread running the client, and merged once it is done.
+ */
+public class VirtualClient implements Callable<VirtualClient.Stats> {
+    private static final int MINUTES_IN_WEEK = 7 * 24 * 60;
+    private static final int MAX_BOOKINGS_KEPT = 64;
+    // Highest latency tracked by the histograms: 1 minute, in microseconds
+    private static final long HIGHEST_LATENCY_US = 60_000_000L;
+
+    public static class Stats {
+        private final Map<Request.Operation, Histogram> latencies = new EnumMap<>(Request.Operation.class);
+        private final Map<Request.Operation, long[]> errorsAndTimeouts = new EnumMap<>(Request.Operation.class);
+
+        public Map<Request.Operation, Histogram> getLatencies() {
+            return latencies;
+        }
+
+        /**
+         * @return { operation : [application errors, timeouts] }
+         */
+        public Map<Request.Operation, long[]> getErrorsAndTimeouts() {
+            return errorsAndTimeouts;
+        }
+
+        private void recordLatency(Request.Operation operation, long latencyUs) {
+            latencies.computeIfAbsent(operation, op -> new Histogram(HIGHEST_LATENCY_US, 3))
+                    .recordValue(Math.min(latencyUs, HIGHEST_LATENCY_US));
+        }
+
+        private void recordFailure(Request.Operation operation, boolean timeout) {
+            errorsAndTimeouts.computeIfAbsent(operation, op -> new long[2])[timeout ? 1 : 0]++;
+        }
+
+        public void add(Stats other) {
+            other.latencies.forEach((operation, histogram) ->
+                    latencies.computeIfAbsent(operation, op -> new Histogram(HIGHEST_LATENCY_US, 3)).add(histogram));
+            other.errorsAndTimeouts.forEach((operation, counts) -> {
+                long[] total = errorsAndTimeouts.computeIfAbsent(operation, op -> new long[2]);
+                total[0] += counts[0];
+                total[1] += counts[1];
+            });
+        }
+    }
+
+    private final LoadTestConfig config;
+    private final InetAddress serverAddress;
+    private final long measureFrom;
+    private final long endAt;
+    private final RequestLog recordLog;
+    private final RequestLog replayLog;
+    private final RequestBuilder requestBuilder = new RequestBuilder();
+    // Bookings made by this client, which CHANGE_BOOKING and EXTEND_BOOKING requests are sent for
+    private final List<Integer> bookingIds = new ArrayList<>();
+    private final byte[] receiveBuffer = new byte[65535];
+    private Stats stats = new Stats();
+
+    /**
+     * @param config
+     * @param serverAddress
+     * @param measureFrom time (System.nanoTime()) from which requests are part of the report
+     * @param endAt time (System.nanoTime()) at which the client stops
+     * @param recordLog log to record requests to, or null
+     * @param replayLog log to take requests from instead of generating them, or null
+     */
+    public VirtualClient(LoadTestConfig config, InetAddress serverAddress, long measureFrom, long endAt,
+                         RequestLog recordLog, RequestLog replayLog) {
+        this.config = config;
+        this.serverAddress = serverAddress;
+        this.measureFrom = measureFrom;
+        this.endAt = endAt;
+        this.recordLog = recordLog;
+        this.replayLog = replayLog;
+    }
+
+    @Override
+    public Stats call() throws Exception {
+        boolean measuring = false;
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.setSoTimeout(config.getTimeoutMs());
+            while (System.nanoTime() < endAt) {
+                if (!measuring && System.nanoTime() >= measureFrom) {
+                    stats = new Stats();
+                    measuring = true;
+                }
+                RequestLog.Entry entry = null;
+                Request request;
+                if (Objects.nonNull(replayLog)) {
+                    entry = replayLog.nextEntry();
+                    if (Objects.isNull(entry)) break;
+                    request = replayLog.toReplayRequest(entry);
+                } else {
+                    request = nextRequest();
+                }
+                Response response = send(socket, request);
+                int bookingId = -1;
+                if (Objects.nonNull(response) && !isError(response) && request.getOperation() == Request.Operation.BOOK_FACILITY) {
+                    bookingId = SerializeUtils.deserializeInt(response.getData().get("bookingId"));
+                    if (Objects.nonNull(entry)) {
+                        replayLog.replayedBooking(entry, bookingId);
+                    }
+                    keepBooking(bookingId);
+                }
+                if (Objects.nonNull(recordLog)) {
+                    recordLog.record(request, bookingId);
+                }
+            }
+        }
+        return stats;
+    }
+
+    private Request nextRequest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Request.Operation operation = config.getMix().next();
+        if ((operation == Request.Operation.CHANGE_BOOKING || operation == Request.Operation.EXTEND_BOOKING) && bookingIds.isEmpty()) {
+            operation = Request.Operation.BOOK_FACILITY;
+        }
+        int facilityId = random.nextInt(1, config.getFacilityCount() + 1);
+        int start = random.nextInt(MINUTES_IN_WEEK - 240);
+        return switch (operation) {
+            case BOOK_FACILITY -> requestBuilder.buildBookFacilityRequest(facilityId, start, start + random.nextInt(15, 120));
+            case CHANGE_BOOKING -> requestBuilder.buildChangeBookingRequest(randomBooking(random), random.nextInt(-60, 61));
+            case EXTEND_BOOKING -> requestBuilder.buildExtendBookingRequest(randomBooking(random), random.nextInt(1, 31));
+            case QUERY_AVAILABILITY -> requestBuilder.buildQueryAvailabilityRequest(facilityId, start, start + 60);
+            case MONITOR_FACILITY -> requestBuilder.buildMonitorFacilityRequest(facilityId, 1);
+            default -> requestBuilder.buildListFacilitiesRequest();
+        };
+    }
+
+    /**
+     * @return true for server errors and application errors (e.g. booking conflicts)
+     */
+    private static boolean isError(Response response) {
+        return !response.isStatus() || response.getData().containsKey("error");
+    }
+
+    private int randomBooking(ThreadLocalRandom random) {
+        return bookingIds.get(random.nextInt(bookingIds.size()));
+    }
+
+    private void keepBooking(int bookingId) {
+        if (bookingIds.size() >= MAX_BOOKINGS_KEPT) {
+            bookingIds.remove(0);
+        }
+        bookingIds.add(bookingId);
+    }
+
+    /**
+     * Send the request and wait for its response. Callbacks of earlier MONITOR_FACILITY requests and late responses to
+     * timed out requests are skipped.
+     * @return the response, or null on timeout
+     */
+    private Response send(DatagramSocket socket, Request request) throws IOException {
+        byte[] requestBytes;
+        try {
+            requestBytes = request.toBytes();
+        } catch (SerializationException e) {
+            throw new IOException("[send] Failed to serialize request", e);
+        }
+        long sentAt = System.nanoTime();
+        socket.send(new DatagramPacket(requestBytes, requestBytes.length, serverAddress, config.getServerPort()));
+        DatagramPacket packet = new DatagramPacket(receiveBuffer, receiveBuffer.length);
+        long deadline = sentAt + config.getTimeoutMs() * 1_000_000L;
+        while (true) {
+            long remainingMs = (deadline - System.nanoTime()) / 1_000_000L;
+            if (remainingMs <= 0) break;
+            socket.setSoTimeout((int) remainingMs);
+            try {
+                socket.receive(packet);
+            } catch (SocketTimeoutException e) {
+                break;
+            }
+            Response response = new Response();
+            try {
+                response.fromBytes(Arrays.copyOf(packet.getData(), packet.getLength()));
+            } catch (SerializationException e) {
+                continue;
+            }
+            if (!request.getRequestId().equals(response.getRequestId())) continue;
+            stats.recordLatency(request.getOperation(), (System.nanoTime() - sentAt) / 1_000L);
+            if (isError(response)) {
+                stats.recordFailure(request.getOperation(), false);
+            }
+            return response;
+        }
+        stats.recordFailure(request.getOperation(), true);
+        return null;
+    }
+}
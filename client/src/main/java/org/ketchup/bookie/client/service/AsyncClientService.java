@@ -0,0 +1,205 @@
+package org.ketchup.bookie.client.service;
+
+import org.ketchup.bookie.client.config.ClientConfig;
+import org.ketchup.bookie.common.exception.SerializationException;
+import org.tomato.bookie.distributedSystem.faultolerance.RttEstimator;
+import org.tomato.bookie.distributedSystem.message.Request;
+import org.tomato.bookie.distributedSystem.message.Response;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.*;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Client sending requests without waiting for their responses, so that many requests can be outstanding at once over
+ * a single socket. Responses are matched to their request by requestId on a dedicated receive thread, which also hands
+ * monitoring callbacks over to the handler registered for their MONITOR_FACILITY request.
+ * <p>
+ * Requests without a response within the timeout given by an {@link RttEstimator} are retransmitted (same bytes, same
+ * requestId), {@link #MAX_RETRIES} attempts in total, then their future completes exceptionally with an {@link IOException}.
+ * Futures are completed on the receive thread, so dependent actions should not block.
+ */
+public class AsyncClientService implements Closeable {
+    // With timeouts of at least 100ms doubling on each retry, a response is waited for at least 3 seconds in total
+    private static final int MAX_RETRIES = 5;
+
+    private static class PendingRequest {
+        private final CompletableFuture<Response> future = new CompletableFuture<>();
+        private final DatagramPacket packet;
+        private int attempts = 0;
+        private long firstSentAt;
+        private ScheduledFuture<?> retransmission;
+
+        private PendingRequest(DatagramPacket packet) {
+            this.packet = packet;
+        }
+    }
+
+    private final DatagramSocket socket;
+    private final InetAddress serverAddress;
+    private final int serverPort;
+    // { requestId : request waiting for its response }
+    private final Map<UUID, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+    // { requestId of MONITOR_FACILITY : callback handler }
+    private final Map<UUID, Consumer<Response>> monitorHandlers = new ConcurrentHashMap<>();
+    private final RttEstimator rttEstimator = new RttEstimator();
+    private final ScheduledExecutorService retransmitter;
+    private final Thread receiverThread;
+
+    public AsyncClientService(ClientConfig config) {
+        this.serverPort = config.getServerPort();
+        try {
+            // Any free port, so that several clients can run on the same host
+            this.socket = new DatagramSocket();
+            this.serverAddress = InetAddress.getByName(config.getServerIP());
+        } catch (SocketException | UnknownHostException e) {
+            throw new RuntimeException("Failed to initialize async client service", e);
+        }
+        retransmitter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "client-retransmitter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        receiverThread = new Thread(this::receiveResponses, "client-receiver");
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+    }
+
+    /**
+     * Send a request without waiting for its response.
+     * @param request
+     * @return future completed with the response, or exceptionally if there is no response after all retries
+     */
+    public CompletableFuture<Response> sendRequest(Request request) {
+        byte[] requestBytes;
+        try {
+            requestBytes = request.toBytes();
+        } catch (SerializationException e) {
+            return CompletableFuture.failedFuture(new IOException("Failed to serialize request", e));
+        }
+        PendingRequest pending = new PendingRequest(new DatagramPacket(requestBytes, requestBytes.length, serverAddress, serverPort));
+        PendingRequest existing = pendingRequests.putIfAbsent(request.getRequestId(), pending);
+        if (Objects.nonNull(existing)) {
+            // Same request sent again while the first one is still outstanding
+            return existing.future;
+        }
+        transmit(request.getRequestId(), pending);
+        return pending.future;
+    }
+
+    /**
+     * Send a MONITOR_FACILITY request, and hand every callback for it over to callbackHandler until
+     * {@link #stopMonitoring(UUID)} is called. The handler is called on the receive thread.
+     * @param request
+     * @param callbackHandler
+     * @return future completed with the response to the request
+     */
+    public CompletableFuture<Response> monitorFacility(Request request, Consumer<Response> callbackHandler) {
+        // Registered first, callbacks may arrive right after the response
+        monitorHandlers.put(request.getRequestId(), callbackHandler);
+        return sendRequest(request).whenComplete((response, throwable) -> {
+            if (Objects.nonNull(throwable)) {
+                monitorHandlers.remove(request.getRequestId());
+            }
+        });
+    }
+
+    public void stopMonitoring(UUID requestId) {
+        monitorHandlers.remove(requestId);
+    }
+
+    /**
+     * @return number of requests waiting for their response
+     */
+    public int pendingCount() {
+        return pendingRequests.size();
+    }
+
+    private void transmit(UUID requestId, PendingRequest pending) {
+        synchronized (pending) {
+            if (pending.future.isDone()) return;
+            if (pending.attempts >= MAX_RETRIES) {
+                pendingRequests.remove(requestId, pending);
+                pending.future.completeExceptionally(new IOException("Failed to get response after " + MAX_RETRIES + " attempts"));
+                return;
+            }
+            long timeoutMs = rttEstimator.getTimeoutMs(pending.attempts);
+            pending.attempts++;
+            try {
+                if (pending.attempts == 1) {
+                    pending.firstSentAt = System.nanoTime();
+                }
+                socket.send(pending.packet);
+            } catch (IOException e) {
+                pendingRequests.remove(requestId, pending);
+                pending.future.completeExceptionally(e);
+                return;
+            }
+            try {
+                pending.retransmission = retransmitter.schedule(() -> transmit(requestId, pending), timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Service closed
+                pending.future.completeExceptionally(new IOException("Client service is closed"));
+            }
+        }
+    }
+
+    /**
+     * Receive stage: route each datagram to the future of its request, or to the handler of its monitoring
+     * subscription. Anything else (e.g. a late duplicate response) is dropped.
+     */
+    private void receiveResponses() {
+        byte[] buffer = new byte[65535];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        while (!socket.isClosed()) {
+            try {
+                packet.setLength(buffer.length);
+                socket.receive(packet);
+                Response response = new Response();
+                response.fromBytes(Arrays.copyOf(packet.getData(), packet.getLength()));
+                PendingRequest pending = pendingRequests.remove(response.getRequestId());
+                if (Objects.nonNull(pending)) {
+                    synchronized (pending) {
+                        if (Objects.nonNull(pending.retransmission)) {
+                            pending.retransmission.cancel(false);
+                        }
+                        // The RTT of a retransmitted request is ambiguous, the response may be to any of the transmissions
+                        if (pending.attempts == 1) {
+                            rttEstimator.addSample(System.nanoTime() - pending.firstSentAt);
+                        }
+                    }
+                    pending.future.complete(response);
+                    continue;
+                }
+                Consumer<Response> handler = monitorHandlers.get(response.getRequestId());
+                if (Objects.nonNull(handler)) {
+                    handler.accept(response);
+                }
+            } catch (SerializationException e) {
+                System.err.println("Failed to deserialize response: " + e.getMessage());
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    System.err.println("Error in receive thread: " + e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Error in response handler: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+        retransmitter.shutdownNow();
+        IOException closed = new IOException("Client service is closed");
+        pendingRequests.values().forEach(pending -> pending.future.completeExceptionally(closed));
+        pendingRequests.clear();
+        monitorHandlers.clear();
+    }
+}
@@ -2,6 +2,7 @@ package org.ketchup.bookie.client.service;
 
 import org.ketchup.bookie.client.config.ClientConfig;
 import org.ketchup.bookie.common.exception.SerializationException;
+import org.tomato.bookie.distributedSystem.faultolerance.RttEstimator;
 import org.tomato.bookie.distributedSystem.message.Request;
 import org.tomato.bookie.distributedSystem.message.Response;
 
@@ -24,6 +25,9 @@ public class ClientService {
     
     // For monitoring
     private MonitorListener monitorListener;
+
+    // Retransmission timeouts of requests to the server
+    private final RttEstimator rttEstimator = new RttEstimator();
     
     public ClientService(ClientConfig config) {
         this.config = config;
@@ -50,40 +54,33 @@ public class ClientService {
             throw new IOException("Failed to serialize request", e);
         }
         
+        // Retransmissions send the same bytes, hence the same requestId
         DatagramPacket packet = new DatagramPacket(
                 requestBytes, requestBytes.length, serverAddress, serverPort);
         
-        // Set timeout for the socket
-        socket.setSoTimeout(3000); // 3 seconds
-        
         int retries = 0;
-        int maxRetries = 3;
+        int maxRetries = 5;
         
         while (retries < maxRetries) {
             try {
+                // Timeout derived from the measured RTT, doubled on each retry
+                long sentAt = System.nanoTime();
+                long deadline = sentAt + rttEstimator.getTimeoutMs(retries) * 1_000_000L;
                 socket.send(packet);
                 
-                // Prepare to receive response
-                byte[] responseBuffer = new byte[8192]; // Adjust size as needed
-                DatagramPacket responsePacket = new DatagramPacket(responseBuffer, responseBuffer.length);
-                
-                // Receive response (blocks until response is received or timeout)
-                socket.receive(responsePacket);
+                // Blocks until the response is received or the deadline is over
+                Response response = receiveResponse(request.getRequestId(), deadline);
+                // The RTT of a retransmitted request is ambiguous, the response may be to any of the transmissions
+                if (retries == 0) {
+                    rttEstimator.addSample(System.nanoTime() - sentAt);
+                }
                 
-                // Deserialize response
-                Response response = new Response();
-                try {
-                    response.fromBytes(Arrays.copyOf(responsePacket.getData(), responsePacket.getLength()));
-                    
-                    // For at-most-once semantics, cache the response
-                    if (config.isAtMostOnceEnabled()) {
-                        responseCache.put(request.getRequestId(), response);
-                    }
-                    
-                    return response;
-                } catch (SerializationException e) {
-                    throw new IOException("Failed to deserialize response", e);
+                // For at-most-once semantics, cache the response
+                if (config.isAtMostOnceEnabled()) {
+                    responseCache.put(request.getRequestId(), response);
                 }
+                
+                return response;
             } catch (SocketTimeoutException e) {
                 retries++;
                 System.out.println("Request timed out, retry " + retries + "/" + maxRetries);
@@ -93,10 +90,54 @@ public class ClientService {
         throw new IOException("Failed to get response after " + maxRetries + " attempts");
     }
     
+    /**
+     * Receive the response to a request. Callbacks and late responses to earlier requests are skipped, without
+     * extending the deadline.
+     * @param requestId
+     * @param deadline in {@link System#nanoTime()} time
+     * @return the response
+     * @throws SocketTimeoutException if the deadline is over before the response is received
+     * @throws IOException
+     */
+    private Response receiveResponse(UUID requestId, long deadline) throws IOException {
+        byte[] responseBuffer = new byte[8192]; // Adjust size as needed
+        DatagramPacket responsePacket = new DatagramPacket(responseBuffer, responseBuffer.length);
+        while (true) {
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                throw new SocketTimeoutException("Receive timed out");
+            }
+            // Rounded up: a timeout of 0 would block forever
+            socket.setSoTimeout((int) Math.max(1, (remainingNanos + 999_999) / 1_000_000));
+            socket.receive(responsePacket);
+            
+            Response response = new Response();
+            try {
+                response.fromBytes(Arrays.copyOf(responsePacket.getData(), responsePacket.getLength()));
+            } catch (SerializationException e) {
+                throw new IOException("Failed to deserialize response", e);
+            }
+            if (requestId.equals(response.getRequestId())) {
+                return response;
+            }
+        }
+    }
+    
     public void startMonitorListener(int duration, UUID requestId) {
         monitorListener = new MonitorListener(socket, duration, requestId);
         monitorListener.start();
     }
+
+    /**
+     * Start listening for callbacks, starting from the availability snapshot in the response to MONITOR_FACILITY.
+     * @param duration
+     * @param requestId
+     * @param initialResponse
+     */
+    public void startMonitorListener(int duration, UUID requestId, Response initialResponse) {
+        monitorListener = new MonitorListener(socket, duration, requestId, initialResponse);
+        monitorListener.start();
+    }
     
     public void stopMonitorListener() {
         if (monitorListener != null) {
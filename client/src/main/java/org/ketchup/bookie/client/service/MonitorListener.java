@@ -2,6 +2,7 @@ package org.ketchup.bookie.client.service;
 
 import org.ketchup.bookie.common.exception.SerializationException;
 import org.ketchup.bookie.common.pojo.Availability;
+import org.ketchup.bookie.common.pojo.AvailabilityDelta;
 import org.ketchup.bookie.common.util.SerializeUtils;
 import org.tomato.bookie.distributedSystem.message.Response;
 
@@ -11,6 +12,7 @@ import java.net.DatagramSocket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.UUID;
 
 public class MonitorListener extends Thread {
@@ -18,12 +20,30 @@ public class MonitorListener extends Thread {
     private final long endTime;
     private final UUID requestId;
     private volatile boolean running = true;
+    // Local copy of the availability, kept up to date by applying the deltas received
+    private Availability availability;
+    private long version = -1;
     
     public MonitorListener(DatagramSocket socket, int durationMinutes, UUID requestId) {
         this.socket = socket;
         this.endTime = System.currentTimeMillis() + (durationMinutes * 60 * 1000);
         this.requestId = requestId;
     }
+
+    /**
+     * @param socket
+     * @param durationMinutes
+     * @param requestId
+     * @param initialResponse response to the MONITOR_FACILITY request, carrying the initial snapshot
+     */
+    public MonitorListener(DatagramSocket socket, int durationMinutes, UUID requestId, Response initialResponse) {
+        this(socket, durationMinutes, requestId);
+        try {
+            applyUpdate(initialResponse.getData());
+        } catch (SerializationException e) {
+            System.err.println("Failed to deserialize initial availability: " + e.getMessage());
+        }
+    }
     
     @Override
     public void run() {
@@ -46,13 +66,7 @@ public class MonitorListener extends Thread {
                     System.out.println("Receive response with id " + response.getRequestId());
                     // Verify this is a callback for our monitoring request
                     if (response.getRequestId().equals(requestId)) {
-                        // Extract availability information
-                        byte[] availabilityBytes = response.getData().get("availability");
-                        if (availabilityBytes != null) {
-                            Availability availability = new Availability();
-                            availability.fromBytes(availabilityBytes);
-                            displayAvailabilityUpdate(availability);
-                        }
+                        applyUpdate(response.getData());
                     }
                 } catch (SocketTimeoutException e) {
                     // This is expected, just retry
@@ -67,6 +81,35 @@ public class MonitorListener extends Thread {
         }
     }
     
+    /**
+     * Replace the local availability with a snapshot, or apply a delta to it. A delta which does not follow the local
+     * version is dropped, the next snapshot brings the local availability up to date again.
+     * @param data
+     * @throws SerializationException
+     */
+    private void applyUpdate(Map<String, byte[]> data) throws SerializationException {
+        byte[] availabilityBytes = data.get("availability");
+        byte[] deltaBytes = data.get("availabilityDelta");
+        if (availabilityBytes != null) {
+            availability = new Availability();
+            availability.fromBytes(availabilityBytes);
+            byte[] versionBytes = data.get("version");
+            version = versionBytes != null ? SerializeUtils.deserializeLong(versionBytes) : -1;
+            displayAvailabilityUpdate(availability);
+        } else if (deltaBytes != null) {
+            AvailabilityDelta delta = new AvailabilityDelta();
+            delta.fromBytes(deltaBytes);
+            if (availability == null || version < 0 || delta.getVersion() != version + 1) {
+                System.out.println("Missed an update of facility " + delta.getFacilityId() + ", waiting for the next full update...");
+                version = -1;
+                return;
+            }
+            delta.applyTo(availability);
+            version = delta.getVersion();
+            displayAvailabilityUpdate(availability);
+        }
+    }
+
     private void displayAvailabilityUpdate(Availability availability) {
         System.out.println("\n=== FACILITY UPDATE RECEIVED ===");
         System.out.println("Facility ID: " + availability.getFacilityId());
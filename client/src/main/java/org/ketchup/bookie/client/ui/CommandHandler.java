@@ -186,7 +186,7 @@ public class CommandHandler {
             
             if (response.isStatus()) {
                 System.out.println("Monitoring started for " + duration + " minutes.");
-                clientService.startMonitorListener(duration, request.getRequestId());
+                clientService.startMonitorListener(duration, request.getRequestId(), response);
                 
                 System.out.println("Press Enter to stop monitoring early...");
                 scanner.nextLine();
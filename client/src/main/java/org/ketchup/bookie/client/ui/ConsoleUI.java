@@ -183,7 +183,7 @@ public class ConsoleUI {
         
         if (response.isStatus() && !response.getData().containsKey("error")) {
             System.out.println("Monitoring started for " + duration + " minutes.");
-            clientService.startMonitorListener(duration, request.getRequestId());
+            clientService.startMonitorListener(duration, request.getRequestId(), response);
             
             // Wait for monitoring to complete
             System.out.println("Press Enter to stop monitoring early...");
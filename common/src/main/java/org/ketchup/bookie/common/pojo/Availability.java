@@ -2,77 +2,106 @@ package org.ketchup.bookie.common.pojo;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.ketchup.bookie.common.enums.SerializableDataType;
 import org.ketchup.bookie.common.exception.SerializationException;
-import org.ketchup.bookie.common.pojo.BinarySerializable;
-import org.ketchup.bookie.common.util.SerializeUtils;
+import org.ketchup.bookie.common.util.BinaryReader;
+import org.ketchup.bookie.common.util.BinaryWriter;
 
-import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.AbstractList;
 import java.util.List;
-import java.util.Set;
 
+/**
+ * Booking status of a facility for every minute of the week. Stored the same way it is serialized: one bit per minute,
+ * most significant bit first (bit 7 of byte 0 is minute 0).
+ */
 @Data
 @NoArgsConstructor
 public class Availability implements BinarySerializable {
     private static final int MINS_IN_WEEK = 7 * 24 * 60;
     private int facilityId;
-    private List<Boolean> booked;
-    
-    private byte[] bookedAsBytes() {
-        ByteBuffer buffer = ByteBuffer.allocate(MINS_IN_WEEK / 8);
-        int i = 0;
-        byte b = 0;
-        for (Boolean bookedAtSlot : booked) {
-            if (i == 0) {
-                b = 0;
+    private byte[] bookedBits = new byte[MINS_IN_WEEK / 8];
+
+    /**
+     * @param facilityId
+     * @param bookedBits bitmap in the serialized layout, used as is (not copied)
+     * @return
+     */
+    public static Availability fromBitmap(int facilityId, byte[] bookedBits) {
+        Availability availability = new Availability();
+        availability.facilityId = facilityId;
+        availability.bookedBits = bookedBits;
+        return availability;
+    }
+
+    public boolean isBooked(int minute) {
+        return (bookedBits[minute >>> 3] & (0x80 >>> (minute & 7))) != 0;
+    }
+
+    /**
+     * @return a read-only view of the booking status of each minute, backed by the bitmap
+     */
+    public List<Boolean> getBooked() {
+        return new AbstractList<>() {
+            @Override
+            public Boolean get(int index) {
+                if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
+                return isBooked(index);
             }
-            b = (byte) ((b << 1) | (bookedAtSlot ? 1 : 0));
-            i = (i + 1) % 8;
-            if (i == 0) {
-                buffer.put(b);
+
+            @Override
+            public int size() {
+                return bookedBits.length * 8;
+            }
+        };
+    }
+
+    public void setBooked(List<Boolean> booked) {
+        bookedBits = new byte[MINS_IN_WEEK / 8];
+        int minute = 0;
+        for (Boolean bookedAtSlot : booked) {
+            if (minute >= MINS_IN_WEEK) break;
+            if (bookedAtSlot) {
+                bookedBits[minute >>> 3] |= (byte) (0x80 >>> (minute & 7));
             }
+            minute++;
         }
-        return buffer.array();
     }
 
-    private void bookedFromBytes(byte[] bytes) {
-        booked = new ArrayList<>(MINS_IN_WEEK);
-        for (byte aByte : bytes) {
-            for (int i = 0; i < 8; i++) {
-                booked.add((aByte & (byte) 0x80) != 0);
-                aByte = (byte) (aByte << 1);
+    /**
+     * Set the booking status of every minute in [startTime, endTime).
+     * @param startTime
+     * @param endTime
+     * @param booked
+     */
+    public void setBooked(int startTime, int endTime, boolean booked) {
+        for (int minute = startTime; minute < endTime; minute++) {
+            if (booked) {
+                bookedBits[minute >>> 3] |= (byte) (0x80 >>> (minute & 7));
+            } else {
+                bookedBits[minute >>> 3] &= (byte) ~(0x80 >>> (minute & 7));
             }
         }
     }
 
     @Override
-    public byte[] toBytes() throws SerializationException {
-        byte[] facilityIdKey = SerializeUtils.serializeString("facilityId");
-        byte[] facilityIdValue = SerializeUtils.serializeInt(facilityId);
-        byte[] bookedKey = SerializeUtils.serializeString("booked");
-        byte[] bookedValue = SerializeUtils.serializeBytes(bookedAsBytes());
-        return SerializeUtils.wrapHeader(SerializeUtils.concatBytes(facilityIdKey, facilityIdValue, bookedKey, bookedValue), SerializableDataType.OBJECT, 2);
+    public void writeTo(BinaryWriter writer) throws SerializationException {
+        writer.writeObjectHeader(2);
+        writer.writeField("facilityId");
+        writer.writeInt(facilityId);
+        writer.writeField("booked");
+        writer.writeBytes(bookedBits);
     }
 
     @Override
-    public void fromBytes(byte[] bytes) throws SerializationException {
-        int objectSize = SerializeUtils.readHeader(bytes, SerializableDataType.OBJECT);
-        if (objectSize != 2) {
-            throw new SerializationException("[fromBytes] Number of fields of serialized bytes does not match Availability class");
-        }
-        bytes = Arrays.copyOfRange(bytes, 4, bytes.length);
+    public void readFrom(BinaryReader reader) throws SerializationException {
+        reader.readObjectHeader(2, "Availability");
 
         // facilityId
-        bytes = SerializeUtils.verifyObjectField(bytes, "facilityId");
-        int facilityIdValueLen = SerializeUtils.readHeader(bytes, SerializableDataType.INT);
-        facilityId = SerializeUtils.deserializeInt(Arrays.copyOfRange(bytes, 0, facilityIdValueLen + 4));
-        bytes = Arrays.copyOfRange(bytes, facilityIdValueLen + 4, bytes.length);
+        reader.readField("facilityId");
+        facilityId = reader.readInt();
 
         // booked
-        bytes = SerializeUtils.verifyObjectField(bytes, "booked");
-        int bookedValueLen = SerializeUtils.readHeader(bytes, SerializableDataType.BYTES);
-        bookedFromBytes(SerializeUtils.deserializeBytes(Arrays.copyOfRange(bytes, 0, bookedValueLen + 4)));
+        reader.readField("booked");
+        // Copied out of the message, once: the bitmap is mutable, so it must not share the buffer of the message
+        bookedBits = reader.readBytes();
     }
 }
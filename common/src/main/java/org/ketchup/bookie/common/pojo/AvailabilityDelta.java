@@ -0,0 +1,119 @@
+package org.ketchup.bookie.common.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.ketchup.bookie.common.exception.SerializationException;
+import org.ketchup.bookie.common.util.BinaryReader;
+import org.ketchup.bookie.common.util.BinaryWriter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Changes to the {@link Availability} of a facility between 2 consecutive versions.
+ * A delta with version v turns the availability at version v - 1 into the availability at version v.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityDelta implements BinarySerializable {
+    /**
+     * Size of each range in {@link #changes}: start (int, little-endian), end (int, little-endian, exclusive), booked (1 byte)
+     */
+    public static final int RANGE_SIZE = 9;
+
+    private int facilityId;
+    private long version;
+    private byte[] changes = new byte[0];
+
+    /**
+     * Compute the ranges whose booking status differs between 2 availabilities of the same facility.
+     * @param version version of after
+     * @param before
+     * @param after
+     * @return
+     */
+    public static AvailabilityDelta diff(long version, Availability before, Availability after) {
+        byte[] beforeBits = before.getBookedBits();
+        byte[] afterBits = after.getBookedBits();
+        ByteBuffer ranges = ByteBuffer.allocate(64 * RANGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        int rangeStart = -1;
+        boolean rangeBooked = false;
+        for (int i = 0; i < afterBits.length; i++) {
+            int changed = (beforeBits[i] ^ afterBits[i]) & 0xFF;
+            if (changed == 0 && rangeStart < 0) continue;
+            for (int bit = 0; bit < 8; bit++) {
+                int minute = (i << 3) + bit;
+                boolean bitChanged = (changed & (0x80 >>> bit)) != 0;
+                boolean booked = (afterBits[i] & (0x80 >>> bit)) != 0;
+                if (rangeStart >= 0 && (!bitChanged || booked != rangeBooked)) {
+                    ranges = putRange(ranges, rangeStart, minute, rangeBooked);
+                    rangeStart = -1;
+                }
+                if (bitChanged && rangeStart < 0) {
+                    rangeStart = minute;
+                    rangeBooked = booked;
+                }
+            }
+        }
+        if (rangeStart >= 0) {
+            ranges = putRange(ranges, rangeStart, afterBits.length << 3, rangeBooked);
+        }
+        return new AvailabilityDelta(after.getFacilityId(), version, Arrays.copyOf(ranges.array(), ranges.position()));
+    }
+
+    private static ByteBuffer putRange(ByteBuffer ranges, int start, int end, boolean booked) {
+        if (ranges.remaining() < RANGE_SIZE) {
+            ranges = ByteBuffer.allocate(ranges.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN).put(ranges.flip());
+        }
+        return ranges.putInt(start).putInt(end).put((byte) (booked ? 1 : 0));
+    }
+
+    public int getRangeCount() {
+        return changes.length / RANGE_SIZE;
+    }
+
+    /**
+     * Apply the changes to an availability of the previous version.
+     * @param availability
+     */
+    public void applyTo(Availability availability) {
+        ByteBuffer ranges = ByteBuffer.wrap(changes).order(ByteOrder.LITTLE_ENDIAN);
+        while (ranges.remaining() >= RANGE_SIZE) {
+            availability.setBooked(ranges.getInt(), ranges.getInt(), ranges.get() != 0);
+        }
+    }
+
+    @Override
+    public void writeTo(BinaryWriter writer) throws SerializationException {
+        writer.writeObjectHeader(3);
+        writer.writeField("facilityId");
+        writer.writeInt(facilityId);
+        writer.writeField("version");
+        writer.writeLong(version);
+        writer.writeField("changes");
+        writer.writeBytes(changes);
+    }
+
+    @Override
+    public void readFrom(BinaryReader reader) throws SerializationException {
+        reader.readObjectHeader(3, "AvailabilityDelta");
+
+        // facilityId
+        reader.readField("facilityId");
+        facilityId = reader.readInt();
+
+        // version
+        reader.readField("version");
+        version = reader.readLong();
+
+        // changes
+        reader.readField("changes");
+        changes = reader.readBytes();
+        if (changes.length % RANGE_SIZE != 0) {
+            throw new SerializationException("[readFrom] Size of AvailabilityDelta changes is not a multiple of " + RANGE_SIZE);
+        }
+    }
+}
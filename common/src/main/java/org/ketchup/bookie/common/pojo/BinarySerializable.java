@@ -1,8 +1,34 @@
 package org.ketchup.bookie.common.pojo;
 
 import org.ketchup.bookie.common.exception.SerializationException;
+import org.ketchup.bookie.common.util.BinaryReader;
+import org.ketchup.bookie.common.util.BinaryWriter;
 
 public interface BinarySerializable {
-    byte[] toBytes() throws SerializationException;
-    void fromBytes(byte[] bytes) throws SerializationException;
+    /**
+     * Serialize this object. Encodes into a buffer reused by the current thread, so the only allocation is the returned array.
+     * @return
+     * @throws SerializationException
+     */
+    default byte[] toBytes() throws SerializationException {
+        return BinaryWriter.encode(this);
+    }
+
+    /**
+     * Serialize this object at the current position of writer.
+     * @param writer
+     * @throws SerializationException
+     */
+    void writeTo(BinaryWriter writer) throws SerializationException;
+
+    default void fromBytes(byte[] bytes) throws SerializationException {
+        readFrom(new BinaryReader(bytes));
+    }
+
+    /**
+     * Deserialize this object from the current position of reader, leaving the reader positioned right after the object.
+     * @param reader
+     * @throws SerializationException
+     */
+    void readFrom(BinaryReader reader) throws SerializationException;
 }
@@ -4,11 +4,9 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.ketchup.bookie.common.enums.FacilityType;
-import org.ketchup.bookie.common.enums.SerializableDataType;
 import org.ketchup.bookie.common.exception.SerializationException;
-import org.ketchup.bookie.common.util.SerializeUtils;
-
-import java.util.Arrays;
+import org.ketchup.bookie.common.util.BinaryReader;
+import org.ketchup.bookie.common.util.BinaryWriter;
 
 @Data
 @AllArgsConstructor
@@ -27,36 +25,27 @@ public class Facility implements BinarySerializable{
     }
 
     @Override
-    public byte[] toBytes() throws SerializationException {
-        byte[] idKey = SerializeUtils.serializeString("id");
-        byte[] idValue = SerializeUtils.serializeInt(id);
-        byte[] nameKey = SerializeUtils.serializeString("name");
-        byte[] nameValue = SerializeUtils.serializeString(name);
-        byte[] typeKey = SerializeUtils.serializeString("type");
-        byte[] typeValue = SerializeUtils.serializeEnum(type);
-        return SerializeUtils.wrapHeader(SerializeUtils.concatBytes(idKey, idValue, nameKey, nameValue, typeKey, typeValue), SerializableDataType.OBJECT, 3);
+    public void writeTo(BinaryWriter writer) throws SerializationException {
+        writer.writeObjectHeader(3);
+        writer.writeField("id");
+        writer.writeInt(id);
+        writer.writeField("name");
+        writer.writeString(name);
+        writer.writeField("type");
+        writer.writeEnum(type);
     }
 
     @Override
-    public void fromBytes(byte[] bytes) throws SerializationException {
-        int objectSize = SerializeUtils.readHeader(bytes, SerializableDataType.OBJECT);
-        if (objectSize != 3) {
-            throw new SerializationException("[fromBytes] Number of fields of serialized bytes does not match Facility class");
-        }
-        bytes = Arrays.copyOfRange(bytes, 4, bytes.length);
-
-        bytes = SerializeUtils.verifyObjectField(bytes, "id");
-        int idValueLen = SerializeUtils.readHeader(bytes, SerializableDataType.INT);
-        id = SerializeUtils.deserializeInt(Arrays.copyOfRange(bytes, 0, idValueLen + 4));
-        bytes = Arrays.copyOfRange(bytes, idValueLen + 4, bytes.length);
-
-        bytes = SerializeUtils.verifyObjectField(bytes, "name");
-        int nameValueLen = SerializeUtils.readHeader(bytes, SerializableDataType.STRING);
-        name = SerializeUtils.deserializeString(Arrays.copyOfRange(bytes, 0, nameValueLen + 4));
-        bytes = Arrays.copyOfRange(bytes, nameValueLen + 4, bytes.length);
-
-        bytes = SerializeUtils.verifyObjectField(bytes, "type");
-        int typeValueLen = SerializeUtils.readHeader(bytes, SerializableDataType.ENUM);
-        type = SerializeUtils.deserializeEnum(Arrays.copyOfRange(bytes, 0, typeValueLen + 4), FacilityType.class);
+    public void readFrom(BinaryReader reader) throws SerializationException {
+        reader.readObjectHeader(3, "Facility");
+
+        reader.readField("id");
+        id = reader.readInt();
+
+        reader.readField("name");
+        name = reader.readString();
+
+        reader.readField("type");
+        type = reader.readEnum(FacilityType.class);
     }
 }
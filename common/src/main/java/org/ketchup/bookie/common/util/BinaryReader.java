@@ -0,0 +1,397 @@
+package org.ketchup.bookie.common.util;
+
+import org.ketchup.bookie.common.enums.SerializableDataType;
+import org.ketchup.bookie.common.enums.SerializableEnum;
+import org.ketchup.bookie.common.exception.SerializationException;
+import org.ketchup.bookie.common.pojo.BinarySerializable;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Decodes values in the format described in PROTOCOL.md directly from a {@link ByteBuffer}, advancing a cursor past each
+ * value as it is read. Unlike the {@code SerializeUtils.deserializeXXX(byte[])} methods, values are never copied out to
+ * be decoded, so decoding a message is linear in its size.
+ * <p>
+ * Not thread-safe. The reader owns the position of the buffer passed to it.
+ */
+public class BinaryReader {
+
+    private static final int HEADER_SIZE = 4;
+
+    private static final ClassValue<Method> FROM_VALUE_METHODS = new ClassValue<>() {
+        @Override
+        protected Method computeValue(Class<?> enumType) {
+            try {
+                return enumType.getMethod("fromValue", Integer.class);
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    };
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Read from the remaining bytes of buffer, starting at its current position.
+     * @param buffer
+     */
+    public BinaryReader(ByteBuffer buffer) {
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public BinaryReader(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    public int position() {
+        return buffer.position();
+    }
+
+    public int remaining() {
+        return buffer.remaining();
+    }
+
+    /**
+     * Read the header of a value, verify its type and return the size of the value.
+     * @param dataType
+     * @return
+     * @throws SerializationException
+     */
+    public int readHeader(SerializableDataType dataType) throws SerializationException {
+        ensureRemaining(HEADER_SIZE, "header");
+        byte type = buffer.get();
+        if (type != dataType.getSerializedValue()) {
+            throw new SerializationException("Wrong header for type " + dataType.name());
+        }
+        return (buffer.get() & 0xFF) | ((buffer.get() & 0xFF) << 8) | ((buffer.get() & 0xFF) << 16);
+    }
+
+    /**
+     * Read a boolean value
+     * @return
+     * @throws SerializationException
+     */
+    public boolean readBool() throws SerializationException {
+        readPrimitiveHeader(SerializableDataType.BOOLEAN, 1);
+        return buffer.get() != 0;
+    }
+
+    /**
+     * Read an int value
+     * @return
+     * @throws SerializationException
+     */
+    public int readInt() throws SerializationException {
+        readPrimitiveHeader(SerializableDataType.INT, 4);
+        return buffer.getInt();
+    }
+
+    /**
+     * Read a long value
+     * @return
+     * @throws SerializationException
+     */
+    public long readLong() throws SerializationException {
+        readPrimitiveHeader(SerializableDataType.LONG, 8);
+        return buffer.getLong();
+    }
+
+    /**
+     * Read a String value
+     * @return
+     * @throws SerializationException
+     */
+    public String readString() throws SerializationException {
+        int strlen = readHeader(SerializableDataType.STRING);
+        ensureRemaining(strlen, "String");
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), strlen, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + strlen);
+        } else {
+            byte[] bytes = new byte[strlen];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    /**
+     * Read an enum value
+     * @param enumType Class of the enum, which must have a static fromValue(Integer) method
+     * @return
+     * @param <E>
+     * @throws SerializationException
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends SerializableEnum> E readEnum(Class<E> enumType) throws SerializationException {
+        readPrimitiveHeader(SerializableDataType.ENUM, 4);
+        int enumValue = buffer.getInt();
+        Method fromValueMethod = FROM_VALUE_METHODS.get(enumType);
+        if (Objects.isNull(fromValueMethod)) {
+            throw new SerializationException("[readEnum] Enum type " + enumType.getName() + " does not declare fromValue(Integer)");
+        }
+        try {
+            return (E) fromValueMethod.invoke(null, enumValue);
+        } catch (InvocationTargetException | IllegalAccessException e) {
+            throw new SerializationException("[readEnum] Failed to access fromValue() method of enum type " + enumType.getName());
+        }
+    }
+
+    /**
+     * Read a byte[] value. The bytes are copied out of the underlying buffer.
+     * @return
+     * @throws SerializationException
+     */
+    public byte[] readBytes() throws SerializationException {
+        int bytesLen = readHeader(SerializableDataType.BYTES);
+        ensureRemaining(bytesLen, "Bytes");
+        byte[] bytes = new byte[bytesLen];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Read a byte[] value as a read-only view of the underlying buffer, without copying.
+     * @return
+     * @throws SerializationException
+     */
+    public ByteBuffer readBytesAsBuffer() throws SerializationException {
+        int bytesLen = readHeader(SerializableDataType.BYTES);
+        ensureRemaining(bytesLen, "Bytes");
+        ByteBuffer view = buffer.slice().limit(bytesLen).asReadOnlyBuffer();
+        buffer.position(buffer.position() + bytesLen);
+        return view;
+    }
+
+    /**
+     * Read a UUID serialized as a 16-byte byte[] value (see {@link SerializeUtils#uuidToBytes(UUID)}).
+     * @return
+     * @throws SerializationException
+     */
+    public UUID readUuid() throws SerializationException {
+        int bytesLen = readHeader(SerializableDataType.BYTES);
+        if (bytesLen != 16) {
+            throw new SerializationException("[readUuid] Invalid byte array length for UUID conversion.");
+        }
+        ensureRemaining(16, "UUID");
+        // uuidToBytes() writes in big-endian order
+        long mostSignificantBits = Long.reverseBytes(buffer.getLong());
+        long leastSignificantBits = Long.reverseBytes(buffer.getLong());
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    /**
+     * Read the key of the next object field and verify that it matches field.
+     * @param field
+     * @throws SerializationException
+     */
+    public void readField(String field) throws SerializationException {
+        int keyLen = readHeader(SerializableDataType.STRING);
+        if (keyLen != field.length()) {
+            throw new SerializationException("[fromBytes] Fields [" + field + "] not exist");
+        }
+        ensureRemaining(keyLen, "String");
+        int start = buffer.position();
+        for (int i = 0; i < keyLen; i++) {
+            if (buffer.get(start + i) != (byte) field.charAt(i)) {
+                throw new SerializationException("[fromBytes] Fields [" + field + "] not exist");
+            }
+        }
+        buffer.position(start + keyLen);
+    }
+
+    /**
+     * Read the header of an object and verify its number of fields.
+     * @param fieldCount
+     * @param className used in the error message
+     * @throws SerializationException
+     */
+    public void readObjectHeader(int fieldCount, String className) throws SerializationException {
+        if (readHeader(SerializableDataType.OBJECT) != fieldCount) {
+            throw new SerializationException("[fromBytes] Number of fields of serialized bytes does not match " + className + " class");
+        }
+    }
+
+    /**
+     * Read a Map whose values are byte[]
+     * @return
+     * @throws SerializationException
+     */
+    public Map<String, byte[]> readBytesMap() throws SerializationException {
+        int mapSize = readMapHeader();
+        Map<String, byte[]> result = new HashMap<>(mapCapacity(mapSize));
+        for (int i = 0; i < mapSize; i++) {
+            result.put(readString(), readBytes());
+        }
+        return result;
+    }
+
+    /**
+     * Read a Map whose values are boolean, int, long, string, and byte[]
+     * @param valueType Type of the map's values
+     * @return
+     * @throws SerializationException
+     */
+    public Map<String, Object> readMap(SerializableDataType valueType) throws SerializationException {
+        int mapSize = readMapHeader();
+        Map<String, Object> result = new HashMap<>(mapCapacity(mapSize));
+        for (int i = 0; i < mapSize; i++) {
+            String key = readString();
+            Object value = switch (valueType) {
+                case BOOLEAN -> readBool();
+                case INT -> readInt();
+                case LONG -> readLong();
+                case STRING -> readString();
+                case ENUM -> throw new SerializationException("[readMap] Wrong method, please use readMapEnumValue instead");
+                case BYTES -> readBytes();
+                case MAP -> throw new SerializationException("[readMap] Map value cannot be a Map");
+                case LIST -> throw new SerializationException("[readMap] Map value cannot be a List");
+                case OBJECT -> throw new SerializationException("[readMap] Wrong method, please use readMapObjectValue instead");
+            };
+            result.put(key, value);
+        }
+        return result;
+    }
+
+    /**
+     * Read a Map whose values are enums
+     * @param enumClass Class of the map values
+     * @return
+     * @param <E>
+     * @throws SerializationException
+     */
+    public <E extends SerializableEnum> Map<String, Object> readMapEnumValue(Class<E> enumClass) throws SerializationException {
+        int mapSize = readMapHeader();
+        Map<String, Object> result = new HashMap<>(mapCapacity(mapSize));
+        for (int i = 0; i < mapSize; i++) {
+            result.put(readString(), readEnum(enumClass));
+        }
+        return result;
+    }
+
+    /**
+     * Read a Map whose values are objects
+     * @param objectClass Class of the map values, which must have a 0-arg constructor
+     * @return
+     * @param <T>
+     * @throws SerializationException
+     */
+    public <T extends BinarySerializable> Map<String, Object> readMapObjectValue(Class<T> objectClass) throws SerializationException {
+        int mapSize = readMapHeader();
+        Map<String, Object> result = new HashMap<>(mapCapacity(mapSize));
+        for (int i = 0; i < mapSize; i++) {
+            String key = readString();
+            T value = newInstance(objectClass);
+            value.readFrom(this);
+            result.put(key, value);
+        }
+        return result;
+    }
+
+    /**
+     * Read a List whose members are boolean, int, long, String, or byte[]
+     * @param memberType Type of the List members
+     * @return
+     * @throws SerializationException
+     */
+    public List<Object> readList(SerializableDataType memberType) throws SerializationException {
+        int listSize = readListHeader();
+        List<Object> result = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            Object member = switch (memberType) {
+                case BOOLEAN -> readBool();
+                case INT -> readInt();
+                case LONG -> readLong();
+                case STRING -> readString();
+                case ENUM -> throw new SerializationException("[readList] Wrong method, please use readListEnumValue instead");
+                case BYTES -> readBytes();
+                case MAP -> throw new SerializationException("[readList] List member cannot be a Map");
+                case LIST -> throw new SerializationException("[readList] List member cannot be a List");
+                case OBJECT -> throw new SerializationException("[readList] Wrong method, please use readListObjectValue instead");
+            };
+            result.add(member);
+        }
+        return result;
+    }
+
+    /**
+     * Read a List whose members are enums
+     * @param enumClass the class of the list members
+     * @return
+     * @param <E>
+     * @throws SerializationException
+     */
+    public <E extends SerializableEnum> List<Object> readListEnumValue(Class<E> enumClass) throws SerializationException {
+        int listSize = readListHeader();
+        List<Object> result = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            result.add(readEnum(enumClass));
+        }
+        return result;
+    }
+
+    /**
+     * Read a List whose members are objects
+     * @param objectClass the class of the members, which must have a 0-arg constructor
+     * @return
+     * @param <T>
+     * @throws SerializationException
+     */
+    public <T extends BinarySerializable> List<Object> readListObjectValue(Class<T> objectClass) throws SerializationException {
+        int listSize = readListHeader();
+        List<Object> result = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            T member = newInstance(objectClass);
+            member.readFrom(this);
+            result.add(member);
+        }
+        return result;
+    }
+
+    private void readPrimitiveHeader(SerializableDataType dataType, int expectedSize) throws SerializationException {
+        if (readHeader(dataType) != expectedSize) {
+            throw new SerializationException("Invalid byte array for " + dataType.name());
+        }
+        ensureRemaining(expectedSize, dataType.name());
+    }
+
+    private int readMapHeader() throws SerializationException {
+        int mapSize = readHeader(SerializableDataType.MAP);
+        if (mapSize > remaining()) {   // Every pair takes more than 1 byte
+            throw new SerializationException("[readMap] Invalid length of map value");
+        }
+        return mapSize;
+    }
+
+    private int readListHeader() throws SerializationException {
+        int listSize = readHeader(SerializableDataType.LIST);
+        if (listSize > remaining()) {  // Every member takes more than 1 byte
+            throw new SerializationException("[readList] Invalid length of list value");
+        }
+        return listSize;
+    }
+
+    private void ensureRemaining(int length, String what) throws SerializationException {
+        if (buffer.remaining() < length) {
+            throw new SerializationException("Serialized " + what + " is truncated: need " + length + " bytes, " + buffer.remaining() + " remaining");
+        }
+    }
+
+    private static int mapCapacity(int mapSize) {
+        return (int) (mapSize / 0.75f) + 1;
+    }
+
+    private static <T extends BinarySerializable> T newInstance(Class<T> objectClass) throws SerializationException {
+        try {
+            return objectClass.getDeclaredConstructor().newInstance();
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new SerializationException("[newInstance] Failed to invoke the 0-arg constructor of the specified object");
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package org.ketchup.bookie.common.util;
+
+import org.ketchup.bookie.common.enums.SerializableDataType;
+import org.ketchup.bookie.common.enums.SerializableEnum;
+import org.ketchup.bookie.common.exception.SerializationException;
+import org.ketchup.bookie.common.pojo.BinarySerializable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Encodes values in the format described in PROTOCOL.md straight into a single growable {@link ByteBuffer}, instead of
+ * building a byte[] per value and concatenating them. Headers whose size is only known after their content has been
+ * written (e.g. an object nested in a byte[] value) are reserved first and backpatched afterwards.
+ * <p>
+ * Not thread-safe. Use {@link #encode(BinarySerializable)} to encode with a writer reused by the current thread.
+ */
+public class BinaryWriter {
+
+    private static final int HEADER_SIZE = 4;
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * Writers reused by a thread are shrunk back after encoding anything larger than this (the maximum UDP payload)
+     */
+    private static final int MAX_RETAINED_CAPACITY = 65507;
+
+    private static final ThreadLocal<BinaryWriter> THREAD_WRITER = ThreadLocal.withInitial(BinaryWriter::new);
+
+    private ByteBuffer buffer;
+    private boolean inUse = false;
+
+    public BinaryWriter() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public BinaryWriter(int initialCapacity) {
+        this.buffer = ByteBuffer.allocate(initialCapacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Serialize object with the writer of the current thread, falling back to a new writer if it is already in use
+     * (i.e. encode() is called while encoding another object).
+     * @param object
+     * @return serialized bytes of object
+     * @throws SerializationException
+     */
+    public static byte[] encode(BinarySerializable object) throws SerializationException {
+        BinaryWriter writer = THREAD_WRITER.get();
+        if (writer.inUse) {
+            writer = new BinaryWriter();
+        }
+        writer.inUse = true;
+        try {
+            writer.reset();
+            object.writeTo(writer);
+            return writer.toByteArray();
+        } finally {
+            writer.inUse = false;
+            if (writer.buffer.capacity() > MAX_RETAINED_CAPACITY) {
+                writer.buffer = ByteBuffer.allocate(INITIAL_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+    }
+
+    /**
+     * Discard everything written so far.
+     */
+    public void reset() {
+        buffer.clear();
+    }
+
+    public int position() {
+        return buffer.position();
+    }
+
+    /**
+     * Copy the bytes written so far to a new array.
+     * @return
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[buffer.position()];
+        buffer.get(0, bytes);
+        return bytes;
+    }
+
+    /**
+     * @return a read-only view of the bytes written so far, valid until the next write or reset
+     */
+    public ByteBuffer asBuffer() {
+        return buffer.duplicate().flip().asReadOnlyBuffer();
+    }
+
+    /**
+     * Write a 4-byte header.
+     * @param dataType type of the value
+     * @param size size of the value ( = number of bytes for primitive) ( = number of key:value pairs for Map/Object) ( = number of members for List)
+     * @throws SerializationException
+     */
+    public void writeHeader(SerializableDataType dataType, int size) throws SerializationException {
+        if (size < 0 || size > SerializeUtils.MAX_SIZE) {
+            throw new SerializationException("The size of the object to be serialized is too large");
+        }
+        ensureCapacity(HEADER_SIZE);
+        buffer.put((byte) dataType.getSerializedValue());
+        buffer.put((byte) size);
+        buffer.put((byte) (size >>> 8));
+        buffer.put((byte) (size >>> 16));
+    }
+
+    public void writeBool(boolean boolValue) throws SerializationException {
+        writeHeader(SerializableDataType.BOOLEAN, 1);
+        ensureCapacity(1);
+        buffer.put((byte) (boolValue ? 1 : 0));
+    }
+
+    public void writeInt(int intValue) throws SerializationException {
+        writeHeader(SerializableDataType.INT, 4);
+        ensureCapacity(4);
+        buffer.putInt(intValue);
+    }
+
+    public void writeLong(long longValue) throws SerializationException {
+        writeHeader(SerializableDataType.LONG, 8);
+        ensureCapacity(8);
+        buffer.putLong(longValue);
+    }
+
+    /**
+     * Write a String value. ASCII strings are written without any intermediate byte[].
+     * @param stringValue
+     * @throws SerializationException
+     */
+    public void writeString(String stringValue) throws SerializationException {
+        int length = stringValue.length();
+        if (isAscii(stringValue)) {
+            writeHeader(SerializableDataType.STRING, length);
+            ensureCapacity(length);
+            for (int i = 0; i < length; i++) {
+                buffer.put((byte) stringValue.charAt(i));
+            }
+        } else {
+            byte[] bytes = stringValue.getBytes(StandardCharsets.UTF_8);
+            writeHeader(SerializableDataType.STRING, bytes.length);
+            ensureCapacity(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    public void writeEnum(SerializableEnum enumValue) throws SerializationException {
+        writeHeader(SerializableDataType.ENUM, 4);
+        ensureCapacity(4);
+        buffer.putInt(enumValue.getValue());
+    }
+
+    public void writeBytes(byte[] bytes) throws SerializationException {
+        writeHeader(SerializableDataType.BYTES, bytes.length);
+        ensureCapacity(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Write a UUID as a 16-byte byte[] value (same layout as {@link SerializeUtils#uuidToBytes(UUID)}).
+     * @param uuid
+     * @throws SerializationException
+     */
+    public void writeUuid(UUID uuid) throws SerializationException {
+        writeHeader(SerializableDataType.BYTES, 16);
+        ensureCapacity(16);
+        // uuidToBytes() uses big-endian order
+        buffer.putLong(Long.reverseBytes(uuid.getMostSignificantBits()));
+        buffer.putLong(Long.reverseBytes(uuid.getLeastSignificantBits()));
+    }
+
+    /**
+     * Start a byte[] value whose content is written by the caller afterwards, e.g. a nested object.
+     * @return the position of the reserved header, to be passed to {@link #endBytes(int)}
+     */
+    public int beginBytes() {
+        ensureCapacity(HEADER_SIZE);
+        int mark = buffer.position();
+        buffer.position(mark + HEADER_SIZE);
+        return mark;
+    }
+
+    /**
+     * Backpatch the header reserved by {@link #beginBytes()} with the number of bytes written since.
+     * @param mark
+     * @throws SerializationException
+     */
+    public void endBytes(int mark) throws SerializationException {
+        int end = buffer.position();
+        buffer.position(mark);
+        writeHeader(SerializableDataType.BYTES, end - mark - HEADER_SIZE);
+        buffer.position(end);
+    }
+
+    /**
+     * Write the header of an object with fieldCount fields. Each field must then be written as a key (see
+     * {@link #writeField(String)}) followed by its value.
+     * @param fieldCount
+     * @throws SerializationException
+     */
+    public void writeObjectHeader(int fieldCount) throws SerializationException {
+        writeHeader(SerializableDataType.OBJECT, fieldCount);
+    }
+
+    public void writeField(String field) throws SerializationException {
+        writeString(field);
+    }
+
+    public void writeBytesMap(Map<String, byte[]> map) throws SerializationException {
+        writeHeader(SerializableDataType.MAP, map.size());
+        for (Map.Entry<String, byte[]> entry : map.entrySet()) {
+            writeString(entry.getKey());
+            writeBytes(entry.getValue());
+        }
+    }
+
+    /**
+     * Write Map values
+     * @param map
+     * @param valueType Type of the map's value
+     * @param <T>
+     * @throws SerializationException
+     */
+    public <T> void writeMap(Map<String, T> map, SerializableDataType valueType) throws SerializationException {
+        writeHeader(SerializableDataType.MAP, map.size());
+        for (Map.Entry<String, T> entry : map.entrySet()) {
+            writeString(entry.getKey());
+            writeValue(entry.getValue(), valueType, "[writeMap]", "Value of a Map");
+        }
+    }
+
+    /**
+     * Write List values
+     * @param list
+     * @param memberType Type of the List's members
+     * @param <T>
+     * @throws SerializationException
+     */
+    public <T> void writeList(List<T> list, SerializableDataType memberType) throws SerializationException {
+        writeHeader(SerializableDataType.LIST, list.size());
+        for (T member : list) {
+            writeValue(member, memberType, "[writeList]", "Member of a List");
+        }
+    }
+
+    private void writeValue(Object value, SerializableDataType valueType, String method, String what) throws SerializationException {
+        switch (valueType) {
+            case BOOLEAN -> writeBool((Boolean) checkType(value, Boolean.class, method));
+            case INT -> writeInt((Integer) checkType(value, Integer.class, method));
+            case LONG -> writeLong((Long) checkType(value, Long.class, method));
+            case STRING -> writeString((String) checkType(value, String.class, method));
+            case ENUM -> writeEnum((SerializableEnum) checkType(value, SerializableEnum.class, method));
+            case BYTES -> writeBytes((byte[]) checkType(value, byte[].class, method));
+            case MAP -> throw new SerializationException(method + " " + what + " cannot be a Map");
+            case LIST -> throw new SerializationException(method + " " + what + " cannot be a List");
+            case OBJECT -> {
+                if (value instanceof BinarySerializable) {
+                    ((BinarySerializable) value).writeTo(this);
+                } else {
+                    throw new SerializationException(method + " " + what + " cannot be an object not implementing BinarySerializable");
+                }
+            }
+        }
+    }
+
+    private static Object checkType(Object value, Class<?> type, String method) throws SerializationException {
+        if (!type.isInstance(value)) {
+            throw new SerializationException(method + " Provided data type of value does not match actual type");
+        }
+        return value;
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int length) {
+        if (buffer.remaining() >= length) return;
+        int newCapacity = Math.max(buffer.capacity() * 2, buffer.position() + length);
+        ByteBuffer newBuffer = ByteBuffer.allocate(newCapacity).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip();
+        newBuffer.put(buffer);
+        buffer = newBuffer;
+    }
+}
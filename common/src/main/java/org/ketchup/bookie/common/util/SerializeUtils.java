@@ -106,70 +106,9 @@ public class SerializeUtils {
      */
     public static <T> byte[] serializeMap(Map<String, T> map, SerializableDataType valueType) throws SerializationException {
         if (map.size() > MAX_SIZE) throw new SerializationException("[serializeMap] Input map to serializer is larger than maximum size");
-        byte[] contentBytes = new byte[0];
-        for (String key : map.keySet()) {
-            // Process key
-            byte[] keyBytes = serializeString(key);
-
-            // Process value
-            T value = map.get(key);
-            byte[] valueBytes = switch (valueType) {
-                case BOOLEAN -> {
-                    if (value instanceof Boolean) {
-                        yield serializeBool((Boolean) value);
-                    } else {
-                        throw new SerializationException("[serializeMap] Provided data type of value does not match actual type");
-                    }
-                }
-                case INT -> {
-                    if (value instanceof Integer) {
-                        yield serializeInt((Integer) value);
-                    } else {
-                        throw new SerializationException("[serializeMap] Provided data type of value does not match actual type");
-                    }
-                }
-                case LONG -> {
-                    if (value instanceof Long) {
-                        yield serializeLong((Long) value);
-                    } else {
-                        throw new SerializationException("[serializeMap] Provided data type of value does not match actual type");
-                    }
-                }
-                case STRING -> {
-                    if (value instanceof String) {
-                        yield serializeString((String) value);
-                    } else {
-                        throw new SerializationException("[serializeMap] Provided data type of value does not match actual type");
-                    }
-                }
-                case ENUM -> {
-                    if (value instanceof SerializableEnum) {
-                        yield serializeEnum((SerializableEnum) value);
-                    } else {
-                        throw new SerializationException("[serializeMap] Provided data type of value does not match actual type");
-                    }
-                }
-                case BYTES -> {
-                    if (value instanceof byte[]) {
-                        yield serializeBytes((byte[]) value);
-                    } else {
-                        throw new SerializationException("[serializeMap] Provided data type of value does not match actual type");
-                    }
-                }
-                case MAP -> throw new SerializationException("[serializeMap] Value of a Map cannot be a Map");
-                case LIST -> throw new SerializationException("[serializeMap] Value of a Map cannot be a List");
-                case OBJECT -> {
-                    if (value instanceof BinarySerializable) {
-                        yield ((BinarySerializable) value).toBytes();
-                    } else {
-                        throw new SerializationException("[serializeMap] Value of a Map cannot be an object not implementing BinarySerializable");
-                    }
-                }
-            };
-
-            contentBytes = concatBytes(contentBytes, keyBytes, valueBytes);
-        }
-        return wrapHeader(contentBytes, SerializableDataType.MAP, map.size());
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeMap(map, valueType);
+        return writer.toByteArray();
     }
 
     /**
@@ -182,64 +121,9 @@ public class SerializeUtils {
      */
     public static <T> byte[] serializeList(List<T> list, SerializableDataType memberType) throws SerializationException {
         if (list.size() > MAX_SIZE) throw new SerializationException("[serializeList] Input list to serializer is larger than maximum size");
-        byte[] result = new byte[0];
-        for (T member : list) {
-            byte[] memberBytes = switch (memberType) {
-                case BOOLEAN -> {
-                    if (member instanceof Boolean) {
-                        yield serializeBool((Boolean) member);
-                    } else {
-                        throw new SerializationException("[serializeList] Provided data type of member does not match actual type");
-                    }
-                }
-                case INT -> {
-                    if (member instanceof Integer) {
-                        yield serializeInt((Integer) member);
-                    } else {
-                        throw new SerializationException("[serializeList] Provided data type of member does not match actual type");
-                    }
-                }
-                case LONG -> {
-                    if (member instanceof Long) {
-                        yield serializeLong((Long) member);
-                    } else {
-                        throw new SerializationException("[serializeList] Provided data type of member does not match actual type");
-                    }
-                }
-                case STRING -> {
-                    if (member instanceof String) {
-                        yield serializeString((String) member);
-                    } else {
-                        throw new SerializationException("[serializeList] Provided data type of member does not match actual type");
-                    }
-                }
-                case ENUM -> {
-                    if (member instanceof SerializableEnum) {
-                        yield serializeEnum((SerializableEnum) member);
-                    } else {
-                        throw new SerializationException("[serializeList] Provided data type of member does not match actual type");
-                    }
-                }
-                case BYTES -> {
-                    if (member instanceof byte[]) {
-                        yield serializeBytes((byte[]) member);
-                    } else {
-                        throw new SerializationException("[serializeList] Provided data type of member does not match actual type");
-                    }
-                }
-                case MAP -> throw new SerializationException("[serializeList] Member of a List cannot be a Map");
-                case LIST -> throw new SerializationException("[serializeList] Member of a List cannot be a List");
-                case OBJECT -> {
-                    if (member instanceof BinarySerializable) {
-                        yield ((BinarySerializable) member).toBytes();
-                    } else {
-                        throw new SerializationException("[serializeList] Member of a List cannot be an object not implementing BinarySerializable");
-                    }
-                }
-            };
-            result = concatBytes(result, memberBytes);
-        }
-        return wrapHeader(result, SerializableDataType.LIST, list.size());
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeList(list, memberType);
+        return writer.toByteArray();
     }
 
     /**
@@ -361,38 +245,7 @@ public class SerializeUtils {
      * @throws SerializationException
      */
     public static Map<String, Object> deserializeMap(byte[] bytes, SerializableDataType valueType) throws SerializationException {
-        int mapSize = readHeader(bytes, SerializableDataType.MAP);
-        if (mapSize < 0 || mapSize > MAX_SIZE) {
-            log.error("[deserializeMap] Invalid length of map value");
-            throw new SerializationException("[deserializeMap] Invalid length of map value");
-        }
-        bytes = Arrays.copyOfRange(bytes, 4, bytes.length);
-        Map<String, Object> result = new HashMap<>(mapSize);
-        for (int i = 0; i < mapSize; i++) {
-            // Read key
-            int keyLen = readHeader(bytes, SerializableDataType.STRING);
-            String key = deserializeString(Arrays.copyOfRange(bytes, 0, keyLen + 4));
-            bytes = Arrays.copyOfRange(bytes, keyLen + 4, bytes.length);
-
-            // Read value
-            int valueLen = readHeader(bytes, valueType);
-            byte[] valueBytes = Arrays.copyOfRange(bytes, 0, valueLen + 4);
-            Object value = switch (valueType) {
-                case BOOLEAN -> deserializeBool(valueBytes);
-                case INT -> deserializeInt(valueBytes);
-                case LONG -> deserializeLong(valueBytes);
-                case STRING -> deserializeString(valueBytes);
-                case ENUM -> throw new SerializationException("[deserializeMap] Wrong method, please use deserializeMapEnumValue instead");
-                case BYTES -> deserializeBytes(valueBytes);
-                case MAP -> throw new SerializationException("[deserializeMap] Map value cannot be a Map");
-                case LIST -> throw new SerializationException("[deserializeMap] Map value cannot be a List");
-                case OBJECT -> throw new SerializationException("[deserializeMap] Wrong method, please use deserializeMapObjectValue instead");
-            };
-            bytes = Arrays.copyOfRange(bytes, valueLen + 4, bytes.length);
-
-            result.put(key, value);
-        }
-        return result;
+        return new BinaryReader(bytes).readMap(valueType);
     }
 
     /**
@@ -404,27 +257,7 @@ public class SerializeUtils {
      * @throws SerializationException
      */
     public static <E extends SerializableEnum> Map<String, Object> deserializeMapEnumValue(byte[] bytes, Class<E> enumClass) throws SerializationException {
-        int mapSize = readHeader(bytes, SerializableDataType.MAP);
-        if (mapSize < 0 || mapSize > MAX_SIZE) {
-            log.error("[deserializeMapEnumValue] Invalid length of map value");
-            throw new SerializationException("[deserializeMapEnumValue] Invalid length of map value");
-        }
-        bytes = Arrays.copyOfRange(bytes, 4, bytes.length);
-        Map<String, Object> result = new HashMap<>(mapSize);
-        for (int i = 0; i < mapSize; i++) {
-            // Read key
-            int keyLen = readHeader(bytes, SerializableDataType.STRING);
-            String key = deserializeString(Arrays.copyOfRange(bytes, 0, keyLen + 4));
-            bytes = Arrays.copyOfRange(bytes, keyLen + 4, bytes.length);
-
-            // Read value
-            int valueLen = readHeader(bytes, SerializableDataType.ENUM);
-            Object value = deserializeEnum(Arrays.copyOfRange(bytes, 0, valueLen + 4), enumClass);
-            bytes = Arrays.copyOfRange(bytes, valueLen + 4, bytes.length);
-
-            result.put(key, value);
-        }
-        return result;
+        return new BinaryReader(bytes).readMapEnumValue(enumClass);
     }
 
     /**
@@ -436,33 +269,7 @@ public class SerializeUtils {
      * @throws SerializationException
      */
     public static <T extends BinarySerializable> Map<String, Object> deserializeMapObjectValue(byte[] bytes, Class<T> objectClass) throws SerializationException {
-        int mapSize = readHeader(bytes, SerializableDataType.MAP);
-        if (mapSize < 0 || mapSize > MAX_SIZE) {
-            log.error("[deserializeMapObjectValue] Invalid length of map value");
-            throw new SerializationException("[deserializeMapObjectValue] Invalid length of map value");
-        }
-        bytes = Arrays.copyOfRange(bytes, 4, bytes.length);
-        Map<String, Object> result = new HashMap<>(mapSize);
-        for (int i = 0; i < mapSize; i++) {
-            // Read key
-            int keyLen = readHeader(bytes, SerializableDataType.STRING);
-            String key = deserializeString(Arrays.copyOfRange(bytes, 0, keyLen + 4));
-            bytes = Arrays.copyOfRange(bytes, keyLen + 4, bytes.length);
-
-            // Read value
-            int valueLen = readHeader(bytes, SerializableDataType.OBJECT);
-            try {
-                BinarySerializable value = objectClass.getDeclaredConstructor((Class<?>) null).newInstance();
-                value.fromBytes(Arrays.copyOfRange(bytes, 0, valueLen + 4));
-                bytes = Arrays.copyOfRange(bytes, valueLen + 4, bytes.length);
-
-                result.put(key, value);
-            } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
-                log.error("[deserializeMapObjectValue] Failed to invoke the 0-arg constructor of the specified object");
-                throw new SerializationException("[deserializeMapObjectValue] Failed to invoke the 0-arg constructor of the specified object");
-            }
-        }
-        return result;
+        return new BinaryReader(bytes).readMapObjectValue(objectClass);
     }
 
     /**
@@ -473,33 +280,7 @@ public class SerializeUtils {
      * @throws SerializationException
      */
     public static List<Object> deserializeList(byte[] bytes, SerializableDataType memberType) throws SerializationException {
-        int listSize = readHeader(bytes, SerializableDataType.LIST);
-        if (listSize < 0 || listSize > MAX_SIZE) {
-            log.error("[deserializeList] Invalid length of list value");
-            throw new SerializationException("[deserializeList] Invalid length of list value");
-        }
-        bytes = Arrays.copyOfRange(bytes, 4, bytes.length);
-        List<Object> result = new ArrayList<>(listSize);
-        for (int i = 0; i < listSize; i++) {
-            // Read member
-            int memberLen = readHeader(bytes, memberType);
-            byte[] memberBytes = Arrays.copyOfRange(bytes, 0, memberLen + 4);
-            Object member = switch (memberType) {
-                case BOOLEAN -> deserializeBool(memberBytes);
-                case INT -> deserializeInt(memberBytes);
-                case LONG -> deserializeLong(memberBytes);
-                case STRING -> deserializeString(memberBytes);
-                case ENUM -> throw new SerializationException("[deserializeList] Wrong method, please use deserializeListEnumValue instead");
-                case BYTES -> deserializeBytes(memberBytes);
-                case MAP -> throw new SerializationException("[deserializeList] List member cannot be a Map");
-                case LIST -> throw new SerializationException("[deserializeList] List member cannot be a List");
-                case OBJECT -> throw new SerializationException("[deserializeList] Wrong method, please use deserializeListObjectValue instead");
-            };
-            bytes = Arrays.copyOfRange(bytes, memberLen + 4, bytes.length);
-
-            result.add(member);
-        }
-        return result;
+        return new BinaryReader(bytes).readList(memberType);
     }
 
     /**
@@ -511,22 +292,7 @@ public class SerializeUtils {
      * @throws SerializationException
      */
     public static <E extends SerializableEnum> List<Object> deserializeListEnumValue(byte[] bytes, Class<E> enumClass) throws SerializationException {
-        int listSize = readHeader(bytes, SerializableDataType.LIST);
-        if (listSize < 0 || listSize > MAX_SIZE) {
-            log.error("[deserializeListEnumValue] Invalid length of list value");
-            throw new SerializationException("[deserializeListEnumValue] Invalid length of list value");
-        }
-        bytes = Arrays.copyOfRange(bytes, 4, bytes.length);
-        List<Object> result = new ArrayList<>(listSize);
-        for (int i = 0; i < listSize; i++) {
-            // Read value
-            int memberLen = readHeader(bytes, SerializableDataType.ENUM);
-            Object member = deserializeEnum(Arrays.copyOfRange(bytes, 0, memberLen + 4), enumClass);
-            bytes = Arrays.copyOfRange(bytes, memberLen + 4, bytes.length);
-
-            result.add(member);
-        }
-        return result;
+        return new BinaryReader(bytes).readListEnumValue(enumClass);
     }
 
     /**
@@ -538,28 +304,7 @@ public class SerializeUtils {
      * @throws SerializationException
      */
     public static <T extends BinarySerializable> List<Object> deserializeListObjectValue(byte[] bytes, Class<T> objectClass) throws SerializationException {
-        int listSize = readHeader(bytes, SerializableDataType.MAP);
-        if (listSize < 0 || listSize > MAX_SIZE) {
-            log.error("[deserializeListEnumValue] Invalid length of list value");
-            throw new SerializationException("[deserializeListEnumValue] Invalid length of list value");
-        }
-        bytes = Arrays.copyOfRange(bytes, 4, bytes.length);
-        List<Object> result = new ArrayList<>(listSize);
-        for (int i = 0; i < listSize; i++) {
-            // Read value
-            int memberLen = readHeader(bytes, SerializableDataType.OBJECT);
-            try {
-                BinarySerializable member = objectClass.getDeclaredConstructor((Class<?>) null).newInstance();
-                member.fromBytes(Arrays.copyOfRange(bytes, 0, memberLen + 4));
-                bytes = Arrays.copyOfRange(bytes, memberLen + 4, bytes.length);
-
-                result.add(member);
-            } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
-                log.error("[deserializeMapObjectValue] Failed to invoke the 0-arg constructor of the specified object");
-                throw new SerializationException("[deserializeMapObjectValue] Failed to invoke the 0-arg constructor of the specified object");
-            }
-        }
-        return result;
+        return new BinaryReader(bytes).readListObjectValue(objectClass);
     }
 
     /**
@@ -594,16 +339,12 @@ public class SerializeUtils {
         if (Objects.isNull(bytes) || bytes.length < 4) {
             throw new SerializationException("The serialized object must at least be 4 bytes in size");
         }
-        byte[] headerBytes = Arrays.copyOfRange(bytes, 0, 4);
         // Verify if the data type matches
-        if (headerBytes[0] != dataType.getSerializedValue()) {
+        if (bytes[0] != dataType.getSerializedValue()) {
             throw new SerializationException("Wrong header for type " + dataType.name());
         }
-        // Read the size bytes
-        byte[] sizeBytes = Arrays.copyOfRange(headerBytes, 1, 5);
-        ByteBuffer buffer = ByteBuffer.wrap(sizeBytes);
-        buffer.order(ByteOrder.LITTLE_ENDIAN); // Set byte order to little-endian
-        return buffer.getInt();
+        // Read the size bytes (little-endian)
+        return (bytes[1] & 0xFF) | ((bytes[2] & 0xFF) << 8) | ((bytes[3] & 0xFF) << 16);
     }
 
     /**
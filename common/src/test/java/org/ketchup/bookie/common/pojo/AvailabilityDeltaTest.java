@@ -0,0 +1,50 @@
+package org.ketchup.bookie.common.pojo;
+
+import org.junit.jupiter.api.Test;
+import org.ketchup.bookie.common.exception.SerializationException;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AvailabilityDeltaTest {
+
+    private static final int MINS_IN_WEEK = 7 * 24 * 60;
+
+    @Test
+    void diffSingleBooking() {
+        Availability before = Availability.fromBitmap(4, new byte[MINS_IN_WEEK / 8]);
+        Availability after = Availability.fromBitmap(4, new byte[MINS_IN_WEEK / 8]);
+        after.setBooked(603, 633, true);
+
+        AvailabilityDelta delta = AvailabilityDelta.diff(7, before, after);
+        assertEquals(4, delta.getFacilityId());
+        assertEquals(7, delta.getVersion());
+        assertEquals(1, delta.getRangeCount());
+        // 30 minutes changed: 9 bytes instead of a 1260-byte bitmap
+        assertEquals(AvailabilityDelta.RANGE_SIZE, delta.getChanges().length);
+
+        delta.applyTo(before);
+        assertEquals(after, before);
+    }
+
+    @Test
+    void diffRandomChangesAndSerialize() throws SerializationException {
+        Random random = new Random(4051);
+        Availability before = Availability.fromBitmap(1, new byte[MINS_IN_WEEK / 8]);
+        Availability after = Availability.fromBitmap(1, new byte[MINS_IN_WEEK / 8]);
+        for (int i = 0; i < 200; i++) {
+            int start = random.nextInt(MINS_IN_WEEK - 120);
+            before.setBooked(start, start + random.nextInt(1, 120), random.nextBoolean());
+            start = random.nextInt(MINS_IN_WEEK - 120);
+            after.setBooked(start, start + random.nextInt(1, 120), random.nextBoolean());
+        }
+        // Changes ending at the last minute of the week
+        after.setBooked(MINS_IN_WEEK - 5, MINS_IN_WEEK, !before.isBooked(MINS_IN_WEEK - 1));
+
+        AvailabilityDelta delta = new AvailabilityDelta();
+        delta.fromBytes(AvailabilityDelta.diff(2, before, after).toBytes());
+        delta.applyTo(before);
+        assertEquals(after, before);
+    }
+}
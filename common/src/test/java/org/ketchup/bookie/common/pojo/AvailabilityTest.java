@@ -35,4 +35,21 @@ public class AvailabilityTest {
             throw new RuntimeException(e);
         }
     }
+
+    @Test
+    void bitmapLayoutTest() {
+        byte[] bitmap = new byte[7 * 24 * 60 / 8];
+        bitmap[0] = (byte) 0b10000001;  // minutes 0 and 7
+        bitmap[1259] = 0x01;            // last minute of the week
+        Availability availability = Availability.fromBitmap(3, bitmap);
+        assertTrue(availability.isBooked(0));
+        assertFalse(availability.isBooked(1));
+        assertTrue(availability.isBooked(7));
+        assertTrue(availability.isBooked(7 * 24 * 60 - 1));
+
+        Availability copy = new Availability();
+        copy.setFacilityId(3);
+        copy.setBooked(availability.getBooked());
+        assertEquals(availability, copy);
+    }
 }
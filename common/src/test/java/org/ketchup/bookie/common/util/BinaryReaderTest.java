@@ -0,0 +1,80 @@
+package org.ketchup.bookie.common.util;
+
+import org.junit.jupiter.api.Test;
+import org.ketchup.bookie.common.enums.FacilityType;
+import org.ketchup.bookie.common.enums.SerializableDataType;
+import org.ketchup.bookie.common.exception.SerializationException;
+import org.ketchup.bookie.common.pojo.Facility;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryReaderTest {
+
+    @Test
+    void readConsecutiveValues() throws SerializationException {
+        UUID uuid = UUID.randomUUID();
+        byte[] serialized = SerializeUtils.concatBytes(
+                SerializeUtils.serializeBool(true),
+                SerializeUtils.serializeInt(-27681),
+                SerializeUtils.serializeLong(8463968491L),
+                SerializeUtils.serializeString("Mama mia!"),
+                SerializeUtils.serializeEnum(FacilityType.STUDY_POD),
+                SerializeUtils.serializeBytes(SerializeUtils.uuidToBytes(uuid)),
+                SerializeUtils.serializeBytes(new byte[] {43, 7, 13})
+        );
+        BinaryReader reader = new BinaryReader(serialized);
+        assertTrue(reader.readBool());
+        assertEquals(-27681, reader.readInt());
+        assertEquals(8463968491L, reader.readLong());
+        assertEquals("Mama mia!", reader.readString());
+        assertEquals(FacilityType.STUDY_POD, reader.readEnum(FacilityType.class));
+        assertEquals(uuid, reader.readUuid());
+        assertArrayEquals(new byte[] {43, 7, 13}, reader.readBytes());
+        assertEquals(0, reader.remaining());
+    }
+
+    @Test
+    void readFromBufferSlice() throws SerializationException {
+        byte[] value = SerializeUtils.serializeString("sliced");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(value.length + 10);
+        buffer.position(5);
+        buffer.put(value);
+        buffer.flip().position(5);
+        BinaryReader reader = new BinaryReader(buffer);
+        assertEquals("sliced", reader.readString());
+        assertEquals(0, reader.remaining());
+    }
+
+    @Test
+    void readLargeMapOfObjects() throws SerializationException {
+        Map<String, byte[]> facilities = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            facilities.put("facility-" + i, new Facility(i, "room " + i, FacilityType.MEETING_ROOM).toBytes());
+        }
+        Map<String, byte[]> deserialized = new BinaryReader(SerializeUtils.serializeMap(facilities, SerializableDataType.BYTES)).readBytesMap();
+        assertEquals(facilities.size(), deserialized.size());
+        for (int i = 0; i < 20_000; i++) {
+            Facility facility = Facility.newInstanceFromBytes(deserialized.get("facility-" + i));
+            assertEquals(new Facility(i, "room " + i, FacilityType.MEETING_ROOM), facility);
+        }
+    }
+
+    @Test
+    void rejectTruncatedValue() throws SerializationException {
+        byte[] serialized = SerializeUtils.serializeString("truncated");
+        BinaryReader reader = new BinaryReader(Arrays.copyOf(serialized, serialized.length - 1));
+        assertThrows(SerializationException.class, reader::readString);
+    }
+
+    @Test
+    void rejectWrongField() throws SerializationException {
+        BinaryReader reader = new BinaryReader(SerializeUtils.serializeString("name"));
+        assertThrows(SerializationException.class, () -> reader.readField("nome"));
+    }
+}
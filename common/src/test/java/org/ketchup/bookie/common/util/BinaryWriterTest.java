@@ -0,0 +1,96 @@
+package org.ketchup.bookie.common.util;
+
+import org.junit.jupiter.api.Test;
+import org.ketchup.bookie.common.enums.FacilityType;
+import org.ketchup.bookie.common.enums.SerializableDataType;
+import org.ketchup.bookie.common.exception.SerializationException;
+import org.ketchup.bookie.common.pojo.Facility;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryWriterTest {
+
+    @Test
+    void writeMatchesSerializeUtils() throws SerializationException {
+        UUID uuid = UUID.randomUUID();
+        BinaryWriter writer = new BinaryWriter(8);
+        writer.writeBool(true);
+        writer.writeInt(-27681);
+        writer.writeLong(8463968491L);
+        writer.writeString("Mama mia!");
+        writer.writeEnum(FacilityType.STUDY_POD);
+        writer.writeUuid(uuid);
+        writer.writeBytes(new byte[] {43, 7, 13});
+        byte[] expected = SerializeUtils.concatBytes(
+                SerializeUtils.serializeBool(true),
+                SerializeUtils.serializeInt(-27681),
+                SerializeUtils.serializeLong(8463968491L),
+                SerializeUtils.serializeString("Mama mia!"),
+                SerializeUtils.serializeEnum(FacilityType.STUDY_POD),
+                SerializeUtils.serializeBytes(SerializeUtils.uuidToBytes(uuid)),
+                SerializeUtils.serializeBytes(new byte[] {43, 7, 13})
+        );
+        assertArrayEquals(expected, writer.toByteArray());
+    }
+
+    @Test
+    void writeObjectMatchesLegacyLayout() throws SerializationException {
+        Facility facility = new Facility(7, "Seminar Room 1", FacilityType.MEETING_ROOM);
+        byte[] expected = SerializeUtils.wrapHeader(SerializeUtils.concatBytes(
+                SerializeUtils.serializeString("id"), SerializeUtils.serializeInt(7),
+                SerializeUtils.serializeString("name"), SerializeUtils.serializeString("Seminar Room 1"),
+                SerializeUtils.serializeString("type"), SerializeUtils.serializeEnum(FacilityType.MEETING_ROOM)
+        ), SerializableDataType.OBJECT, 3);
+        assertArrayEquals(expected, facility.toBytes());
+        Facility deserialized = new Facility();
+        deserialized.fromBytes(facility.toBytes());
+        assertEquals(facility, deserialized);
+    }
+
+    @Test
+    void backpatchNestedBytes() throws SerializationException {
+        Facility facility = new Facility(3, "Pod", FacilityType.STUDY_POD);
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeString("facility");
+        int mark = writer.beginBytes();
+        facility.writeTo(writer);
+        writer.endBytes(mark);
+
+        BinaryReader reader = new BinaryReader(writer.toByteArray());
+        assertEquals("facility", reader.readString());
+        assertArrayEquals(facility.toBytes(), reader.readBytes());
+        assertEquals(0, reader.remaining());
+    }
+
+    @Test
+    void writeLargeCollections() throws SerializationException {
+        Map<String, byte[]> facilities = new LinkedHashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            facilities.put("facility-" + i, new Facility(i, "room " + i, FacilityType.MEETING_ROOM).toBytes());
+        }
+        Map<String, byte[]> deserialized = new BinaryReader(SerializeUtils.serializeMap(facilities, SerializableDataType.BYTES)).readBytesMap();
+        assertEquals(facilities.size(), deserialized.size());
+        assertArrayEquals(facilities.get("facility-19999"), deserialized.get("facility-19999"));
+
+        List<String> names = facilities.keySet().stream().toList();
+        assertEquals(names, SerializeUtils.deserializeList(SerializeUtils.serializeList(names, SerializableDataType.STRING), SerializableDataType.STRING));
+    }
+
+    @Test
+    void writeNonAsciiString() throws SerializationException {
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeString("Phòng họp");
+        assertEquals("Phòng họp", new BinaryReader(writer.toByteArray()).readString());
+    }
+
+    @Test
+    void rejectWrongValueType() {
+        assertThrows(SerializationException.class,
+                () -> new BinaryWriter().writeMap(Map.of("a", "not an int"), SerializableDataType.INT));
+    }
+}
@@ -2,23 +2,223 @@ package org.tomato.bookie.distributedSystem.faultolerance;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
+/**
+ * Remembers request IDs, together with the serialized reply of each request once it is known, so that retransmitted
+ * requests can be answered with the original reply instead of being executed again.
+ * <p>
+ * Expiry is bucketed by time slice: every recorded ID is also queued in the bucket of the slice it was recorded in, and
+ * whole buckets are swept once their slice is older than the TTL. Sweeping is done by whichever caller of
+ * {@link #recordRequest(UUID)} first notices that a slice has expired, so no thread is needed and the cost per request
+ * stays constant. When there are more entries or reply bytes than allowed, the oldest slices are swept early.
+ */
 public class Deduplicator {
-    private final ConcurrentMap<UUID, Long> cache = new ConcurrentHashMap<>();
     private static final long TTL_MS = 300_000; // 5 minutes
+    private static final int MAX_ENTRIES = 100_000;
+    private static final long MAX_REPLY_BYTES = 64L * 1024 * 1024;
+    private static final long SLICE_MS = 1_000;
+
+    private static final class Entry {
+        private final long recordedAt;
+        private volatile byte[] reply;
+
+        private Entry(long recordedAt) {
+            this.recordedAt = recordedAt;
+        }
+    }
+
+    private final ConcurrentMap<UUID, Entry> cache = new ConcurrentHashMap<>();
+    private final long ttlMs;
+    private final int maxEntries;
+    private final long maxReplyBytes;
+    private final long sliceMs;
+    private final LongSupplier clock;
+    // bucket (slice % buckets.length) : IDs recorded during that slice
+    private final Queue<UUID>[] buckets;
+    // All slices up to and including this one have been swept
+    private final AtomicLong lastSweptSlice;
+    private final AtomicLong cachedReplyBytes = new AtomicLong(0);
+
+    public Deduplicator() {
+        this(TTL_MS, MAX_ENTRIES, MAX_REPLY_BYTES);
+    }
+
+    /**
+     * @param ttlMs how long request IDs and their replies are remembered
+     * @param maxEntries maximum number of request IDs remembered
+     * @param maxReplyBytes maximum total size of the cached replies
+     */
+    public Deduplicator(long ttlMs, int maxEntries, long maxReplyBytes) {
+        this(ttlMs, maxEntries, maxReplyBytes, SLICE_MS, System::currentTimeMillis);
+    }
+
+    @SuppressWarnings("unchecked")
+    Deduplicator(long ttlMs, int maxEntries, long maxReplyBytes, long sliceMs, LongSupplier clock) {
+        this.ttlMs = ttlMs;
+        this.maxEntries = maxEntries;
+        this.maxReplyBytes = maxReplyBytes;
+        this.sliceMs = sliceMs;
+        this.clock = clock;
+        // Slices which may still hold live IDs, plus margin for callers that computed their slice just before it expired
+        this.buckets = new Queue[(int) (ttlMs / sliceMs) + 3];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.lastSweptSlice = new AtomicLong(lastExpiredSlice(clock.getAsLong()));
+    }
 
     public boolean isDuplicate(UUID requestId) {
-        return cache.containsKey(requestId);
+        Entry entry = cache.get(requestId);
+        return entry != null && clock.getAsLong() - entry.recordedAt < ttlMs;
+    }
+
+    /**
+     * Record a request ID, unless it is already remembered.
+     * @param requestId
+     * @return true if the ID was recorded, false if it is a duplicate
+     */
+    public boolean recordRequest(UUID requestId) {
+        long now = clock.getAsLong();
+        boolean[] recorded = {false};
+        cache.compute(requestId, (id, existing) -> {
+            if (existing != null && now - existing.recordedAt < ttlMs) {
+                return existing;
+            }
+            if (existing != null) {
+                releaseReply(existing);
+            }
+            recorded[0] = true;
+            return new Entry(now);
+        });
+        if (!recorded[0]) {
+            return false;
+        }
+        // Sweep first: after an idle period, the expired slice swept now may share the bucket of the current slice
+        sweepExpired(now);
+        // A caller delayed since reading the clock must not queue into a slice which has been swept already. If it still
+        // races with a sweep of the same bucket, the sweep queues the ID again, and it is swept one rotation later.
+        long slice = Math.max(Math.floorDiv(now, sliceMs), lastSweptSlice.get() + 1);
+        buckets[(int) Math.floorMod(slice, (long) buckets.length)].add(requestId);
+        evictIfFull(now);
+        return true;
+    }
+
+    /**
+     * Store the serialized reply of a recorded request. Ignored if the request is no longer remembered or already has a reply.
+     * @param requestId
+     * @param reply
+     */
+    public void cacheReply(UUID requestId, byte[] reply) {
+        cache.computeIfPresent(requestId, (id, entry) -> {
+            if (entry.reply == null) {
+                entry.reply = reply;
+                cachedReplyBytes.addAndGet(reply.length);
+            }
+            return entry;
+        });
+        evictIfFull(clock.getAsLong());
+    }
+
+    /**
+     * Forget a recorded request, so that its next retransmission is executed as a new request.
+     * @param requestId
+     */
+    public void removeRequest(UUID requestId) {
+        // Its ID stays queued in its bucket until swept, which skips IDs no longer remembered
+        Entry removed = cache.remove(requestId);
+        if (removed != null) {
+            releaseReply(removed);
+        }
+    }
+
+    /**
+     * @param requestId
+     * @return the cached reply of the request, or null if the request is unknown, expired or still being executed
+     */
+    public byte[] getReply(UUID requestId) {
+        Entry entry = cache.get(requestId);
+        if (entry == null || clock.getAsLong() - entry.recordedAt >= ttlMs) return null;
+        return entry.reply;
+    }
+
+    /**
+     * @return number of request IDs currently remembered (including expired ones not swept yet)
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return total size of the cached replies
+     */
+    public long replyBytes() {
+        return cachedReplyBytes.get();
+    }
+
+    private long lastExpiredSlice(long now) {
+        // Every ID of slice s was recorded before (s + 1) * sliceMs
+        return Math.floorDiv(now - ttlMs, sliceMs) - 1;
+    }
+
+    private void sweepExpired(long now) {
+        long expiredSlice = lastExpiredSlice(now);
+        long sweptSlice = lastSweptSlice.get();
+        if (expiredSlice <= sweptSlice || !lastSweptSlice.compareAndSet(sweptSlice, expiredSlice)) {
+            return;
+        }
+        // After a long idle period, each bucket only needs to be swept once
+        long fromSlice = Math.max(sweptSlice + 1, expiredSlice - buckets.length + 1);
+        for (long slice = fromSlice; slice <= expiredSlice; slice++) {
+            sweepSlice(slice);
+        }
+    }
+
+    /**
+     * Sweep the oldest slices before they expire until the cache is within its bounds again. The current slice is never
+     * swept this way.
+     */
+    private void evictIfFull(long now) {
+        long currentSlice = Math.floorDiv(now, sliceMs);
+        while (cache.size() > maxEntries || cachedReplyBytes.get() > maxReplyBytes) {
+            long sweptSlice = lastSweptSlice.get();
+            if (sweptSlice + 1 >= currentSlice) return;
+            if (lastSweptSlice.compareAndSet(sweptSlice, sweptSlice + 1)) {
+                sweepSlice(sweptSlice + 1);
+            }
+        }
     }
 
-    public void recordRequest(UUID requestId) {
-        cache.put(requestId, System.currentTimeMillis());
-        scheduleCleanup(requestId);
+    private void sweepSlice(long slice) {
+        long recordedBefore = (slice + 1) * sliceMs;
+        Queue<UUID> bucket = buckets[(int) Math.floorMod(slice, (long) buckets.length)];
+        // Kept IDs are queued again in the bucket of the slice they were recorded in: the one they were polled from may
+        // have been their only queue position, if they were queued while this bucket was being swept
+        List<UUID> kept = new ArrayList<>();
+        UUID requestId;
+        while ((requestId = bucket.poll()) != null) {
+            UUID id = requestId;
+            cache.computeIfPresent(requestId, (key, entry) -> {
+                if (entry.recordedAt >= recordedBefore) {
+                    kept.add(id);
+                    return entry;
+                }
+                releaseReply(entry);
+                return null;
+            });
+        }
+        for (UUID id : kept) {
+            Entry entry = cache.get(id);
+            if (entry == null) continue;
+            buckets[(int) Math.floorMod(Math.floorDiv(entry.recordedAt, sliceMs), (long) buckets.length)].add(id);
+        }
     }
 
-    private void scheduleCleanup(UUID requestId) {
-        new Timer().schedule(new TimerTask() {
-            public void run() { cache.remove(requestId); }
-        }, TTL_MS);
+    private void releaseReply(Entry entry) {
+        byte[] reply = entry.reply;
+        if (reply != null) {
+            cachedReplyBytes.addAndGet(-reply.length);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package org.tomato.bookie.distributedSystem.faultolerance;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Estimates the round-trip time to a server and derives retransmission timeouts from it, as TCP does (RFC 6298):
+ * a smoothed RTT (SRTT) and RTT variation (RTTVAR) are updated with each sample, and RTO = SRTT + 4 * RTTVAR.
+ * <p>
+ * Each retransmission of the same request doubles the timeout (up to the maximum), and a random jitter of up to
+ * {@link #JITTER_RATIO} of the timeout is added, so that clients which lost packets at the same time do not all
+ * retransmit at the same time. Only responses to requests sent once should be sampled: since retransmissions reuse the
+ * same requestId, the RTT of a retransmitted request is ambiguous (Karn's algorithm).
+ * <p>
+ * Thread-safe.
+ */
+public class RttEstimator {
+    private static final long INITIAL_RTO_MS = 1_000;
+    private static final long MIN_RTO_MS = 100;
+    private static final long MAX_RTO_MS = 60_000;
+    private static final double ALPHA = 1.0 / 8;
+    private static final double BETA = 1.0 / 4;
+    private static final double JITTER_RATIO = 0.1;
+
+    private final long minRtoMs;
+    private final long maxRtoMs;
+    private final DoubleSupplier random;
+    private double srttMs = -1;
+    private double rttvarMs;
+    private long rtoMs;
+
+    public RttEstimator() {
+        this(INITIAL_RTO_MS, MIN_RTO_MS, MAX_RTO_MS);
+    }
+
+    /**
+     * @param initialRtoMs timeout until the first RTT sample
+     * @param minRtoMs
+     * @param maxRtoMs
+     */
+    public RttEstimator(long initialRtoMs, long minRtoMs, long maxRtoMs) {
+        this(initialRtoMs, minRtoMs, maxRtoMs, () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    RttEstimator(long initialRtoMs, long minRtoMs, long maxRtoMs, DoubleSupplier random) {
+        if (minRtoMs <= 0 || minRtoMs > maxRtoMs) {
+            throw new IllegalArgumentException("[RttEstimator] Expected 0 < minRtoMs <= maxRtoMs");
+        }
+        this.minRtoMs = minRtoMs;
+        this.maxRtoMs = maxRtoMs;
+        this.random = random;
+        this.rtoMs = clamp(initialRtoMs);
+    }
+
+    /**
+     * Update the estimate with the RTT of a request which was sent only once.
+     * @param rttNanos
+     */
+    public synchronized void addSample(long rttNanos) {
+        double rttMs = rttNanos / 1_000_000.0;
+        if (srttMs < 0) {
+            srttMs = rttMs;
+            rttvarMs = rttMs / 2;
+        } else {
+            rttvarMs = (1 - BETA) * rttvarMs + BETA * Math.abs(srttMs - rttMs);
+            srttMs = (1 - ALPHA) * srttMs + ALPHA * rttMs;
+        }
+        rtoMs = clamp((long) Math.ceil(srttMs + 4 * rttvarMs));
+    }
+
+    /**
+     * @param attempt 0 for the first transmission of a request, 1 for its first retransmission, and so on
+     * @return how long to wait for the response to this transmission before retransmitting, in milliseconds
+     */
+    public long getTimeoutMs(int attempt) {
+        long rto;
+        synchronized (this) {
+            rto = rtoMs;
+        }
+        long backedOff = rto << Math.min(attempt, 20);
+        long timeout = Math.min(backedOff, maxRtoMs);
+        return Math.min(timeout + (long) (timeout * JITTER_RATIO * random.getAsDouble()), maxRtoMs);
+    }
+
+    /**
+     * @return current retransmission timeout before backoff and jitter, in milliseconds
+     */
+    public synchronized long getRtoMs() {
+        return rtoMs;
+    }
+
+    /**
+     * @return smoothed RTT in milliseconds, or -1 before the first sample
+     */
+    public synchronized double getSrttMs() {
+        return srttMs;
+    }
+
+    private long clamp(long rto) {
+        return Math.max(minRtoMs, Math.min(rto, maxRtoMs));
+    }
+}
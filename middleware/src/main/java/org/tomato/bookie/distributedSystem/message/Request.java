@@ -1,11 +1,11 @@
 package org.tomato.bookie.distributedSystem.message;
 
 import lombok.Getter;
-import org.ketchup.bookie.common.enums.SerializableDataType;
 import org.ketchup.bookie.common.enums.SerializableEnum;
 import org.ketchup.bookie.common.exception.SerializationException;
 import org.ketchup.bookie.common.pojo.BinarySerializable;
-import org.ketchup.bookie.common.util.SerializeUtils;
+import org.ketchup.bookie.common.util.BinaryReader;
+import org.ketchup.bookie.common.util.BinaryWriter;
 
 import java.util.*;
 
@@ -63,44 +63,31 @@ public final class Request implements BinarySerializable {
     }
 
     @Override
-    public byte[] toBytes() throws SerializationException {
-        byte[] uuidAsBytes = SerializeUtils.uuidToBytes(requestId);
-        byte[] requestIdKey = SerializeUtils.serializeString("requestId");
-        byte[] requestIdValue = SerializeUtils.serializeBytes(uuidAsBytes);
-        byte[] operationKey = SerializeUtils.serializeString("operation");
-        byte[] operationValue = SerializeUtils.serializeEnum(operation);
-        byte[] parametersKey = SerializeUtils.serializeString("parameters");
-        byte[] parametersValue = SerializeUtils.serializeMap(parameters, SerializableDataType.BYTES);
-        return SerializeUtils.wrapHeader(SerializeUtils.concatBytes(requestIdKey, requestIdValue, operationKey, operationValue, parametersKey, parametersValue), SerializableDataType.OBJECT, 3);
+    public void writeTo(BinaryWriter writer) throws SerializationException {
+        writer.writeObjectHeader(3);
+        writer.writeField("requestId");
+        writer.writeUuid(requestId);
+        writer.writeField("operation");
+        writer.writeEnum(operation);
+        writer.writeField("parameters");
+        writer.writeBytesMap(parameters);
     }
 
     @Override
-    public void fromBytes(byte[] bytes) throws SerializationException {
-        int objectSize = SerializeUtils.readHeader(bytes, SerializableDataType.OBJECT);
-        if (objectSize != 3) {
-            throw new SerializationException("[fromBytes] Number of fields of serialized bytes does not match Request class");
-        }
-        bytes = Arrays.copyOfRange(bytes, 4, bytes.length);
+    public void readFrom(BinaryReader reader) throws SerializationException {
+        reader.readObjectHeader(3, "Request");
 
         // requestId
-        bytes = SerializeUtils.verifyObjectField(bytes, "requestId");
-        int requestIdValueLen = SerializeUtils.readHeader(bytes, SerializableDataType.BYTES);
-        UUID requestIdValue = SerializeUtils.uuidFromBytes(SerializeUtils.deserializeBytes(Arrays.copyOfRange(bytes, 0, requestIdValueLen + 4)));
-        bytes = Arrays.copyOfRange(bytes, requestIdValueLen + 4, bytes.length);
-        requestId = requestIdValue;
+        reader.readField("requestId");
+        requestId = reader.readUuid();
 
         // operation
-        bytes = SerializeUtils.verifyObjectField(bytes, "operation");
-        int operationValueLen = SerializeUtils.readHeader(bytes, SerializableDataType.ENUM);
-        Operation operationValue = SerializeUtils.deserializeEnum(Arrays.copyOfRange(bytes, 0, operationValueLen + 4), Operation.class);
-        bytes = Arrays.copyOfRange(bytes, operationValueLen + 4, bytes.length);
-        operation = operationValue;
+        reader.readField("operation");
+        operation = reader.readEnum(Operation.class);
 
         // parameters
-        bytes = SerializeUtils.verifyObjectField(bytes, "parameters");
-        Map<String, Object> parametersValue = SerializeUtils.deserializeMap(bytes, SerializableDataType.BYTES);
-        parameters = new HashMap<>();
-        parametersValue.forEach((key, value) -> parameters.put(key, (byte[]) value));
+        reader.readField("parameters");
+        parameters = reader.readBytesMap();
 
         // idempotent
         idempotent = determineIdempotence(operation);
@@ -2,16 +2,21 @@ package org.tomato.bookie.distributedSystem.message;
 
 import lombok.Getter;
 import org.apache.commons.lang3.StringUtils;
-import org.ketchup.bookie.common.enums.SerializableDataType;
 import org.ketchup.bookie.common.exception.SerializationException;
 import org.ketchup.bookie.common.pojo.BinarySerializable;
+import org.ketchup.bookie.common.util.BinaryReader;
+import org.ketchup.bookie.common.util.BinaryWriter;
 import org.ketchup.bookie.common.util.SerializeUtils;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 
 @Getter
 public final class Response implements BinarySerializable {
 
+    // Object header, "requestId" key, header of the byte[] value: the UUID is always the first value of a serialized Response
+    private static final int REQUEST_ID_OFFSET = 4 + 4 + "requestId".length() + 4;
+
     // Getters
     private UUID requestId;
     private boolean status;
@@ -51,44 +56,44 @@ public final class Response implements BinarySerializable {
         return new Response(requestId, true, Map.of("error", SerializeUtils.serializeString(message)));
     }
 
+    /**
+     * Overwrite the requestId of a serialized Response in place, so that the same payload can be sent to several
+     * requests (e.g. monitoring callbacks) without being serialized again.
+     * @param serializedResponse bytes produced by {@link #toBytes()}
+     * @param requestId
+     */
+    public static void patchRequestId(byte[] serializedResponse, UUID requestId) {
+        // Same big-endian layout as SerializeUtils.uuidToBytes()
+        ByteBuffer buffer = ByteBuffer.wrap(serializedResponse);
+        buffer.putLong(REQUEST_ID_OFFSET, requestId.getMostSignificantBits());
+        buffer.putLong(REQUEST_ID_OFFSET + 8, requestId.getLeastSignificantBits());
+    }
+
     @Override
-    public byte[] toBytes() throws SerializationException {
-        byte[] uuidAsBytes = SerializeUtils.uuidToBytes(requestId);
-        byte[] requestIdKeyBytes = SerializeUtils.serializeString("requestId");
-        byte[] requestIdValueBytes = SerializeUtils.serializeBytes(uuidAsBytes);
-        byte[] statusKeyBytes = SerializeUtils.serializeString("status");
-        byte[] statusValueBytes = SerializeUtils.serializeBool(status);
-        byte[] dataKeyBytes = SerializeUtils.serializeString("data");
-        byte[] dataValueBytes = SerializeUtils.serializeMap(data, SerializableDataType.BYTES);
-        return SerializeUtils.wrapHeader(SerializeUtils.concatBytes(requestIdKeyBytes, requestIdValueBytes, statusKeyBytes, statusValueBytes, dataKeyBytes, dataValueBytes), SerializableDataType.OBJECT, 3);
+    public void writeTo(BinaryWriter writer) throws SerializationException {
+        writer.writeObjectHeader(3);
+        writer.writeField("requestId");
+        writer.writeUuid(requestId);
+        writer.writeField("status");
+        writer.writeBool(status);
+        writer.writeField("data");
+        writer.writeBytesMap(data);
     }
 
     @Override
-    public void fromBytes(byte[] bytes) throws SerializationException {
-        int objectSize = SerializeUtils.readHeader(bytes, SerializableDataType.OBJECT);
-        if (objectSize != 3) {
-            throw new SerializationException("[fromBytes] Number of fields of serialized bytes does not match Response class");
-        }
-        bytes = Arrays.copyOfRange(bytes, 4, bytes.length);
+    public void readFrom(BinaryReader reader) throws SerializationException {
+        reader.readObjectHeader(3, "Response");
 
         // requestId
-        bytes = SerializeUtils.verifyObjectField(bytes, "requestId");
-        int requestIdValueLen = SerializeUtils.readHeader(bytes, SerializableDataType.BYTES);
-        UUID requestIdValue = SerializeUtils.uuidFromBytes(SerializeUtils.deserializeBytes(Arrays.copyOfRange(bytes, 0, requestIdValueLen + 4)));
-        bytes = Arrays.copyOfRange(bytes, requestIdValueLen + 4, bytes.length);
-        requestId = requestIdValue;
+        reader.readField("requestId");
+        requestId = reader.readUuid();
 
         // status
-        bytes = SerializeUtils.verifyObjectField(bytes, "status");
-        int statusValueLen = SerializeUtils.readHeader(bytes, SerializableDataType.BOOLEAN);
-        boolean statusValue = SerializeUtils.deserializeBool(Arrays.copyOfRange(bytes, 0, statusValueLen + 4));
-        bytes = Arrays.copyOfRange(bytes, statusValueLen + 4, bytes.length);
-        status = statusValue;
+        reader.readField("status");
+        status = reader.readBool();
 
         // data
-        bytes = SerializeUtils.verifyObjectField(bytes, "data");
-        Map<String, Object> dataValue = SerializeUtils.deserializeMap(bytes, SerializableDataType.BYTES);
-        data = new HashMap<>();
-        dataValue.forEach((key, value) -> data.put(key, (byte[]) value));
+        reader.readField("data");
+        data = reader.readBytesMap();
     }
 }
\ No newline at end of file
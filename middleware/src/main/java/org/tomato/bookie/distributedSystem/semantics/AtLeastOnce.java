@@ -5,6 +5,7 @@ import java.util.Map;
 
 import lombok.extern.slf4j.Slf4j;
 import org.ketchup.bookie.common.exception.SerializationException;
+import org.tomato.bookie.distributedSystem.faultolerance.RttEstimator;
 import org.tomato.bookie.distributedSystem.message.Request;
 import org.tomato.bookie.distributedSystem.message.Response;
 
@@ -13,10 +14,19 @@ public class AtLeastOnce implements InvocationSemantic {
     private static final int MAX_RETRIES = 3;
     private static final double FAILURE_RATE = 0.3; // 30% failure chance
 
+    // Backoff between attempts: derived from the measured processing time but at least 100ms, then doubled on each
+    // retry, with jitter
+    private final RttEstimator rttEstimator = new RttEstimator(100, 100, 5_000);
+
     @Override
     public Response execute(Request request) {
         for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+            long startNanos = System.nanoTime();
             Response response = attemptProcess(request);
+            // Only first attempts are sampled: a reply to a retry could be to any attempt (Karn's algorithm)
+            if (attempt == 0) {
+                rttEstimator.addSample(System.nanoTime() - startNanos);
+            }
             
             if (response.isStatus()) {
                 if (!request.isIdempotent() && attempt > 0) {
@@ -26,7 +36,7 @@ public class AtLeastOnce implements InvocationSemantic {
             }
             
             try {
-                Thread.sleep(100 * (attempt + 1)); // Exponential backoff
+                Thread.sleep(rttEstimator.getTimeoutMs(attempt)); // Exponential backoff
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 try {
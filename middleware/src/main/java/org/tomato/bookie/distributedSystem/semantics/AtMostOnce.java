@@ -19,8 +19,14 @@ public class AtMostOnce implements InvocationSemantic {
 
     @Override
     public Response execute(Request request) {
-        if (deduplicator.isDuplicate(request.getRequestId())) {
+        if (!deduplicator.recordRequest(request.getRequestId())) {
+            byte[] reply = deduplicator.getReply(request.getRequestId());
             try {
+                if (reply != null) {
+                    Response response = new Response();
+                    response.fromBytes(reply);
+                    return response;
+                }
                 return Response.error(request.getRequestId(), "Duplicate request detected");
             } catch (SerializationException e) {
                 log.error("[execute] Error message serialization failed, message: [Duplicate request detected]", e);
@@ -28,10 +34,15 @@ public class AtMostOnce implements InvocationSemantic {
             }
         }
 
-        deduplicator.recordRequest(request.getRequestId());
-        return simulateProcessing(request);
+        Response response = simulateProcessing(request);
+        try {
+            deduplicator.cacheReply(request.getRequestId(), response.toBytes());
+        } catch (SerializationException e) {
+            log.error("[execute] Reply serialization failed, the reply will not be cached", e);
+        }
+        return response;
     }
-        
+
     private Response simulateProcessing(Request request) {
         // Simulated processing - would be real server call in actual implementation
         return Response.success(request.getRequestId(), 
@@ -0,0 +1,175 @@
+package org.tomato.bookie.distributedSystem.faultolerance;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeduplicatorTest {
+
+    @Test
+    void expireAfterTtl() {
+        AtomicLong clock = new AtomicLong(1_000_000);
+        Deduplicator deduplicator = new Deduplicator(10_000, Integer.MAX_VALUE, Long.MAX_VALUE, 1_000, clock::get);
+        UUID requestId = UUID.randomUUID();
+        deduplicator.recordRequest(requestId);
+        assertTrue(deduplicator.isDuplicate(requestId));
+
+        clock.addAndGet(9_999);
+        assertTrue(deduplicator.isDuplicate(requestId));
+        clock.addAndGet(1);
+        assertFalse(deduplicator.isDuplicate(requestId));
+
+        // Swept by a later request once its slice is old enough
+        clock.addAndGet(2_000);
+        deduplicator.recordRequest(UUID.randomUUID());
+        assertEquals(1, deduplicator.size());
+    }
+
+    @Test
+    void expireAfterIdleGap() {
+        AtomicLong clock = new AtomicLong(0);
+        Deduplicator deduplicator = new Deduplicator(10_000, Integer.MAX_VALUE, Long.MAX_VALUE, 1_000, clock::get);
+        for (int i = 0; i < 10; i++) {
+            deduplicator.recordRequest(UUID.randomUUID());
+        }
+        // Idle for longer than the TTL: the first request sweeps a slice sharing the bucket of its own slice
+        clock.addAndGet(100_000);
+        UUID requestId = UUID.randomUUID();
+        assertTrue(deduplicator.recordRequest(requestId));
+        deduplicator.cacheReply(requestId, new byte[] {1, 2, 3});
+        assertEquals(1, deduplicator.size());
+
+        // Still swept once expired
+        clock.addAndGet(12_000);
+        deduplicator.recordRequest(UUID.randomUUID());
+        assertFalse(deduplicator.isDuplicate(requestId));
+        assertEquals(1, deduplicator.size());
+        assertEquals(0, deduplicator.replyBytes());
+    }
+
+    @Test
+    void ignoreDuplicateUntilExpired() {
+        AtomicLong clock = new AtomicLong(0);
+        Deduplicator deduplicator = new Deduplicator(10_000, Integer.MAX_VALUE, Long.MAX_VALUE, 1_000, clock::get);
+        UUID requestId = UUID.randomUUID();
+        assertTrue(deduplicator.recordRequest(requestId));
+        clock.addAndGet(8_000);
+        // A retransmission does not extend the TTL
+        assertFalse(deduplicator.recordRequest(requestId));
+        clock.addAndGet(2_000);
+        assertTrue(deduplicator.recordRequest(requestId));
+        clock.addAndGet(4_000);
+        deduplicator.recordRequest(UUID.randomUUID());
+        assertTrue(deduplicator.isDuplicate(requestId));
+    }
+
+    @Test
+    void executeAgainOnceRemoved() {
+        AtomicLong clock = new AtomicLong(0);
+        Deduplicator deduplicator = new Deduplicator(10_000, Integer.MAX_VALUE, Long.MAX_VALUE, 1_000, clock::get);
+        UUID requestId = UUID.randomUUID();
+        assertTrue(deduplicator.recordRequest(requestId));
+        deduplicator.cacheReply(requestId, new byte[] {1, 2, 3});
+        deduplicator.removeRequest(requestId);
+        assertFalse(deduplicator.isDuplicate(requestId));
+        assertEquals(0, deduplicator.replyBytes());
+        deduplicator.removeRequest(requestId);
+
+        // Recorded again later, and not swept with the bucket it was first queued in
+        clock.addAndGet(5_000);
+        assertTrue(deduplicator.recordRequest(requestId));
+        assertFalse(deduplicator.recordRequest(requestId));
+        clock.addAndGet(7_000);
+        deduplicator.recordRequest(UUID.randomUUID());
+        assertTrue(deduplicator.isDuplicate(requestId));
+        assertEquals(2, deduplicator.size());
+    }
+
+    @Test
+    void replayCachedReply() {
+        AtomicLong clock = new AtomicLong(0);
+        Deduplicator deduplicator = new Deduplicator(10_000, Integer.MAX_VALUE, Long.MAX_VALUE, 1_000, clock::get);
+        UUID requestId = UUID.randomUUID();
+        deduplicator.recordRequest(requestId);
+        // Still being executed
+        assertNull(deduplicator.getReply(requestId));
+
+        byte[] reply = {1, 2, 3};
+        deduplicator.cacheReply(requestId, reply);
+        deduplicator.cacheReply(requestId, new byte[] {4});
+        assertArrayEquals(reply, deduplicator.getReply(requestId));
+        assertEquals(3, deduplicator.replyBytes());
+
+        clock.addAndGet(12_000);
+        assertNull(deduplicator.getReply(requestId));
+        deduplicator.recordRequest(UUID.randomUUID());
+        assertEquals(0, deduplicator.replyBytes());
+    }
+
+    @Test
+    void evictOldestWhenFull() {
+        AtomicLong clock = new AtomicLong(0);
+        Deduplicator deduplicator = new Deduplicator(60_000, 100, 1_000, 1_000, clock::get);
+        List<UUID> requestIds = new ArrayList<>();
+        for (int second = 0; second < 10; second++) {
+            for (int i = 0; i < 20; i++) {
+                UUID requestId = UUID.randomUUID();
+                deduplicator.recordRequest(requestId);
+                deduplicator.cacheReply(requestId, new byte[10]);
+                requestIds.add(requestId);
+            }
+            clock.addAndGet(1_000);
+        }
+        assertTrue(deduplicator.size() <= 100, "Remembered " + deduplicator.size() + " request IDs");
+        assertTrue(deduplicator.replyBytes() <= 1_000);
+        assertFalse(deduplicator.isDuplicate(requestIds.get(0)));
+        assertNotNull(deduplicator.getReply(requestIds.get(requestIds.size() - 1)));
+    }
+
+    @Test
+    void sustainedLoadKeepsMemoryBounded() {
+        // 80 requests per simulated millisecond (80k requests/s) for 30 simulated seconds
+        AtomicLong recorded = new AtomicLong(0);
+        Deduplicator deduplicator = new Deduplicator(5_000, Integer.MAX_VALUE, Long.MAX_VALUE, 100, () -> recorded.get() / 80);
+        int maxSize = 0;
+        for (int i = 0; i < 2_400_000; i++) {
+            deduplicator.recordRequest(UUID.randomUUID());
+            recorded.incrementAndGet();
+            maxSize = Math.max(maxSize, deduplicator.size());
+        }
+        // At most TTL plus two slices worth of requests are remembered
+        assertTrue(maxSize <= 80 * (5_000 + 200), "Remembered " + maxSize + " request IDs");
+    }
+
+    @Test
+    void concurrentLoadStartsNoThreads() throws InterruptedException {
+        Deduplicator deduplicator = new Deduplicator(300_000, Integer.MAX_VALUE, Long.MAX_VALUE);
+        AtomicInteger maxThreads = new AtomicInteger(0);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 250_000; i++) {
+                    deduplicator.recordRequest(UUID.randomUUID());
+                    if (i % 10_000 == 0) {
+                        maxThreads.accumulateAndGet(Thread.activeCount(), Math::max);
+                    }
+                }
+            }));
+        }
+        int baselineThreads = Thread.activeCount() + threads.size();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(maxThreads.get() <= baselineThreads, "Deduplicator must not start threads");
+        assertEquals(1_000_000, deduplicator.size());
+    }
+}
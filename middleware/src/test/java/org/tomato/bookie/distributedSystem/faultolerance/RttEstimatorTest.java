@@ -0,0 +1,68 @@
+package org.tomato.bookie.distributedSystem.faultolerance;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RttEstimatorTest {
+
+    private static final long MS = 1_000_000;
+
+    @Test
+    void initialTimeoutUntilFirstSample() {
+        RttEstimator estimator = new RttEstimator(1_000, 10, 60_000, () -> 0);
+        assertEquals(1_000, estimator.getTimeoutMs(0));
+        assertEquals(-1, estimator.getSrttMs());
+    }
+
+    @Test
+    void followRfc6298() {
+        RttEstimator estimator = new RttEstimator(1_000, 1, 60_000, () -> 0);
+        // First sample: SRTT = R, RTTVAR = R / 2, RTO = SRTT + 4 * RTTVAR
+        estimator.addSample(8 * MS);
+        assertEquals(8, estimator.getSrttMs(), 1e-9);
+        assertEquals(24, estimator.getRtoMs());
+
+        // RTTVAR = 3/4 * 4 + 1/4 * |8 - 16| = 5, SRTT = 7/8 * 8 + 1/8 * 16 = 9, RTO = 9 + 20 = 29
+        estimator.addSample(16 * MS);
+        assertEquals(9, estimator.getSrttMs(), 1e-9);
+        assertEquals(29, estimator.getRtoMs());
+    }
+
+    @Test
+    void convergeOnStableRtt() {
+        RttEstimator estimator = new RttEstimator(3_000, 10, 60_000, () -> 0);
+        for (int i = 0; i < 100; i++) {
+            estimator.addSample(2 * MS);
+        }
+        assertEquals(2, estimator.getSrttMs(), 0.01);
+        // A lost packet is retransmitted after milliseconds, not seconds (bounded by the minimum)
+        assertEquals(10, estimator.getTimeoutMs(0));
+    }
+
+    @Test
+    void backOffExponentiallyUpToMax() {
+        RttEstimator estimator = new RttEstimator(100, 10, 1_000, () -> 0);
+        assertEquals(100, estimator.getTimeoutMs(0));
+        assertEquals(200, estimator.getTimeoutMs(1));
+        assertEquals(400, estimator.getTimeoutMs(2));
+        assertEquals(800, estimator.getTimeoutMs(3));
+        assertEquals(1_000, estimator.getTimeoutMs(4));
+        assertEquals(1_000, estimator.getTimeoutMs(100));
+    }
+
+    @Test
+    void addBoundedJitter() {
+        RttEstimator noJitter = new RttEstimator(1_000, 10, 60_000, () -> 0);
+        RttEstimator maxJitter = new RttEstimator(1_000, 10, 60_000, () -> 0.999999);
+        assertEquals(1_000, noJitter.getTimeoutMs(0));
+        assertEquals(1_099, maxJitter.getTimeoutMs(0));
+        assertEquals(2_199, maxJitter.getTimeoutMs(1));
+
+        RttEstimator random = new RttEstimator();
+        for (int i = 0; i < 1_000; i++) {
+            long timeout = random.getTimeoutMs(0);
+            assertTrue(timeout >= 1_000 && timeout < 1_100, "timeout " + timeout);
+        }
+    }
+}
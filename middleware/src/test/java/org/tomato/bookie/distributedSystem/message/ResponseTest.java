@@ -29,4 +29,17 @@ class ResponseTest {
             throw new RuntimeException(e);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void patchRequestIdTest() throws SerializationException {
+        Response response = Response.success(UUID.randomUUID(), Map.of("availability", new byte[] {1, 2, 3}));
+        byte[] serialized = response.toBytes();
+        UUID requestId = UUID.randomUUID();
+        Response.patchRequestId(serialized, requestId);
+
+        Response patched = new Response();
+        patched.fromBytes(serialized);
+        assertEquals(requestId, patched.getRequestId());
+        assertArrayEquals(new byte[] {1, 2, 3}, patched.getData().get("availability"));
+    }
+}
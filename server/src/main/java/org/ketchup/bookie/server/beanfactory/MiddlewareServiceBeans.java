@@ -17,7 +17,11 @@ public class MiddlewareServiceBeans {
 
     @Bean
     public Deduplicator deduplicator() {
-        return new Deduplicator();
+        return new Deduplicator(
+                config.getAtMostOnceReplyTtlMs(),
+                config.getAtMostOnceReplyMaxEntries(),
+                config.getAtMostOnceReplyMaxBytes()
+        );
     }
 
     @Bean
@@ -11,13 +11,76 @@ public class Config {
     @Value("${server.port:55555}")
     private int port;
 
+    @Value("${server.execution.mode:pool}")
+    private String executionMode;
+
     @Value("${server.at_most_once.enabled:false}")
     private boolean atMostOnceEnabled;
 
+    @Value("${server.at_most_once.reply.ttl.ms:300000}")
+    private long atMostOnceReplyTtlMs;
+
+    @Value("${server.at_most_once.reply.max.entries:100000}")
+    private int atMostOnceReplyMaxEntries;
+
+    @Value("${server.at_most_once.reply.max.bytes:67108864}")
+    private long atMostOnceReplyMaxBytes;
+
     @Value("${server.simulated.message.drop.rate:0.0}")
     private double simulatedMessageDropRate;
 
     @Value("${server.simulated.response.withhold:0}")
     private int responseWithhold;
 
+    @Value("${server.transport:socket}")
+    private String transport;
+
+    @Value("${server.socket.count:1}")
+    private int socketCount;
+
+    @Value("${server.worker.threads:0}")
+    private int workerThreads;
+
+    @Value("${server.worker.queue.capacity:1024}")
+    private int workerQueueCapacity;
+
+    @Value("${server.booking.timeline:interval}")
+    private String bookingTimeline;
+
+    @Value("${server.booking.timeline.mapped.path:data/timelines.dat}")
+    private String bookingTimelineMappedPath;
+
+    @Value("${server.booking.journal.enabled:false}")
+    private boolean bookingJournalEnabled;
+
+    @Value("${server.booking.journal.path:data/bookings.journal}")
+    private String bookingJournalPath;
+
+    @Value("${server.booking.journal.fsync:interval}")
+    private String bookingJournalFsync;
+
+    @Value("${server.booking.journal.fsync.interval.ms:100}")
+    private long bookingJournalFsyncIntervalMs;
+
+    @Value("${server.booking.snapshot.path:data/bookings.snapshot}")
+    private String bookingSnapshotPath;
+
+    @Value("${server.booking.snapshot.interval.s:300}")
+    private long bookingSnapshotIntervalS;
+
+    @Value("${server.facility.changelog.path:data/facilities.changelog}")
+    private String facilityChangelogPath;
+
+    @Value("${server.facility.changelog.compaction.threshold:10000}")
+    private long facilityChangelogCompactionThreshold;
+
+    @Value("${server.monitor.notification.queue.capacity:1024}")
+    private int notificationQueueCapacity;
+
+    @Value("${server.monitor.snapshot.interval:16}")
+    private int snapshotInterval;
+
+    @Value("${server.monitor.coalesce.window.ms:50}")
+    private long coalesceWindowMs;
+
 }
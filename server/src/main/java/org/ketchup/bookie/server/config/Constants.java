@@ -5,4 +5,8 @@ import java.io.File;
 public class Constants {
     public static final String FACILITIES_CSV_PATH = "data" + File.separator + "facilities.csv";
     public static final int MINUTES_IN_WEEK = 7 * 24 * 60;
+    /**
+     * Largest payload a single UDP datagram can carry (65535 - 8 byte UDP header - 20 byte IP header).
+     */
+    public static final int MAX_DATAGRAM_SIZE = 65507;
 }
@@ -2,7 +2,6 @@ package org.ketchup.bookie.server.interceptor;
 
 import lombok.extern.slf4j.Slf4j;
 import org.ketchup.bookie.common.exception.SerializationException;
-import org.ketchup.bookie.common.pojo.Availability;
 import org.ketchup.bookie.common.util.SerializeUtils;
 import org.ketchup.bookie.server.repository.BookingRepository;
 import org.ketchup.bookie.server.service.AvailabilityMonitoringService;
@@ -10,8 +9,6 @@ import org.springframework.stereotype.Service;
 import org.tomato.bookie.distributedSystem.message.Request;
 import org.tomato.bookie.distributedSystem.message.Response;
 
-import java.util.ArrayList;
-
 @Service
 @Slf4j
 public class ResponseInterceptorImpl implements ResponseInterceptor {
@@ -43,10 +40,7 @@ public class ResponseInterceptorImpl implements ResponseInterceptor {
             }
         }
         if (facilityId >= 0) {
-            Availability availability = new Availability();
-            availability.setFacilityId(facilityId);
-            availability.setBooked(bookingRepository.exportAvailability(facilityId));
-            availabilityMonitoringService.notifyClients(availability);
+            availabilityMonitoringService.notifyClients(facilityId);
         }
         return response;
     }
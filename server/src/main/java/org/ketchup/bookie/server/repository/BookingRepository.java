@@ -1,31 +1,99 @@
 package org.ketchup.bookie.server.repository;
 
-import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.ketchup.bookie.common.exception.InternalServerError;
 import org.ketchup.bookie.common.exception.UnavailableFacilityException;
+import org.ketchup.bookie.common.pojo.Availability;
 import org.ketchup.bookie.common.pojo.Booking;
 import org.ketchup.bookie.common.pojo.Facility;
+import org.ketchup.bookie.server.config.Config;
 import org.ketchup.bookie.server.config.Constants;
+import org.ketchup.bookie.server.repository.journal.BookingJournal;
+import org.ketchup.bookie.server.repository.journal.BookingSnapshot;
+import org.ketchup.bookie.server.repository.journal.FsyncPolicy;
+import org.ketchup.bookie.server.repository.journal.JournalEvent;
+import org.ketchup.bookie.server.repository.timeline.FacilityTimeline;
+import org.ketchup.bookie.server.repository.timeline.FacilityTimelineType;
+import org.ketchup.bookie.server.repository.timeline.MappedTimelineStore;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Note: All timestamps provided will be round up to match the starting point of slots.
+ * <p>
+ * When the journal is enabled, every change is appended to the {@link BookingJournal} while the facility is still
+ * locked (so that the journal has the same order of changes as the repository), then waited for with the lock released
+ * (so that requests to any facility share fsyncs). A change is only made once the journal has accepted its event: after
+ * a write failure, the journal refuses every event, so that the bookings in memory never get ahead of the journal.
+ * <p>
+ * A background thread periodically writes a {@link BookingSnapshot}: it starts a new journal segment, copies the
+ * bookings of each facility in turn with only that facility locked (tagged with the journal position at the time of the
+ * copy), writes the snapshot, then deletes the journal segments it covers. On startup, the snapshot is loaded and only
+ * the journal events of each facility after its copy are replayed.
  */
 @Repository
 @Slf4j
-@NoArgsConstructor
-public class BookingRepository implements InitializingBean {
+public class BookingRepository implements InitializingBean, DisposableBean {
 
-    // facilityId : { time : bookingId }
-    private final Map<Integer, List<Integer>> bookingTimeslots = new ConcurrentHashMap<>();
+    // IDs of the facilities which can be booked
+    private final Set<Integer> facilityIds = ConcurrentHashMap.newKeySet();
+
+    // facilityId : occupancy of each minute, only for the facilities booked at least once
+    private final Map<Integer, FacilityTimeline> bookingTimeslots = new ConcurrentHashMap<>();
 
     private final Map<Integer, Booking> bookingMap = new ConcurrentHashMap<>();
 
+    // facilityId : { bookingId : booking }, each guarded by the facility's timeline
+    private final Map<Integer, Map<Integer, Booking>> bookingsByFacility = new ConcurrentHashMap<>();
+
+    private final FacilityTimelineType timelineType;
+
+    private final Config config;
+
+    // null if the journal is disabled
+    private BookingJournal journal;
+
+    // null if the journal or periodic snapshots are disabled
+    private ScheduledExecutorService snapshotExecutor;
+
+    // null unless the timeline type is MAPPED
+    private MappedTimelineStore timelineStore;
+
+    @Autowired
+    public BookingRepository(Config config) {
+        this.timelineType = FacilityTimelineType.fromValue(config.getBookingTimeline());
+        this.config = config;
+    }
+
+    /**
+     * Repository without journal
+     * @param timelineType
+     */
+    public BookingRepository(FacilityTimelineType timelineType) {
+        this.timelineType = timelineType;
+        this.config = null;
+    }
+
+    /**
+     * Repository without journal, keeping its timelines in timelineStore (which is not closed by the repository)
+     * @param timelineStore
+     */
+    public BookingRepository(MappedTimelineStore timelineStore) {
+        this.timelineType = FacilityTimelineType.MAPPED;
+        this.config = null;
+        this.timelineStore = timelineStore;
+    }
+
     public boolean isBookingIdExist(int bookingIdToCheck) {
         return bookingMap.containsKey(bookingIdToCheck);
     }
@@ -35,66 +103,221 @@ public class BookingRepository implements InitializingBean {
     }
 
     public boolean addBooking(Booking booking) throws UnavailableFacilityException {
-        if (booking.getBookingStartTime() < 0 ||
-                booking.getBookingEndTime() <= booking.getBookingStartTime() ||
-                booking.getBookingEndTime() > Constants.MINUTES_IN_WEEK
-        ) {
-            throw new IllegalArgumentException("[addBooking] Invalid booking time");
-        }
-        if (bookingMap.containsKey(booking.getBookingId())) {
-            throw new IllegalArgumentException("[addBooking] Booking with the same ID already exists");
-        }
-        if (checkAvailability(booking.getFacilityId(), booking.getBookingStartTime(), booking.getBookingEndTime())) {
-            for (int time = booking.getBookingStartTime(); time < booking.getBookingEndTime(); time++) {
-                bookingTimeslots.get(booking.getFacilityId()).set(time, booking.getBookingId());
+        validateTime(booking.getBookingStartTime(), booking.getBookingEndTime(), "[addBooking] Invalid booking time");
+        FacilityTimeline timeline = getTimeline(booking.getFacilityId());
+        long journalSeq;
+        synchronized (timeline) {
+            if (!timeline.isFree(booking.getBookingStartTime(), booking.getBookingEndTime())) {
+                return false;
+            }
+            if (bookingMap.putIfAbsent(booking.getBookingId(), booking) != null) {
+                throw new IllegalArgumentException("[addBooking] Booking with the same ID already exists");
+            }
+            try {
+                journalSeq = appendToJournal(JournalEvent.Type.ADD, booking, "[addBooking]");
+            } catch (InternalServerError ise) {
+                bookingMap.remove(booking.getBookingId());
+                throw ise;
             }
-            bookingMap.put(booking.getBookingId(), booking);
-            return true;
+            timeline.occupy(booking.getBookingId(), booking.getBookingStartTime(), booking.getBookingEndTime());
+            bookingsByFacility.get(booking.getFacilityId()).put(booking.getBookingId(), booking);
         }
-        return false;
+        awaitJournal(journalSeq, "[addBooking]");
+        return true;
     }
 
     public boolean removeBooking(int bookingId) {
-        if (!bookingMap.containsKey(bookingId)) return false;
         Booking booking = bookingMap.get(bookingId);
-        for (int time = booking.getBookingStartTime(); time < booking.getBookingEndTime(); time++) {
-            int currentBookingIdAtSlot = bookingTimeslots.get(booking.getFacilityId()).get(time);
-            if (currentBookingIdAtSlot != bookingId) {
-                InternalServerError ise = new InternalServerError("Inconsistency between bookingTimeslots and bookingMap found: " +
-                        "Time [" + time + "] belongs to both booking [" + bookingId + "] (bookingMap) and booking " +
-                        "[" + currentBookingIdAtSlot + "] (bookingTimeslots)");
-                log.error("[removeBooking]", ise);
+        if (booking == null) return false;
+        FacilityTimeline timeline = bookingTimeslots.get(booking.getFacilityId());
+        long journalSeq;
+        synchronized (timeline) {
+            // The booking may have been moved or removed before the lock was acquired
+            booking = bookingMap.get(bookingId);
+            if (booking == null) return false;
+            releaseOrThrow(timeline, booking, "[removeBooking]");
+            try {
+                journalSeq = appendToJournal(JournalEvent.Type.REMOVE, booking, "[removeBooking]");
+            } catch (InternalServerError ise) {
+                timeline.occupy(bookingId, booking.getBookingStartTime(), booking.getBookingEndTime());
                 throw ise;
             }
-            bookingTimeslots.get(booking.getFacilityId()).set(time, -1);
+            bookingMap.remove(bookingId);
+            bookingsByFacility.get(booking.getFacilityId()).remove(bookingId);
         }
-        bookingMap.remove(bookingId);
+        awaitJournal(journalSeq, "[removeBooking]");
         return true;
     }
 
     public boolean changeBooking(int bookingId, int offset) throws UnavailableFacilityException {
-        Booking originalBooking = bookingMap.get(bookingId);
-        if (!removeBooking(bookingId)) return false;
-        return addBooking(new Booking(
-                originalBooking.getBookingId(),
-                originalBooking.getFacilityId(),
-                originalBooking.getBookingStartTime() + offset,
-                originalBooking.getBookingEndTime() + offset
-        ));
+        return moveBooking(bookingId, offset, offset, "[changeBooking]");
     }
 
     public boolean extendBooking(int bookingId, int offset) throws UnavailableFacilityException {
         if (offset < 0) {
             throw new IllegalArgumentException("[extendBooking] Offset cannot be negative");
         }
-        Booking originalBooking = bookingMap.get(bookingId);
-        if (!removeBooking(bookingId)) return false;
-        return addBooking(new Booking(
-                originalBooking.getBookingId(),
-                originalBooking.getFacilityId(),
-                originalBooking.getBookingStartTime(),
-                originalBooking.getBookingEndTime() + offset
-        ));
+        return moveBooking(bookingId, 0, offset, "[extendBooking]");
+    }
+
+    /**
+     * Atomically replace a booking with the same booking shifted by startOffset/endOffset. If the new time is not
+     * available, the original booking is kept.
+     * @return false if the booking does not exist or the new time is not available
+     */
+    private boolean moveBooking(int bookingId, int startOffset, int endOffset, String caller) throws UnavailableFacilityException {
+        Booking booking = bookingMap.get(bookingId);
+        if (booking == null) return false;
+        FacilityTimeline timeline = getTimeline(booking.getFacilityId());
+        long journalSeq;
+        synchronized (timeline) {
+            Booking originalBooking = bookingMap.get(bookingId);
+            if (originalBooking == null) return false;
+            Booking newBooking = new Booking(
+                    originalBooking.getBookingId(),
+                    originalBooking.getFacilityId(),
+                    originalBooking.getBookingStartTime() + startOffset,
+                    originalBooking.getBookingEndTime() + endOffset
+            );
+            validateTime(newBooking.getBookingStartTime(), newBooking.getBookingEndTime(), caller + " Invalid booking time");
+            releaseOrThrow(timeline, originalBooking, caller);
+            if (!timeline.isFree(newBooking.getBookingStartTime(), newBooking.getBookingEndTime())) {
+                timeline.occupy(bookingId, originalBooking.getBookingStartTime(), originalBooking.getBookingEndTime());
+                return false;
+            }
+            try {
+                journalSeq = appendToJournal(JournalEvent.Type.MOVE, newBooking, caller);
+            } catch (InternalServerError ise) {
+                timeline.occupy(bookingId, originalBooking.getBookingStartTime(), originalBooking.getBookingEndTime());
+                throw ise;
+            }
+            timeline.occupy(bookingId, newBooking.getBookingStartTime(), newBooking.getBookingEndTime());
+            bookingMap.put(bookingId, newBooking);
+            bookingsByFacility.get(newBooking.getFacilityId()).put(bookingId, newBooking);
+        }
+        awaitJournal(journalSeq, caller);
+        return true;
+    }
+
+    /**
+     * Called before the change is made: if the journal refuses the event, the change must be undone.
+     * @return sequence number of the event in the journal, or 0 if the journal is disabled
+     */
+    private long appendToJournal(JournalEvent.Type type, Booking booking, String caller) {
+        if (Objects.isNull(journal)) return 0;
+        try {
+            return journal.append(new JournalEvent(type, booking));
+        } catch (IOException ioe) {
+            InternalServerError ise = new InternalServerError("Journal is unavailable, booking change refused", ioe);
+            log.error(caller, ise);
+            throw ise;
+        }
+    }
+
+    private void awaitJournal(long journalSeq, String caller) {
+        if (Objects.isNull(journal)) return;
+        try {
+            journal.awaitDurable(journalSeq);
+        } catch (IOException ioe) {
+            InternalServerError ise = new InternalServerError("Failed to persist booking change to the journal", ioe);
+            log.error(caller, ise);
+            throw ise;
+        }
+    }
+
+    /**
+     * Apply an event of the journal, without checking it against the current bookings (they were checked when the
+     * event was recorded). Only bookingsByFacility is updated: since facilities are restored from different points of
+     * the journal, a bookingId may briefly belong to two facilities during recovery.
+     * @param event
+     */
+    private void applyJournalEvent(JournalEvent event) {
+        Booking booking = event.getBooking();
+        // Facilities are added after the repository is initialized, by FacilityRepository
+        FacilityTimeline timeline = createTimeline(booking.getFacilityId());
+        Map<Integer, Booking> facilityBookings = bookingsByFacility.get(booking.getFacilityId());
+        Booking previous = facilityBookings.remove(booking.getBookingId());
+        if (previous != null) {
+            timeline.release(previous.getBookingId(), previous.getBookingStartTime(), previous.getBookingEndTime());
+        }
+        if (event.getType() != JournalEvent.Type.REMOVE) {
+            timeline.occupy(booking.getBookingId(), booking.getBookingStartTime(), booking.getBookingEndTime());
+            facilityBookings.put(booking.getBookingId(), booking);
+        }
+    }
+
+    /**
+     * Restore the bookings from the snapshot and the journal.
+     * @return sequence number of the last event of the journal
+     */
+    private long recover(Path snapshotPath, Path journalPath) throws IOException {
+        long startNanos = System.nanoTime();
+        BookingSnapshot.Contents snapshot = BookingSnapshot.read(snapshotPath);
+        Map<Integer, Long> snapshotSeqs = new HashMap<>();
+        for (BookingSnapshot.FacilitySnapshot facility : snapshot.facilities()) {
+            FacilityTimeline timeline = createTimeline(facility.facilityId());
+            Map<Integer, Booking> facilityBookings = bookingsByFacility.get(facility.facilityId());
+            for (Booking booking : facility.bookings()) {
+                timeline.occupy(booking.getBookingId(), booking.getBookingStartTime(), booking.getBookingEndTime());
+                facilityBookings.put(booking.getBookingId(), booking);
+            }
+            snapshotSeqs.put(facility.facilityId(), facility.journalSeq());
+        }
+        long snapshotMaxSeq = snapshotSeqs.values().stream().mapToLong(Long::longValue).max().orElse(snapshot.journalSeq());
+
+        long[] replayedCount = {0};
+        // Facilities missing from the snapshot had no event up to the snapshot's own sequence number
+        long lastSeq = BookingJournal.replay(journalPath, snapshot.journalSeq(), (seq, event) -> {
+            if (seq > snapshotSeqs.getOrDefault(event.getBooking().getFacilityId(), snapshot.journalSeq())) {
+                applyJournalEvent(event);
+                replayedCount[0]++;
+            }
+        });
+        if (lastSeq < snapshotMaxSeq) {
+            // Snapshots are only written once the journal is durable up to them
+            throw new IOException("[recover] Journal " + journalPath + " ends at event " + lastSeq +
+                    ", before the snapshot (event " + snapshotMaxSeq + ")");
+        }
+        bookingsByFacility.values().forEach(bookingMap::putAll);
+        log.info("Recovered {} bookings from snapshot {} ({} facilities) and {} journal events in {} ms",
+                bookingMap.size(), snapshotPath, snapshotSeqs.size(), replayedCount[0], (System.nanoTime() - startNanos) / 1_000_000);
+        return lastSeq;
+    }
+
+    /**
+     * Write a snapshot of every facility, then delete the journal segments it covers. Requests are not paused: each
+     * facility is only locked while its bookings are copied.
+     */
+    public void takeSnapshot() throws IOException {
+        if (Objects.isNull(journal)) {
+            throw new IllegalStateException("[takeSnapshot] Snapshots require the journal");
+        }
+        long startNanos = System.nanoTime();
+        // Every copy below includes the events up to the end of the previous segment
+        long segmentFirstSeq = journal.rotate();
+        List<BookingSnapshot.FacilitySnapshot> facilities = new ArrayList<>(bookingTimeslots.size());
+        for (Map.Entry<Integer, FacilityTimeline> entry : bookingTimeslots.entrySet()) {
+            synchronized (entry.getValue()) {
+                facilities.add(new BookingSnapshot.FacilitySnapshot(entry.getKey(), journal.getAppendedSeq(),
+                        new ArrayList<>(bookingsByFacility.get(entry.getKey()).values())));
+            }
+        }
+        // The snapshot must not be ahead of the journal when restarting
+        journal.flush();
+        Path snapshotPath = Path.of(config.getBookingSnapshotPath());
+        // Any facility missing from the snapshot had no event before the new segment
+        BookingSnapshot.write(snapshotPath, new BookingSnapshot.Contents(segmentFirstSeq - 1, facilities));
+        journal.deleteSegmentsBefore(segmentFirstSeq);
+        log.info("[takeSnapshot] Wrote snapshot {} of {} facilities in {} ms", snapshotPath, facilities.size(),
+                (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    private void takeSnapshotQuietly() {
+        try {
+            takeSnapshot();
+        } catch (IOException | RuntimeException e) {
+            log.error("[takeSnapshotQuietly] Failed to write snapshot", e);
+        }
     }
 
     /**
@@ -105,29 +328,79 @@ public class BookingRepository implements InitializingBean {
      * @return
      */
     public boolean checkAvailability(int facilityId, int startTime, int endTime) throws UnavailableFacilityException {
-        List<Integer> facilityAvailability = Optional.ofNullable(bookingTimeslots.get(facilityId)).orElseThrow(UnavailableFacilityException::new);
+        if (!facilityIds.contains(facilityId)) {
+            throw new UnavailableFacilityException();
+        }
+        FacilityTimeline facilityAvailability = bookingTimeslots.get(facilityId);
+        validateTime(startTime, endTime, "[checkAvailability] Invalid availability checking time");
+        // Never booked
+        if (facilityAvailability == null) return true;
+        synchronized (facilityAvailability) {
+            return facilityAvailability.isFree(startTime, endTime);
+        }
+    }
+
+    public Availability exportAvailability(int facilityId) {
+        FacilityTimeline timeline = bookingTimeslots.get(facilityId);
+        if (timeline == null) {
+            return Availability.fromBitmap(facilityId, new byte[Constants.MINUTES_IN_WEEK / 8]);
+        }
+        synchronized (timeline) {
+            return Availability.fromBitmap(facilityId, timeline.exportBitmap());
+        }
+    }
+
+    /**
+     * Each facility's timeline doubles as the lock guarding it and the entries of bookingMap belonging to the facility,
+     * so operations on different facilities never contend.
+     * <p>
+     * Timelines are only allocated when a facility is first booked, so that memory grows with the number of facilities
+     * in use rather than with the size of the catalog.
+     * <p>
+     * Only for adding and moving bookings: a dropped facility keeps its timeline, but cannot be booked any more.
+     */
+    private FacilityTimeline getTimeline(int facilityId) throws UnavailableFacilityException {
+        if (!facilityIds.contains(facilityId)) {
+            throw new UnavailableFacilityException();
+        }
+        FacilityTimeline timeline = bookingTimeslots.get(facilityId);
+        if (timeline != null) return timeline;
+        return createTimeline(facilityId);
+    }
+
+    private static void validateTime(int startTime, int endTime, String message) {
         if (startTime < 0 ||
                 endTime <= startTime ||
                 endTime > Constants.MINUTES_IN_WEEK
         ) {
-            throw new IllegalArgumentException("[checkAvailability] Invalid availability checking time");
-        }
-        for (int time = startTime; time < endTime; time++) {
-            if (facilityAvailability.get(time) > 0) return false;
+            throw new IllegalArgumentException(message);
         }
-        return true;
     }
 
-    public List<Boolean> exportAvailability(int facilityId) {
-        return bookingTimeslots.get(facilityId).stream().map(bookingId -> bookingId >= 0).toList();
+    private static void releaseOrThrow(FacilityTimeline timeline, Booking booking, String caller) {
+        if (!timeline.release(booking.getBookingId(), booking.getBookingStartTime(), booking.getBookingEndTime())) {
+            InternalServerError ise = new InternalServerError("Inconsistency between bookingTimeslots and bookingMap found: " +
+                    "Time [" + booking.getBookingStartTime() + ", " + booking.getBookingEndTime() + ") of booking [" +
+                    booking.getBookingId() + "] (bookingMap) is not booked in bookingTimeslots");
+            log.error(caller, ise);
+            throw ise;
+        }
     }
 
+    /**
+     * Allow bookings of the facility. Its timeline is allocated on its first booking.
+     * @param facility
+     */
     public void addFacility(Facility facility) {
-        List<Integer> timeSlotsForFacility = new ArrayList<>(Constants.MINUTES_IN_WEEK);
-        for (int i = 0; i <= Constants.MINUTES_IN_WEEK; i++) {
-            timeSlotsForFacility.add(-1);
-        }
-        bookingTimeslots.putIfAbsent(facility.getId(), timeSlotsForFacility);
+        facilityIds.add(facility.getId());
+    }
+
+    private FacilityTimeline createTimeline(int facilityId) {
+        // Bookings first: once the timeline is visible, requests may use both
+        bookingsByFacility.computeIfAbsent(facilityId, id -> new HashMap<>());
+        return bookingTimeslots.computeIfAbsent(facilityId, id -> timelineType == FacilityTimelineType.MAPPED ?
+                timelineStore.getTimeline(id) :
+                timelineType.newTimeline(Constants.MINUTES_IN_WEEK));
     }
 
     public void addAllFacilities(List<Facility> facilityList) {
@@ -136,12 +409,51 @@ public class BookingRepository implements InitializingBean {
         }
     }
 
+    /**
+     * Disallow new bookings of the facility, and changes of its bookings. Its existing bookings are kept, and can still
+     * be cancelled.
+     * @param facility
+     */
     public void dropFacility(Facility facility) {
-        bookingMap.remove(facility.getId());
+        facilityIds.remove(facility.getId());
     }
 
     @Override
     public void afterPropertiesSet() throws Exception {
+        if (Objects.isNull(config)) return;
+        if (timelineType == FacilityTimelineType.MAPPED) {
+            timelineStore = new MappedTimelineStore(Path.of(config.getBookingTimelineMappedPath()), Constants.MINUTES_IN_WEEK);
+        }
+        if (!config.isBookingJournalEnabled()) return;
+        Path journalPath = Path.of(config.getBookingJournalPath());
+        long lastSeq = recover(Path.of(config.getBookingSnapshotPath()), journalPath);
+        journal = new BookingJournal(journalPath, FsyncPolicy.fromValue(config.getBookingJournalFsync()),
+                config.getBookingJournalFsyncIntervalMs(), lastSeq);
+        long snapshotIntervalS = config.getBookingSnapshotIntervalS();
+        if (snapshotIntervalS > 0) {
+            snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "booking-snapshotter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotExecutor.scheduleWithFixedDelay(this::takeSnapshotQuietly, snapshotIntervalS, snapshotIntervalS, TimeUnit.SECONDS);
+        }
+    }
 
+    @Override
+    public void destroy() throws Exception {
+        if (Objects.nonNull(snapshotExecutor)) {
+            snapshotExecutor.shutdown();
+            snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            // So that the next start only loads the snapshot
+            takeSnapshotQuietly();
+        }
+        if (Objects.nonNull(journal)) {
+            journal.close();
+        }
+        // Only close the store opened by afterPropertiesSet()
+        if (Objects.nonNull(config) && Objects.nonNull(timelineStore)) {
+            timelineStore.close();
+        }
     }
 }
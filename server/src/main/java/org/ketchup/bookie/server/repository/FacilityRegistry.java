@@ -0,0 +1,156 @@
+package org.ketchup.bookie.server.repository;
+
+import org.ketchup.bookie.common.enums.FacilityType;
+import org.ketchup.bookie.common.pojo.Facility;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Facilities indexed by ID, name and type, safe for concurrent reads and writes.
+ * <p>
+ * Lookups by name and type are hash lookups. Lists of all facilities and of the facilities of a type are immutable
+ * snapshots, rebuilt by the first read after a change: repeated reads of an unchanged catalog return the same list
+ * without copying. Lists by name are replaced on each change of the name instead, since names are mostly unique.
+ * <p>
+ * Index updates for a facility happen inside {@code facilitiesById.compute} for its ID, so that concurrent changes of
+ * the same facility cannot leave the indexes inconsistent.
+ */
+class FacilityRegistry {
+
+    /**
+     * Immutable snapshot of a map's values, rebuilt when read after {@link #invalidate()}.
+     */
+    private static class CachedValues {
+        private record Snapshot(long version, List<Facility> facilities) {
+        }
+
+        private final Map<Integer, Facility> members;
+        private final AtomicLong version = new AtomicLong();
+        private volatile Snapshot snapshot = new Snapshot(0, List.of());
+
+        private CachedValues(Map<Integer, Facility> members) {
+            this.members = members;
+        }
+
+        /**
+         * Called after each change of members.
+         */
+        private void invalidate() {
+            version.incrementAndGet();
+        }
+
+        private List<Facility> get() {
+            // Read before copying: a change made during the copy leaves the new snapshot outdated
+            long currentVersion = version.get();
+            Snapshot current = snapshot;
+            if (current.version() == currentVersion) {
+                return current.facilities();
+            }
+            List<Facility> facilities = List.copyOf(members.values());
+            snapshot = new Snapshot(currentVersion, facilities);
+            return facilities;
+        }
+    }
+
+    private final Map<Integer, Facility> facilitiesById = new ConcurrentHashMap<>();
+    private final CachedValues allFacilities = new CachedValues(facilitiesById);
+
+    // name : facilities with this name, copy-on-write
+    private final Map<String, List<Facility>> facilitiesByName = new ConcurrentHashMap<>();
+
+    // Every FacilityType is present, so the map itself never changes
+    private final Map<FacilityType, Map<Integer, Facility>> facilitiesByType = new EnumMap<>(FacilityType.class);
+    private final Map<FacilityType, CachedValues> facilitiesOfType = new EnumMap<>(FacilityType.class);
+
+    FacilityRegistry() {
+        for (FacilityType type : FacilityType.values()) {
+            Map<Integer, Facility> members = new ConcurrentHashMap<>();
+            facilitiesByType.put(type, members);
+            facilitiesOfType.put(type, new CachedValues(members));
+        }
+    }
+
+    Facility get(int facilityId) {
+        return facilitiesById.get(facilityId);
+    }
+
+    /**
+     * Add a facility, or replace the facility with the same ID.
+     */
+    void put(Facility facility) {
+        facilitiesById.compute(facility.getId(), (id, previous) -> {
+            if (previous != null) {
+                unindex(previous);
+            }
+            index(facility);
+            return facility;
+        });
+        allFacilities.invalidate();
+    }
+
+    /**
+     * @return the removed facility, null if there is no such facility
+     */
+    Facility remove(int facilityId) {
+        Facility[] removed = {null};
+        facilitiesById.computeIfPresent(facilityId, (id, previous) -> {
+            unindex(previous);
+            removed[0] = previous;
+            return null;
+        });
+        if (removed[0] != null) {
+            allFacilities.invalidate();
+        }
+        return removed[0];
+    }
+
+    List<Facility> getByName(String name) {
+        if (name == null) return List.of();
+        return facilitiesByName.getOrDefault(name, List.of());
+    }
+
+    List<Facility> getByType(FacilityType type) {
+        return facilitiesOfType.get(type).get();
+    }
+
+    List<Facility> list() {
+        return allFacilities.get();
+    }
+
+    int size() {
+        return facilitiesById.size();
+    }
+
+    private void index(Facility facility) {
+        if (facility.getName() != null) {
+            facilitiesByName.compute(facility.getName(), (name, sameName) -> {
+                if (sameName == null) return List.of(facility);
+                List<Facility> updated = new ArrayList<>(sameName.size() + 1);
+                updated.addAll(sameName);
+                updated.add(facility);
+                return List.copyOf(updated);
+            });
+        }
+        FacilityType type = typeOf(facility);
+        facilitiesByType.get(type).put(facility.getId(), facility);
+        facilitiesOfType.get(type).invalidate();
+    }
+
+    private void unindex(Facility facility) {
+        if (facility.getName() != null) {
+            facilitiesByName.computeIfPresent(facility.getName(), (name, sameName) -> {
+                List<Facility> updated = sameName.stream().filter(other -> other.getId() != facility.getId()).toList();
+                return updated.isEmpty() ? null : updated;
+            });
+        }
+        FacilityType type = typeOf(facility);
+        facilitiesByType.get(type).remove(facility.getId());
+        facilitiesOfType.get(type).invalidate();
+    }
+
+    private static FacilityType typeOf(Facility facility) {
+        return Objects.requireNonNullElse(facility.getType(), FacilityType.UNKNOWN);
+    }
+}
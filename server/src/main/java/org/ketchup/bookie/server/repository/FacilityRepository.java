@@ -1,50 +1,238 @@
 package org.ketchup.bookie.server.repository;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
+import org.ketchup.bookie.common.enums.FacilityType;
 import org.ketchup.bookie.common.pojo.Facility;
+import org.ketchup.bookie.server.config.Config;
+import org.ketchup.bookie.server.config.Constants;
+import org.ketchup.bookie.server.repository.journal.FacilityChange;
+import org.ketchup.bookie.server.repository.journal.FacilityChangeLog;
 import org.ketchup.bookie.server.util.CsvUtils;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Facility catalog, served from memory.
+ * <p>
+ * The catalog is persisted as the CSV file plus a {@link FacilityChangeLog} of the facilities added and dropped since
+ * the CSV was written, so a change costs one append instead of rewriting the CSV. Once the log holds
+ * server.facility.changelog.compaction.threshold changes, a background thread compacts it: the log is moved aside, the
+ * whole catalog is written to a new CSV file which atomically replaces the previous one, then the moved log is deleted.
+ * On startup, the CSV is loaded, then the moved log (if a compaction was interrupted) and the log are replayed.
+ * <p>
+ * In memory, facilities are kept in a {@link FacilityRegistry}: lookups by name and type do not scan the catalog, and
+ * the lists returned are immutable and shared until the catalog changes.
+ */
 @Repository
 @Slf4j
-public class FacilityRepository implements InitializingBean {
+public class FacilityRepository implements InitializingBean, DisposableBean {
 
     private final BookingRepository bookingRepository;
 
-    private final Map<Integer, Facility> facilities = new HashMap<>();
+    private final Config config;
 
-    public FacilityRepository(BookingRepository bookingRepository) {
+    private final FacilityRegistry facilities = new FacilityRegistry();
+
+    private final Path csvPath;
+
+    private FacilityChangeLog changeLog;
+
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "facility-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
+
+    private final Object compactionLock = new Object();
+
+    @Autowired
+    public FacilityRepository(BookingRepository bookingRepository, Config config) {
+        this(bookingRepository, config, Path.of(Constants.FACILITIES_CSV_PATH));
+    }
+
+    /**
+     * Repository of the catalog in csvPath instead of the default CSV file
+     * @param bookingRepository
+     * @param config
+     * @param csvPath
+     */
+    public FacilityRepository(BookingRepository bookingRepository, Config config, Path csvPath) {
         this.bookingRepository = bookingRepository;
+        this.config = config;
+        this.csvPath = csvPath;
     }
 
     public Facility getFacilityById(int facilityId) {
         return Optional.ofNullable(facilities.get(facilityId)).orElse(Facility.NULL_INSTANCE);
     }
 
+    /**
+     * @param name
+     * @return immutable list of the facilities with this name
+     */
     public List<Facility> getFacilitiesByName(String name) {
-        return facilities.values().stream().filter(facility -> StringUtils.equals(name, facility.getName())).toList();
+        return facilities.getByName(name);
+    }
+
+    /**
+     * @param type
+     * @return immutable list of the facilities of this type
+     */
+    public List<Facility> getFacilitiesByType(FacilityType type) {
+        return facilities.getByType(type);
     }
 
+    /**
+     * @return immutable list of all facilities, shared by all callers until the catalog changes
+     */
     public List<Facility> listAllFacilities() {
-        return facilities.values().stream().toList();
+        return facilities.list();
+    }
+
+    /**
+     * Add a facility, or replace the facility with the same ID.
+     * @param facility
+     * @throws IOException if the change could not be logged, in which case the catalog is unchanged
+     */
+    public void addFacility(Facility facility) throws IOException {
+        // The log holds the changes in the order they are applied
+        synchronized (changeLog) {
+            changeLog.append(new FacilityChange(FacilityChange.Type.ADD, facility));
+            applyChange(FacilityChange.Type.ADD, facility);
+        }
+        compactIfNeeded();
     }
 
+    /**
+     * Drop a facility: it can no longer be booked, nor its bookings changed. Its existing bookings are kept, and can
+     * still be cancelled.
+     * @param facilityId
+     * @return false if there is no such facility
+     * @throws IOException if the change could not be logged, in which case the catalog is unchanged
+     */
+    public boolean dropFacility(int facilityId) throws IOException {
+        synchronized (changeLog) {
+            Facility facility = facilities.get(facilityId);
+            if (facility == null) return false;
+            changeLog.append(new FacilityChange(FacilityChange.Type.DROP, facility));
+            applyChange(FacilityChange.Type.DROP, facility);
+        }
+        compactIfNeeded();
+        return true;
+    }
+
+    private void applyChange(FacilityChange.Type type, Facility facility) {
+        if (type == FacilityChange.Type.ADD) {
+            facilities.put(facility);
+            bookingRepository.addFacility(facility);
+        } else {
+            facilities.remove(facility.getId());
+            bookingRepository.dropFacility(facility);
+        }
+    }
+
+    /**
+     * Load the facilities of the CSV file, and make them bookable. Rows are parsed in parallel.
+     * @throws IOException if the file cannot be read, or has several rows with the same ID, since which one would be
+     * kept is arbitrary
+     */
     public void loadFromCsv() throws IOException {
-        CsvUtils.readFacilitiesFromCsv().forEach(facility -> facilities.put(facility.getId(), facility));
+        long startNanos = System.nanoTime();
+        int initialCount = facilities.size();
+        long facilityCount = CsvUtils.readFacilitiesFromCsv(csvPath, facility -> {
+            facilities.put(facility);
+            bookingRepository.addFacility(facility);
+        });
+        if (facilities.size() - initialCount != facilityCount) {
+            throw new IOException("[loadFromCsv] Duplicate facility IDs in " + csvPath + ": " + facilityCount +
+                    " rows for " + (facilities.size() - initialCount) + " facilities");
+        }
+        log.info("[loadFromCsv] Loaded {} facilities in {} ms", facilityCount, (System.nanoTime() - startNanos) / 1_000_000);
     }
 
+    /**
+     * Compact the catalog: write all facilities to the CSV file, and drop the changes it now holds from the log.
+     * Changes made meanwhile are kept in the log.
+     * @throws IOException
+     */
     public void writeToCsv() throws IOException {
-        CsvUtils.writeFacilitiesToCsv(new ArrayList<>(facilities.values()));
+        // One compaction at a time: the moved log of another one must not be replaced before its CSV is written
+        synchronized (compactionLock) {
+            long startNanos = System.nanoTime();
+            Path compactingPath = getCompactingPath();
+            if (Files.exists(compactingPath)) {
+                // Left by a failed compaction: its changes are only in memory and in that log, which must not be
+                // replaced before the CSV holds them
+                CsvUtils.writeFacilitiesToCsv(csvPath, facilities.list());
+                Files.delete(compactingPath);
+            }
+            List<Facility> snapshot;
+            synchronized (changeLog) {
+                snapshot = facilities.list();
+                changeLog.rotate(compactingPath);
+            }
+            CsvUtils.writeFacilitiesToCsv(csvPath, snapshot);
+            Files.delete(compactingPath);
+            log.info("[writeToCsv] Compacted {} facilities in {} ms", snapshot.size(), (System.nanoTime() - startNanos) / 1_000_000);
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (changeLog.getRecordCount() < config.getFacilityChangelogCompactionThreshold()) return;
+        if (!compactionScheduled.compareAndSet(false, true)) return;
+        compactionExecutor.execute(() -> {
+            try {
+                writeToCsv();
+            } catch (IOException ioe) {
+                log.error("[compactIfNeeded] Failed to compact facility catalog", ioe);
+            } finally {
+                compactionScheduled.set(false);
+            }
+        });
+    }
+
+    private Path getCompactingPath() {
+        Path changeLogPath = Path.of(config.getFacilityChangelogPath());
+        return changeLogPath.resolveSibling(changeLogPath.getFileName() + ".compacting");
     }
 
     @Override
     public void afterPropertiesSet() throws Exception {
         loadFromCsv();
-        bookingRepository.addAllFacilities(facilities.values().stream().toList());
+        Path changeLogPath = Path.of(config.getFacilityChangelogPath());
+        Path compactingPath = getCompactingPath();
+        long changeCount = FacilityChangeLog.replay(compactingPath, change -> applyChange(change.getType(), change.getFacility()));
+        long compactingChangeCount = changeCount;
+        changeCount += FacilityChangeLog.replay(changeLogPath, change -> applyChange(change.getType(), change.getFacility()));
+        log.info("[afterPropertiesSet] Replayed {} facility changes", changeCount);
+        changeLog = new FacilityChangeLog(changeLogPath, changeCount - compactingChangeCount);
+        if (Files.exists(compactingPath)) {
+            // A compaction was interrupted: finish it, nothing else uses the catalog yet
+            CsvUtils.writeFacilitiesToCsv(csvPath, facilities.list());
+            Files.delete(compactingPath);
+            changeLog.truncate();
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        compactionExecutor.shutdown();
+        compactionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        if (Objects.nonNull(changeLog)) {
+            changeLog.close();
+        }
     }
 }
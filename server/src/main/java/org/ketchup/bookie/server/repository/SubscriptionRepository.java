@@ -0,0 +1,194 @@
+package org.ketchup.bookie.server.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread-safe store of the subscriptions of clients monitoring facilities.
+ * <p>
+ * Subscriptions are indexed by requestId, by facility and by expiry time slice, so that adding or removing one only
+ * touches its own entries. Expired subscriptions are swept slice by slice in {@link #removeExpired()}, including those
+ * of facilities which never change, so the memory used stays proportional to the live subscriptions.
+ * <p>
+ * Once the last subscription to a facility is removed, the listener set with
+ * {@link #setFacilityUnsubscribedListener(IntConsumer)} is called, so that state kept per monitored facility elsewhere
+ * can be dropped too.
+ */
+@Repository
+@Slf4j
+public class SubscriptionRepository {
+    private static final long SLICE_MS = 1_000;
+
+    public record Subscription(UUID requestId, int facilityId, InetAddress clientAddress, int clientPort, long expiry) {
+        public boolean isExpired(long now) {
+            return now > expiry;
+        }
+    }
+
+    private final LongSupplier clock;
+    // { requestId : subscription }
+    private final Map<UUID, Subscription> subscriptions = new ConcurrentHashMap<>();
+    // { facilityId : Set<requestId> }
+    private final Map<Integer, Set<UUID>> subscribersByFacility = new ConcurrentHashMap<>();
+    // { expiry slice : Set<requestId> }
+    private final Map<Long, Set<UUID>> subscribersByExpiry = new ConcurrentHashMap<>();
+    // All slices up to and including this one have been swept
+    private long lastSweptSlice;
+    private volatile IntConsumer facilityUnsubscribedListener = facilityId -> {};
+
+    public SubscriptionRepository() {
+        this(System::currentTimeMillis);
+    }
+
+    SubscriptionRepository(LongSupplier clock) {
+        this.clock = clock;
+        this.lastSweptSlice = Math.floorDiv(clock.getAsLong(), SLICE_MS) - 1;
+    }
+
+    /**
+     * Add a subscription, replacing any subscription with the same requestId.
+     * @param subscription
+     */
+    public void addSubscription(Subscription subscription) {
+        Subscription[] replaced = {null};
+        subscriptions.compute(subscription.requestId(), (requestId, existing) -> {
+            if (Objects.nonNull(existing)) {
+                unindex(existing);
+                replaced[0] = existing;
+            }
+            addToIndex(subscribersByFacility, subscription.facilityId(), requestId);
+            addToIndex(subscribersByExpiry, expirySlice(subscription), requestId);
+            return subscription;
+        });
+        if (Objects.nonNull(replaced[0])) {
+            notifyIfUnsubscribed(replaced[0].facilityId());
+        }
+    }
+
+    /**
+     * @param listener called with the ID of a facility once its last subscription is removed, outside of any lock of
+     *                 the repository. The facility may have been subscribed to again meanwhile.
+     */
+    public void setFacilityUnsubscribedListener(IntConsumer listener) {
+        this.facilityUnsubscribedListener = listener;
+    }
+
+    /**
+     * @param facilityId
+     * @return true if the facility has subscriptions, including expired ones which have not been removed yet
+     */
+    public boolean hasSubscriptions(int facilityId) {
+        return subscribersByFacility.containsKey(facilityId);
+    }
+
+    /**
+     * @param requestId
+     * @return the subscription, or null if there is none or it has been removed
+     */
+    public Subscription getSubscription(UUID requestId) {
+        return subscriptions.get(requestId);
+    }
+
+    /**
+     * @param requestId
+     * @return the removed subscription, or null if there was none
+     */
+    public Subscription removeSubscription(UUID requestId) {
+        Subscription[] removed = {null};
+        subscriptions.computeIfPresent(requestId, (id, subscription) -> {
+            unindex(subscription);
+            removed[0] = subscription;
+            return null;
+        });
+        if (Objects.nonNull(removed[0])) {
+            notifyIfUnsubscribed(removed[0].facilityId());
+        }
+        return removed[0];
+    }
+
+    /**
+     * @param facilityId
+     * @return the subscriptions to the facility which have not expired
+     */
+    public List<Subscription> getSubscriptions(int facilityId) {
+        Set<UUID> requestIds = subscribersByFacility.get(facilityId);
+        if (Objects.isNull(requestIds)) return List.of();
+        long now = clock.getAsLong();
+        List<Subscription> facilitySubscriptions = new ArrayList<>(requestIds.size());
+        for (UUID requestId : requestIds) {
+            Subscription subscription = subscriptions.get(requestId);
+            if (Objects.nonNull(subscription) && !subscription.isExpired(now)) {
+                facilitySubscriptions.add(subscription);
+            }
+        }
+        return facilitySubscriptions;
+    }
+
+    /**
+     * Remove the subscriptions in every time slice which has fully expired since the last call.
+     * @return number of subscriptions removed
+     */
+    public synchronized int removeExpired() {
+        long now = clock.getAsLong();
+        // Every subscription of slice s expires before (s + 1) * SLICE_MS
+        long expiredSlice = Math.floorDiv(now, SLICE_MS) - 1;
+        int removedCount = 0;
+        for (long slice = lastSweptSlice + 1; slice <= expiredSlice; slice++) {
+            Set<UUID> requestIds = subscribersByExpiry.get(slice);
+            if (Objects.isNull(requestIds)) continue;
+            for (UUID requestId : requestIds) {
+                if (Objects.nonNull(removeSubscription(requestId))) {
+                    removedCount++;
+                }
+            }
+        }
+        lastSweptSlice = Math.max(lastSweptSlice, expiredSlice);
+        if (removedCount > 0) {
+            log.info("[removeExpired] Removed {} expired subscriptions", removedCount);
+        }
+        return removedCount;
+    }
+
+    public int size() {
+        return subscriptions.size();
+    }
+
+    private void notifyIfUnsubscribed(int facilityId) {
+        if (!hasSubscriptions(facilityId)) {
+            facilityUnsubscribedListener.accept(facilityId);
+        }
+    }
+
+    private void unindex(Subscription subscription) {
+        removeFromIndex(subscribersByFacility, subscription.facilityId(), subscription.requestId());
+        removeFromIndex(subscribersByExpiry, expirySlice(subscription), subscription.requestId());
+    }
+
+    private static long expirySlice(Subscription subscription) {
+        return Math.floorDiv(subscription.expiry(), SLICE_MS);
+    }
+
+    private static <K> void addToIndex(Map<K, Set<UUID>> index, K key, UUID requestId) {
+        index.compute(key, (k, requestIds) -> {
+            if (Objects.isNull(requestIds)) {
+                requestIds = ConcurrentHashMap.newKeySet();
+            }
+            requestIds.add(requestId);
+            return requestIds;
+        });
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<UUID>> index, K key, UUID requestId) {
+        // Drop empty sets so that the index does not keep an entry per facility or slice ever used
+        index.computeIfPresent(key, (k, requestIds) -> {
+            requestIds.remove(requestId);
+            return requestIds.isEmpty() ? null : requestIds;
+        });
+    }
+}
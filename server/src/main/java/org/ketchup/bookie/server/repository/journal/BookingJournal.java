@@ -0,0 +1,429 @@
+package org.ketchup.bookie.server.repository.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ketchup.bookie.common.exception.SerializationException;
+import org.ketchup.bookie.common.util.BinaryWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of the changes to the bookings.
+ * <p>
+ * Events are numbered from 1 in the order they are appended. The journal is split into segment files named
+ * {@code <path>.<sequence number of their first event>}: {@link #rotate()} starts a new segment, so that the segments
+ * older than a {@link BookingSnapshot} can be deleted with {@link #deleteSegmentsBefore(long)}. Only the last segment is
+ * ever appended to.
+ * <p>
+ * Each record is a {@link JournalEvent} in the layout of {@link JournalRecords}. A record cut short by a crash, or
+ * whose CRC does not match, ends the journal: it is discarded when the journal is replayed.
+ * <p>
+ * Group commit: {@link #append(JournalEvent)} only encodes the event into an in-memory batch. A dedicated writer thread
+ * writes the whole batch accumulated since its last write at once, then forces it to disk according to the
+ * {@link FsyncPolicy}. With {@link FsyncPolicy#ALWAYS}, callers wait in {@link #awaitDurable(long)}, and every request
+ * which appended while the previous fsync was in progress shares the next one.
+ * <p>
+ * Once the writer thread fails to write or force a batch, it stops: {@link #append(JournalEvent)} throws from then on,
+ * so that no change is made without being journaled, and {@link #awaitDurable(long)} reports the failure for every
+ * event which was not forced to disk.
+ */
+@Slf4j
+public class BookingJournal implements Closeable {
+
+    private final Path path;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMs;
+    private final Thread writerThread;
+    // Only used by the writer thread (and by close() once the writer thread is done)
+    private FileChannel channel;
+    private final CRC32 crc = new CRC32();
+
+    // Guards everything below
+    private final Object lock = new Object();
+    // Events appended since the writer thread took the last batch
+    private BinaryWriter pendingBatch = new BinaryWriter();
+    private BinaryWriter writingBatch = new BinaryWriter();
+    // Sequence numbers of the last event appended / written to the file / forced to disk
+    private long appendedSeq = 0;
+    private long writtenSeq = 0;
+    private long durableSeq = 0;
+    private long syncCount = 0;
+    private long segmentFirstSeq;
+    // Position in pendingBatch where a new segment starting at rotateSeq should begin, -1 if no rotation is requested
+    private int rotateAtPosition = -1;
+    private long rotateSeq;
+    // Force the next batch to disk whatever the policy
+    private boolean syncRequested = false;
+    private IOException failure;
+    private boolean closed = false;
+
+    /**
+     * Open the journal for appending, after {@link #replay(Path, long, BiConsumer)}.
+     * @param path
+     * @param fsyncPolicy
+     * @param fsyncIntervalMs only used with {@link FsyncPolicy#INTERVAL}
+     * @param lastSeq sequence number of the last event replayed (or covered by the snapshot)
+     * @throws IOException
+     */
+    public BookingJournal(Path path, FsyncPolicy fsyncPolicy, long fsyncIntervalMs, long lastSeq) throws IOException {
+        this.path = path;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMs = Math.max(1, fsyncIntervalMs);
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        NavigableMap<Long, Path> segments = listSegments(path);
+        segmentFirstSeq = segments.isEmpty() ? lastSeq + 1 : segments.lastKey();
+        channel = openSegment(segmentFirstSeq);
+        appendedSeq = lastSeq;
+        writtenSeq = lastSeq;
+        durableSeq = lastSeq;
+        writerThread = new Thread(this::writeBatches, "booking-journal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Read every valid event of a journal after afterSeq, in order. Segments which only hold earlier events are not
+     * read at all. A torn or corrupted tail of the last segment is truncated, so that new events are appended right
+     * after the last valid one.
+     * @param path
+     * @param afterSeq
+     * @param eventConsumer called with the sequence number and the event
+     * @return sequence number of the last event of the journal, 0 if it is empty
+     * @throws IOException also if a segment other than the last one is damaged, since events would be missing
+     */
+    public static long replay(Path path, long afterSeq, BiConsumer<Long, JournalEvent> eventConsumer) throws IOException {
+        NavigableMap<Long, Path> segments = listSegments(path);
+        long lastSeq = 0;
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            Long nextFirstSeq = segments.higherKey(segment.getKey());
+            if (nextFirstSeq != null && nextFirstSeq <= afterSeq + 1) {
+                lastSeq = nextFirstSeq - 1;
+                continue;
+            }
+            if (lastSeq != 0 && segment.getKey() != lastSeq + 1) {
+                throw new IOException("[replay] Missing events " + (lastSeq + 1) + " to " + (segment.getKey() - 1) + " in journal " + path);
+            }
+            lastSeq = replaySegment(segment.getValue(), segment.getKey(), afterSeq, nextFirstSeq == null, eventConsumer);
+        }
+        return lastSeq;
+    }
+
+    /**
+     * @return sequence number of the last event of the segment
+     */
+    private static long replaySegment(Path segment, long firstSeq, long afterSeq, boolean isLast,
+                                      BiConsumer<Long, JournalEvent> eventConsumer) throws IOException {
+        long[] seq = {firstSeq - 1};
+        JournalRecords.ReadResult result = JournalRecords.read(segment, JournalEvent::new, event -> {
+            seq[0]++;
+            if (seq[0] > afterSeq) {
+                eventConsumer.accept(seq[0], event);
+            }
+        });
+        if (result.error() != null) {
+            if (!isLast) {
+                throw new IOException("[replay] Invalid record at offset " + result.validLength() + " in " + segment, result.error());
+            }
+            log.warn("[replay] Discarding invalid journal tail of {} bytes at offset {} in {}: {}",
+                    Files.size(segment) - result.validLength(), result.validLength(), segment, result.error().getMessage());
+            JournalRecords.truncate(segment, result.validLength());
+        }
+        return seq[0];
+    }
+
+    /**
+     * @return { sequence number of the first event : segment file }
+     */
+    private static NavigableMap<Long, Path> listSegments(Path path) throws IOException {
+        NavigableMap<Long, Path> segments = new TreeMap<>();
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory == null || !Files.isDirectory(directory)) return segments;
+        String prefix = path.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, path.getFileName() + ".*")) {
+            for (Path file : files) {
+                try {
+                    segments.put(Long.parseLong(file.getFileName().toString().substring(prefix.length())), file);
+                } catch (NumberFormatException nfe) {
+                    // Not a segment
+                }
+            }
+        }
+        return segments;
+    }
+
+    private FileChannel openSegment(long firstSeq) throws IOException {
+        Path segment = path.resolveSibling(path.getFileName() + "." + firstSeq);
+        return FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Add an event to the current batch. Events are written in the order they are appended.
+     * @param event
+     * @return sequence number of the event, to be passed to {@link #awaitDurable(long)}
+     * @throws IOException if the writer thread has failed: the journal accepts no more events, and the change must not
+     * be made
+     */
+    public long append(JournalEvent event) throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("[append] Journal " + path + " is closed");
+            }
+            if (failure != null) {
+                throw new IOException("[append] Journal " + path + " failed to write earlier events", failure);
+            }
+            try {
+                JournalRecords.write(pendingBatch, event, crc);
+            } catch (SerializationException se) {
+                // Events only hold ints, this cannot happen
+                throw new IllegalStateException("[append] Failed to serialize journal event", se);
+            }
+            appendedSeq++;
+            lock.notifyAll();
+            return appendedSeq;
+        }
+    }
+
+    /**
+     * With {@link FsyncPolicy#ALWAYS}, wait until the event with this sequence number has been forced to disk.
+     * Does not wait with the other policies.
+     * @param seq
+     * @throws IOException if the journal failed before forcing the event to disk, whatever the policy
+     */
+    public void awaitDurable(long seq) throws IOException {
+        synchronized (lock) {
+            if (fsyncPolicy != FsyncPolicy.ALWAYS) {
+                if (failure != null && durableSeq < seq) throw failure;
+                return;
+            }
+            while (durableSeq < seq && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("[awaitDurable] Interrupted while waiting for the journal", ie);
+                }
+            }
+            if (durableSeq < seq) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Wait until every event appended so far has been forced to disk, whatever the policy.
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        synchronized (lock) {
+            long seq = appendedSeq;
+            if (durableSeq >= seq) return;
+            syncRequested = true;
+            lock.notifyAll();
+            while (durableSeq < seq && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("[flush] Interrupted while waiting for the journal", ie);
+                }
+            }
+            if (durableSeq < seq) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * @return sequence number of the last event appended. Called with the lock of a facility held, every event of the
+     * facility up to this number has been appended, and none after it.
+     */
+    public long getAppendedSeq() {
+        synchronized (lock) {
+            return appendedSeq;
+        }
+    }
+
+    /**
+     * Start a new segment: the events appended from now on go to the new segment. Waits until the previous segment has
+     * been written and forced to disk, whatever the policy.
+     * @return sequence number of the first event of the new segment (or of the current segment, if it is still empty)
+     * @throws IOException
+     */
+    public long rotate() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("[rotate] Journal " + path + " is closed");
+            }
+            if (rotateAtPosition < 0) {
+                if (appendedSeq + 1 == segmentFirstSeq) {
+                    return segmentFirstSeq;
+                }
+                rotateAtPosition = pendingBatch.position();
+                rotateSeq = appendedSeq + 1;
+                lock.notifyAll();
+            }
+            long newSegmentFirstSeq = rotateSeq;
+            while (segmentFirstSeq != newSegmentFirstSeq && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("[rotate] Interrupted while waiting for the journal", ie);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return newSegmentFirstSeq;
+        }
+    }
+
+    /**
+     * Delete the segments which only hold events before seq. The current segment is never deleted.
+     * @param seq
+     * @throws IOException
+     */
+    public void deleteSegmentsBefore(long seq) throws IOException {
+        NavigableMap<Long, Path> segments = listSegments(path);
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            Long nextFirstSeq = segments.higherKey(segment.getKey());
+            if (nextFirstSeq == null || nextFirstSeq > seq) break;
+            Files.deleteIfExists(segment.getValue());
+        }
+    }
+
+    /**
+     * @return number of fsyncs done so far
+     */
+    public long getSyncCount() {
+        synchronized (lock) {
+            return syncCount;
+        }
+    }
+
+    /**
+     * Writer stage: write each batch, and force it to disk when the policy requires it.
+     */
+    private void writeBatches() {
+        long lastSyncAt = System.currentTimeMillis();
+        while (true) {
+            long batchSeq;
+            boolean sync;
+            int splitAt;
+            long newSegmentFirstSeq;
+            synchronized (lock) {
+                while (pendingBatch.position() == 0 && rotateAtPosition < 0 && !syncRequested && !closed && failure == null) {
+                    if (fsyncPolicy == FsyncPolicy.INTERVAL && durableSeq < writtenSeq) {
+                        long untilSync = lastSyncAt + fsyncIntervalMs - System.currentTimeMillis();
+                        if (untilSync <= 0) break;
+                        waitQuietly(untilSync);
+                    } else {
+                        waitQuietly(0);
+                    }
+                }
+                if (failure != null || (closed && pendingBatch.position() == 0 && rotateAtPosition < 0 && durableSeq == writtenSeq)) {
+                    return;
+                }
+                splitAt = rotateAtPosition;
+                newSegmentFirstSeq = rotateSeq;
+                rotateAtPosition = -1;
+                BinaryWriter batch = pendingBatch;
+                pendingBatch = writingBatch;
+                writingBatch = batch;
+                batchSeq = appendedSeq;
+                sync = syncRequested || switch (fsyncPolicy) {
+                    case ALWAYS -> true;
+                    case INTERVAL -> closed || System.currentTimeMillis() - lastSyncAt >= fsyncIntervalMs;
+                    case NONE -> closed;
+                };
+                syncRequested = false;
+            }
+            try {
+                ByteBuffer buffer = writingBatch.asBuffer();
+                if (splitAt >= 0) {
+                    // The end of the previous segment, then the beginning of the new one
+                    ByteBuffer previousSegmentPart = buffer.duplicate().limit(splitAt);
+                    while (previousSegmentPart.hasRemaining()) {
+                        channel.write(previousSegmentPart);
+                    }
+                    channel.force(false);
+                    channel.close();
+                    channel = openSegment(newSegmentFirstSeq);
+                    buffer.position(splitAt);
+                }
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                writingBatch.reset();
+                if (sync) {
+                    channel.force(false);
+                    lastSyncAt = System.currentTimeMillis();
+                }
+                synchronized (lock) {
+                    writtenSeq = batchSeq;
+                    if (splitAt >= 0) {
+                        segmentFirstSeq = newSegmentFirstSeq;
+                        durableSeq = Math.max(durableSeq, newSegmentFirstSeq - 1);
+                    }
+                    if (sync) {
+                        durableSeq = batchSeq;
+                        syncCount++;
+                    }
+                    lock.notifyAll();
+                }
+            } catch (IOException ioe) {
+                log.error("[writeBatches] Failed to write journal {}, refusing further events", path, ioe);
+                synchronized (lock) {
+                    failure = ioe;
+                    // Nothing writes them any more
+                    pendingBatch.reset();
+                    lock.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    private void waitQuietly(long timeoutMs) {
+        try {
+            lock.wait(timeoutMs);
+        } catch (InterruptedException ie) {
+            // Only closing the journal stops the writer
+        }
+    }
+
+    /**
+     * Write and force everything appended so far, then close the file.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        synchronized (lock) {
+            if (failure != null) throw failure;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.ketchup.bookie.server.repository.journal;
+
+import org.ketchup.bookie.common.exception.SerializationException;
+import org.ketchup.bookie.common.pojo.Booking;
+import org.ketchup.bookie.common.util.BinaryReader;
+import org.ketchup.bookie.common.util.BinaryWriter;
+import org.ketchup.bookie.server.util.FileUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of the bookings of every facility, each tagged with the sequence number of the last
+ * {@link BookingJournal} event it includes. On startup, only the journal events after it need to be replayed.
+ * <p>
+ * The snapshot also records the sequence number of the last event included by every facility, including those missing
+ * from the snapshot (which had no event yet when it started): events up to it are never replayed, and the journal
+ * segments before it may be deleted.
+ * <p>
+ * Layout, with the value encoding of PROTOCOL.md: int format version, long journal sequence number of the snapshot,
+ * int number of facilities, then for each facility int facilityId, long journal sequence number and byte[] bookings
+ * (bookingId, start and end of each booking as 3 raw big-endian ints), and finally the CRC32 of everything before it as
+ * an int value.
+ * <p>
+ * The snapshot is written to a temporary file which then atomically replaces the previous snapshot, so a crash while
+ * writing leaves the previous snapshot in place. {@link #write} returns once the replacement itself is on disk.
+ */
+public class BookingSnapshot {
+    private static final int FORMAT_VERSION = 2;
+    private static final int BOOKING_BYTES = 3 * Integer.BYTES;
+
+    /**
+     * Bookings of a facility, copied with the facility locked.
+     * @param facilityId
+     * @param journalSeq sequence number of the last journal event included
+     * @param bookings
+     */
+    public record FacilitySnapshot(int facilityId, long journalSeq, List<Booking> bookings) {
+    }
+
+    /**
+     * @param journalSeq sequence number of the last journal event included by every facility, whether it is in
+     *                   facilities or not
+     * @param facilities
+     */
+    public record Contents(long journalSeq, List<FacilitySnapshot> facilities) {
+    }
+
+    private BookingSnapshot() {
+    }
+
+    public static void write(Path path, Contents contents) throws IOException {
+        BinaryWriter writer = new BinaryWriter();
+        try {
+            writer.writeInt(FORMAT_VERSION);
+            writer.writeLong(contents.journalSeq());
+            writer.writeInt(contents.facilities().size());
+            for (FacilitySnapshot facility : contents.facilities()) {
+                writer.writeInt(facility.facilityId());
+                writer.writeLong(facility.journalSeq());
+                ByteBuffer bookings = ByteBuffer.allocate(facility.bookings().size() * BOOKING_BYTES);
+                for (Booking booking : facility.bookings()) {
+                    bookings.putInt(booking.getBookingId())
+                            .putInt(booking.getBookingStartTime())
+                            .putInt(booking.getBookingEndTime());
+                }
+                writer.writeBytes(bookings.array());
+            }
+            CRC32 crc = new CRC32();
+            crc.update(writer.asBuffer());
+            writer.writeInt((int) crc.getValue());
+        } catch (SerializationException se) {
+            throw new IOException("[write] Failed to serialize snapshot", se);
+        }
+
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = writer.asBuffer();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // The journal segments covered by the snapshot are deleted next
+        FileUtils.forceDirectory(path);
+    }
+
+    /**
+     * @param path
+     * @return the contents of the snapshot, or an empty snapshot at journal sequence number 0 if there is no snapshot
+     * @throws IOException also if the snapshot is damaged
+     */
+    public static Contents read(Path path) throws IOException {
+        if (!Files.exists(path)) return new Contents(0, List.of());
+        byte[] bytes = Files.readAllBytes(path);
+        BinaryReader reader = new BinaryReader(bytes);
+        try {
+            int formatVersion = reader.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("[read] Unsupported snapshot format version " + formatVersion + " in " + path);
+            }
+            long journalSeq = reader.readLong();
+            int facilityCount = reader.readInt();
+            List<FacilitySnapshot> facilities = new ArrayList<>(facilityCount);
+            for (int i = 0; i < facilityCount; i++) {
+                int facilityId = reader.readInt();
+                long facilityJournalSeq = reader.readLong();
+                ByteBuffer bookingBytes = reader.readBytesAsBuffer();
+                List<Booking> bookings = new ArrayList<>(bookingBytes.remaining() / BOOKING_BYTES);
+                while (bookingBytes.remaining() >= BOOKING_BYTES) {
+                    bookings.add(new Booking(bookingBytes.getInt(), facilityId, bookingBytes.getInt(), bookingBytes.getInt()));
+                }
+                facilities.add(new FacilitySnapshot(facilityId, facilityJournalSeq, bookings));
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, reader.position());
+            if (reader.readInt() != (int) crc.getValue()) {
+                throw new IOException("[read] CRC mismatch in snapshot " + path);
+            }
+            return new Contents(journalSeq, facilities);
+        } catch (SerializationException se) {
+            throw new IOException("[read] Damaged snapshot " + path, se);
+        }
+    }
+}
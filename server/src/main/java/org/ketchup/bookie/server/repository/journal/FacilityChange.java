@@ -0,0 +1,83 @@
+package org.ketchup.bookie.server.repository.journal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.ketchup.bookie.common.enums.FacilityType;
+import org.ketchup.bookie.common.enums.SerializableEnum;
+import org.ketchup.bookie.common.exception.SerializationException;
+import org.ketchup.bookie.common.pojo.BinarySerializable;
+import org.ketchup.bookie.common.pojo.Facility;
+import org.ketchup.bookie.common.util.BinaryReader;
+import org.ketchup.bookie.common.util.BinaryWriter;
+
+/**
+ * A change to the facility catalog, as recorded in the {@link FacilityChangeLog}. ADD carries the facility as it is
+ * after the change (adding an existing ID replaces the facility), DROP only needs its id.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacilityChange implements BinarySerializable {
+
+    @AllArgsConstructor
+    @Getter
+    public enum Type implements SerializableEnum {
+        ADD(0),
+        DROP(1),
+
+        UNKNOWN(-1);
+
+        private final int value;
+
+        public static Type fromValue(Integer value) {
+            return switch (value) {
+                case 0 -> ADD;
+                case 1 -> DROP;
+                default -> UNKNOWN;
+            };
+        }
+    }
+
+    private Type type;
+    private Facility facility;
+
+    @Override
+    public void writeTo(BinaryWriter writer) throws SerializationException {
+        writer.writeObjectHeader(4);
+        writer.writeField("type");
+        writer.writeEnum(type);
+        writer.writeField("facilityId");
+        writer.writeInt(facility.getId());
+        writer.writeField("name");
+        writer.writeString(facility.getName());
+        writer.writeField("facilityType");
+        writer.writeEnum(facility.getType());
+    }
+
+    @Override
+    public void readFrom(BinaryReader reader) throws SerializationException {
+        reader.readObjectHeader(4, "FacilityChange");
+
+        // type
+        reader.readField("type");
+        type = reader.readEnum(Type.class);
+        if (type == Type.UNKNOWN) {
+            throw new SerializationException("[readFrom] Unknown FacilityChange type");
+        }
+
+        facility = new Facility();
+        // facilityId
+        reader.readField("facilityId");
+        facility.setId(reader.readInt());
+
+        // name
+        reader.readField("name");
+        facility.setName(reader.readString());
+
+        // facilityType
+        reader.readField("facilityType");
+        facility.setType(reader.readEnum(FacilityType.class));
+    }
+}
@@ -0,0 +1,149 @@
+package org.ketchup.bookie.server.repository.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ketchup.bookie.common.exception.SerializationException;
+import org.ketchup.bookie.common.util.BinaryWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the changes made to the facility catalog since it was last written to CSV, in the record layout
+ * of {@link JournalRecords}. Catalog changes are rare, so each one is forced to disk before {@link #append} returns.
+ * <p>
+ * To compact the catalog, the log is renamed with {@link #rotate(Path)} (changes made while the CSV is being written go
+ * to a new, empty log), and the renamed log is deleted once the CSV holds its changes.
+ * <p>
+ * Thread-safe.
+ */
+@Slf4j
+public class FacilityChangeLog implements Closeable {
+
+    private final Path path;
+    private final BinaryWriter writer = new BinaryWriter();
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private long recordCount;
+
+    /**
+     * Open the log for appending, after {@link #replay(Path, Consumer)}.
+     * @param path
+     * @param recordCount number of changes already in the log
+     * @throws IOException
+     */
+    public FacilityChangeLog(Path path, long recordCount) throws IOException {
+        this.path = path;
+        this.recordCount = recordCount;
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        this.channel = open(path);
+    }
+
+    /**
+     * Read every valid change of a log, in order. A torn or corrupted tail is truncated.
+     * @param path
+     * @param changeConsumer
+     * @return number of changes read
+     * @throws IOException
+     */
+    public static long replay(Path path, Consumer<FacilityChange> changeConsumer) throws IOException {
+        if (!Files.exists(path)) return 0;
+        long[] changeCount = {0};
+        JournalRecords.ReadResult result = JournalRecords.read(path, FacilityChange::new, change -> {
+            changeConsumer.accept(change);
+            changeCount[0]++;
+        });
+        if (result.error() != null) {
+            log.warn("[replay] Discarding invalid change log tail of {} bytes at offset {} in {}: {}",
+                    Files.size(path) - result.validLength(), result.validLength(), path, result.error().getMessage());
+            JournalRecords.truncate(path, result.validLength());
+        }
+        return changeCount[0];
+    }
+
+    /**
+     * Write a change and force it to disk. If this fails, the log is truncated back to its previous changes, so that
+     * a torn record does not hide the changes appended after it from {@link #replay(Path, Consumer)}.
+     * @param change
+     * @throws IOException
+     */
+    public synchronized void append(FacilityChange change) throws IOException {
+        writer.reset();
+        try {
+            JournalRecords.write(writer, change, crc);
+        } catch (SerializationException se) {
+            throw new IOException("[append] Failed to serialize facility change", se);
+        }
+        ByteBuffer buffer = writer.asBuffer();
+        long validLength = channel.size();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException ioe) {
+            try {
+                channel.truncate(validLength);
+            } catch (IOException truncateException) {
+                ioe.addSuppressed(truncateException);
+            }
+            throw ioe;
+        }
+        recordCount++;
+    }
+
+    /**
+     * Move the current log to target and start a new, empty one. If the move fails, changes go on being appended to
+     * the current log.
+     * @param target must not exist
+     * @throws IOException
+     */
+    public synchronized void rotate(Path target) throws IOException {
+        // A move would silently replace it, with changes which may not be anywhere else on disk
+        if (Files.exists(target)) {
+            throw new IOException("[rotate] " + target + " already exists");
+        }
+        channel.close();
+        try {
+            Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+            recordCount = 0;
+        } finally {
+            channel = open(path);
+        }
+    }
+
+    /**
+     * Drop every change, once they are all in the CSV.
+     * @throws IOException
+     */
+    public synchronized void truncate() throws IOException {
+        channel.truncate(0);
+        channel.force(true);
+        recordCount = 0;
+    }
+
+    /**
+     * @return number of changes in the log
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,28 @@
+package org.ketchup.bookie.server.repository.journal;
+
+/**
+ * When the {@link BookingJournal} forces its writes to disk.
+ */
+public enum FsyncPolicy {
+    /**
+     * Before replying to the request which made the change. Concurrent requests share the same fsync (group commit).
+     */
+    ALWAYS,
+    /**
+     * Every server.booking.journal.fsync.interval.ms. A crash loses at most the changes of the last interval.
+     */
+    INTERVAL,
+    /**
+     * Never: written to the OS buffers only. Survives a crash of the server, not of the OS.
+     */
+    NONE;
+
+    public static FsyncPolicy fromValue(String value) {
+        return switch (value.trim().toLowerCase()) {
+            case "always" -> ALWAYS;
+            case "interval" -> INTERVAL;
+            case "none" -> NONE;
+            default -> throw new IllegalArgumentException("[fromValue] Unknown fsync policy: " + value);
+        };
+    }
+}
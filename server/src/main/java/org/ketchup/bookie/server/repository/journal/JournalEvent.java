@@ -0,0 +1,90 @@
+package org.ketchup.bookie.server.repository.journal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.ketchup.bookie.common.enums.SerializableEnum;
+import org.ketchup.bookie.common.exception.SerializationException;
+import org.ketchup.bookie.common.pojo.BinarySerializable;
+import org.ketchup.bookie.common.pojo.Booking;
+import org.ketchup.bookie.common.util.BinaryReader;
+import org.ketchup.bookie.common.util.BinaryWriter;
+
+/**
+ * A change to the bookings, as recorded in the {@link BookingJournal}. ADD and MOVE carry the booking as it is after
+ * the change, REMOVE only needs its bookingId.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JournalEvent implements BinarySerializable {
+
+    @AllArgsConstructor
+    @Getter
+    public enum Type implements SerializableEnum {
+        ADD(0),
+        MOVE(1),
+        REMOVE(2),
+
+        UNKNOWN(-1);
+
+        private final int value;
+
+        public static Type fromValue(Integer value) {
+            return switch (value) {
+                case 0 -> ADD;
+                case 1 -> MOVE;
+                case 2 -> REMOVE;
+                default -> UNKNOWN;
+            };
+        }
+    }
+
+    private Type type;
+    private Booking booking;
+
+    @Override
+    public void writeTo(BinaryWriter writer) throws SerializationException {
+        writer.writeObjectHeader(5);
+        writer.writeField("type");
+        writer.writeEnum(type);
+        writer.writeField("bookingId");
+        writer.writeInt(booking.getBookingId());
+        writer.writeField("facilityId");
+        writer.writeInt(booking.getFacilityId());
+        writer.writeField("bookingStartTime");
+        writer.writeInt(booking.getBookingStartTime());
+        writer.writeField("bookingEndTime");
+        writer.writeInt(booking.getBookingEndTime());
+    }
+
+    @Override
+    public void readFrom(BinaryReader reader) throws SerializationException {
+        reader.readObjectHeader(5, "JournalEvent");
+
+        // type
+        reader.readField("type");
+        type = reader.readEnum(Type.class);
+        if (type == Type.UNKNOWN) {
+            throw new SerializationException("[readFrom] Unknown JournalEvent type");
+        }
+
+        booking = new Booking();
+        // bookingId
+        reader.readField("bookingId");
+        booking.setBookingId(reader.readInt());
+
+        // facilityId
+        reader.readField("facilityId");
+        booking.setFacilityId(reader.readInt());
+
+        // bookingStartTime
+        reader.readField("bookingStartTime");
+        booking.setBookingStartTime(reader.readInt());
+
+        // bookingEndTime
+        reader.readField("bookingEndTime");
+        booking.setBookingEndTime(reader.readInt());
+    }
+}
@@ -0,0 +1,152 @@
+package org.ketchup.bookie.server.repository.journal;
+
+import org.ketchup.bookie.common.exception.SerializationException;
+import org.ketchup.bookie.common.pojo.BinarySerializable;
+import org.ketchup.bookie.common.util.BinaryReader;
+import org.ketchup.bookie.common.util.BinaryWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Record layout of the append-only logs of this package: an object serialized as described in PROTOCOL.md, wrapped in
+ * a byte[] value (so that its size is known), followed by the CRC32 of the object as an int value. A record cut short
+ * by a crash, or whose CRC does not match, ends the log.
+ */
+final class JournalRecords {
+    // Header of the byte[] value wrapping the object
+    private static final int BYTES_HEADER_SIZE = 4;
+    // Header and value of the CRC
+    private static final int CRC_SIZE = 8;
+    // Initial size of the read buffer, grown to fit larger records
+    static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * @param validLength length of the valid records at the beginning of the log
+     * @param error why the record after them is invalid, null if the whole log is valid
+     */
+    record ReadResult(long validLength, SerializationException error) {
+    }
+
+    private JournalRecords() {
+    }
+
+    static void write(BinaryWriter writer, BinarySerializable object, CRC32 crc) throws SerializationException {
+        int mark = writer.beginBytes();
+        object.writeTo(writer);
+        writer.endBytes(mark);
+        crc.reset();
+        crc.update(writer.asBuffer().position(mark + BYTES_HEADER_SIZE));
+        writer.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Hand every valid record of a log over to recordConsumer, in order, stopping at the first invalid one. The log is
+     * streamed through a buffer holding at least one record, so that its size is not bounded by the heap.
+     * @param path
+     * @param recordFactory
+     * @param recordConsumer
+     * @throws IOException if the log cannot be read
+     */
+    static <T extends BinarySerializable> ReadResult read(Path path, Supplier<T> recordFactory, Consumer<T> recordConsumer)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            RecordBuffer buffer = new RecordBuffer(channel);
+            CRC32 crc = new CRC32();
+            long validLength = 0;
+            while (buffer.fill(BYTES_HEADER_SIZE) || buffer.remaining() > 0) {
+                // A record cut short ends the log: BinaryReader reports what is missing from the bytes left
+                int recordLength = buffer.remaining() >= BYTES_HEADER_SIZE
+                        ? BYTES_HEADER_SIZE + buffer.peekBytesLength() + CRC_SIZE : buffer.remaining();
+                buffer.fill(recordLength);
+                ByteBuffer recordBytes = buffer.take(Math.min(recordLength, buffer.remaining()));
+                T record = recordFactory.get();
+                try {
+                    BinaryReader reader = new BinaryReader(recordBytes);
+                    ByteBuffer serializedBytes = reader.readBytesAsBuffer();
+                    crc.reset();
+                    crc.update(serializedBytes.duplicate());
+                    if (reader.readInt() != (int) crc.getValue()) {
+                        throw new SerializationException("[read] CRC mismatch");
+                    }
+                    byte[] serializedRecord = new byte[serializedBytes.remaining()];
+                    serializedBytes.get(serializedRecord);
+                    record.fromBytes(serializedRecord);
+                } catch (SerializationException se) {
+                    return new ReadResult(validLength, se);
+                }
+                recordConsumer.accept(record);
+                validLength += recordBytes.limit();
+            }
+            return new ReadResult(validLength, null);
+        }
+    }
+
+    /**
+     * Cut the invalid tail of a log, so that new records are appended right after the last valid one.
+     */
+    static void truncate(Path path, long validLength) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(validLength);
+        }
+    }
+
+    /**
+     * Window over a log being read, refilled from its channel as records are taken out of it.
+     */
+    private static final class RecordBuffer {
+        private final FileChannel channel;
+        // In read mode: the bytes between position and limit have been read from the channel but not taken yet
+        private ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE).flip();
+
+        RecordBuffer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        int remaining() {
+            return buffer.remaining();
+        }
+
+        /**
+         * Read from the channel until at least length bytes are buffered.
+         * @return false if the end of the channel was reached first
+         */
+        boolean fill(int length) throws IOException {
+            if (buffer.remaining() >= length) return true;
+            if (buffer.capacity() < length) {
+                buffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2)).put(buffer);
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < length) {
+                if (channel.read(buffer) < 0) break;
+            }
+            buffer.flip();
+            return buffer.remaining() >= length;
+        }
+
+        /**
+         * @return size of the byte[] value starting at the current position, as its header states
+         */
+        int peekBytesLength() {
+            int position = buffer.position();
+            return (buffer.get(position + 1) & 0xFF) | ((buffer.get(position + 2) & 0xFF) << 8)
+                    | ((buffer.get(position + 3) & 0xFF) << 16);
+        }
+
+        /**
+         * @return the next length bytes, valid until the next call to {@link #fill(int)}
+         */
+        ByteBuffer take(int length) {
+            ByteBuffer bytes = buffer.slice(buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            return bytes;
+        }
+    }
+}
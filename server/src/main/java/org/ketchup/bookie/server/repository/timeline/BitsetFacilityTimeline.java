@@ -0,0 +1,108 @@
+package org.ketchup.bookie.server.repository.timeline;
+
+import java.nio.LongBuffer;
+
+/**
+ * One bit per minute packed into longs, so checks and updates touch 64 minutes at a time and a week costs ~1.3KB
+ * per facility. Only occupancy is stored: which booking owns a minute is known from the booking itself, so
+ * {@link #release(int, int, int)} can only verify that the whole range is occupied.
+ * <p>
+ * The words are on-heap, or a record of a {@link MappedTimelineStore}.
+ */
+public class BitsetFacilityTimeline implements FacilityTimeline {
+
+    // bit (minute % 64) of word (minute / 64) is set when the minute is occupied
+    private final LongBuffer words;
+    private final int horizon;
+
+    public BitsetFacilityTimeline(int horizon) {
+        this(horizon, LongBuffer.wrap(new long[wordCount(horizon)]));
+    }
+
+    /**
+     * @param horizon
+     * @param words at least {@link #wordCount(int)} words, all 0 for an empty timeline
+     */
+    BitsetFacilityTimeline(int horizon, LongBuffer words) {
+        this.horizon = horizon;
+        this.words = words;
+    }
+
+    /**
+     * @return number of longs holding a timeline of this horizon
+     */
+    static int wordCount(int horizon) {
+        return (horizon + 63) >>> 6;
+    }
+
+    @Override
+    public boolean isFree(int startTime, int endTime) {
+        int firstWord = startTime >>> 6;
+        int lastWord = (endTime - 1) >>> 6;
+        long firstMask = -1L << startTime;
+        long lastMask = -1L >>> -endTime;
+        if (firstWord == lastWord) {
+            return (words.get(firstWord) & firstMask & lastMask) == 0;
+        }
+        if ((words.get(firstWord) & firstMask) != 0) return false;
+        for (int i = firstWord + 1; i < lastWord; i++) {
+            if (words.get(i) != 0) return false;
+        }
+        return (words.get(lastWord) & lastMask) == 0;
+    }
+
+    /**
+     * @return true if every minute in [startTime, endTime) is occupied
+     */
+    private boolean isFull(int startTime, int endTime) {
+        int firstWord = startTime >>> 6;
+        int lastWord = (endTime - 1) >>> 6;
+        long firstMask = -1L << startTime;
+        long lastMask = -1L >>> -endTime;
+        if (firstWord == lastWord) {
+            long mask = firstMask & lastMask;
+            return (words.get(firstWord) & mask) == mask;
+        }
+        if ((words.get(firstWord) & firstMask) != firstMask) return false;
+        for (int i = firstWord + 1; i < lastWord; i++) {
+            if (words.get(i) != -1L) return false;
+        }
+        return (words.get(lastWord) & lastMask) == lastMask;
+    }
+
+    @Override
+    public void occupy(int bookingId, int startTime, int endTime) {
+        setRange(startTime, endTime, true);
+    }
+
+    @Override
+    public boolean release(int bookingId, int startTime, int endTime) {
+        if (!isFull(startTime, endTime)) return false;
+        setRange(startTime, endTime, false);
+        return true;
+    }
+
+    private void setRange(int startTime, int endTime, boolean occupied) {
+        int firstWord = startTime >>> 6;
+        int lastWord = (endTime - 1) >>> 6;
+        long firstMask = -1L << startTime;
+        long lastMask = -1L >>> -endTime;
+        for (int i = firstWord; i <= lastWord; i++) {
+            long mask = -1L;
+            if (i == firstWord) mask &= firstMask;
+            if (i == lastWord) mask &= lastMask;
+            words.put(i, occupied ? words.get(i) | mask : words.get(i) & ~mask);
+        }
+    }
+
+    @Override
+    public byte[] exportBitmap() {
+        byte[] bitmap = new byte[horizon >>> 3];
+        for (int i = 0; i < bitmap.length; i++) {
+            int lsbFirst = (int) (words.get(i >>> 3) >>> ((i & 7) << 3)) & 0xFF;
+            // Availability stores the earliest minute in the most significant bit
+            bitmap[i] = (byte) (Integer.reverse(lsbFirst) >>> 24);
+        }
+        return bitmap;
+    }
+}
@@ -0,0 +1,30 @@
+package org.ketchup.bookie.server.repository.timeline;
+
+/**
+ * Occupancy of a single facility over the booking horizon, in minutes.
+ * All ranges are [startTime, endTime) and must have been validated against the horizon by the caller.
+ * Implementations are not thread-safe.
+ */
+public interface FacilityTimeline {
+
+    /**
+     * @return true if no minute in [startTime, endTime) is occupied
+     */
+    boolean isFree(int startTime, int endTime);
+
+    /**
+     * Mark [startTime, endTime) as occupied by bookingId. The range must be free.
+     */
+    void occupy(int bookingId, int startTime, int endTime);
+
+    /**
+     * Free [startTime, endTime), which must be occupied by bookingId.
+     * @return false (and leave the timeline untouched) if the range is not entirely occupied by bookingId
+     */
+    boolean release(int bookingId, int startTime, int endTime);
+
+    /**
+     * @return occupancy of each minute in the bit layout of {@link org.ketchup.bookie.common.pojo.Availability}
+     */
+    byte[] exportBitmap();
+}
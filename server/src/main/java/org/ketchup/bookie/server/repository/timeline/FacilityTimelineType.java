@@ -0,0 +1,38 @@
+package org.ketchup.bookie.server.repository.timeline;
+
+/**
+ * Available {@link FacilityTimeline} implementations.
+ */
+public enum FacilityTimelineType {
+    /**
+     * {@link BitsetFacilityTimeline}: fixed ~1.3KB per facility per week, cost of operations grows with booking length.
+     */
+    BITSET,
+    /**
+     * {@link IntervalFacilityTimeline}: memory and cost of operations grow with the number of bookings only.
+     */
+    INTERVAL,
+    /**
+     * {@link BitsetFacilityTimeline} stored off-heap in a {@link MappedTimelineStore}: same costs as BITSET, without
+     * growing the heap with the number of facilities. Timelines are created by the store, not by
+     * {@link #newTimeline(int)}.
+     */
+    MAPPED;
+
+    public static FacilityTimelineType fromValue(String value) {
+        return switch (value.trim().toLowerCase()) {
+            case "bitset" -> BITSET;
+            case "interval" -> INTERVAL;
+            case "mapped" -> MAPPED;
+            default -> throw new IllegalArgumentException("[fromValue] Unknown facility timeline type: " + value);
+        };
+    }
+
+    public FacilityTimeline newTimeline(int horizon) {
+        return switch (this) {
+            case BITSET -> new BitsetFacilityTimeline(horizon);
+            case INTERVAL -> new IntervalFacilityTimeline(horizon);
+            case MAPPED -> throw new UnsupportedOperationException("[newTimeline] Mapped timelines are created by MappedTimelineStore");
+        };
+    }
+}
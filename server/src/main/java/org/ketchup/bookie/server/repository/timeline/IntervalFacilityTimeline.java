@@ -0,0 +1,65 @@
+package org.ketchup.bookie.server.repository.timeline;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Bookings of a facility ordered by start time. Since bookings never overlap, the only booking which can conflict with
+ * [startTime, endTime) is the last one starting before endTime, so checks, inserts and removals cost O(log n) no matter
+ * how long the bookings are. The horizon is only used to size {@link #exportBitmap()}.
+ */
+public class IntervalFacilityTimeline implements FacilityTimeline {
+
+    private record Interval(int bookingId, int endTime) {}
+
+    // startTime : booking occupying [startTime, endTime)
+    private final NavigableMap<Integer, Interval> intervals = new TreeMap<>();
+    private final int horizon;
+
+    public IntervalFacilityTimeline(int horizon) {
+        this.horizon = horizon;
+    }
+
+    @Override
+    public boolean isFree(int startTime, int endTime) {
+        Map.Entry<Integer, Interval> previous = intervals.lowerEntry(endTime);
+        return previous == null || previous.getValue().endTime() <= startTime;
+    }
+
+    @Override
+    public void occupy(int bookingId, int startTime, int endTime) {
+        intervals.put(startTime, new Interval(bookingId, endTime));
+    }
+
+    @Override
+    public boolean release(int bookingId, int startTime, int endTime) {
+        Interval interval = intervals.get(startTime);
+        if (interval == null || interval.bookingId() != bookingId || interval.endTime() != endTime) return false;
+        intervals.remove(startTime);
+        return true;
+    }
+
+    @Override
+    public byte[] exportBitmap() {
+        byte[] bitmap = new byte[horizon >>> 3];
+        for (Map.Entry<Integer, Interval> entry : intervals.headMap(horizon).entrySet()) {
+            int end = Math.min(entry.getValue().endTime(), bitmap.length << 3);
+            int minute = entry.getKey();
+            // Leading bits up to a byte boundary, whole bytes, then trailing bits. Earliest minute is the most significant bit.
+            while (minute < end && (minute & 7) != 0) {
+                bitmap[minute >>> 3] |= (byte) (0x80 >>> (minute & 7));
+                minute++;
+            }
+            while (minute + 8 <= end) {
+                bitmap[minute >>> 3] = (byte) 0xFF;
+                minute += 8;
+            }
+            while (minute < end) {
+                bitmap[minute >>> 3] |= (byte) (0x80 >>> (minute & 7));
+                minute++;
+            }
+        }
+        return bitmap;
+    }
+}
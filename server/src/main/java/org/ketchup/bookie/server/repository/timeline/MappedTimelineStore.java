@@ -0,0 +1,98 @@
+package org.ketchup.bookie.server.repository.timeline;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link BitsetFacilityTimeline}s kept off-heap in a memory-mapped file, one fixed-size record per facility. Records are
+ * assigned slots in the order facilities are first used, so the file only grows with the number of facilities in use,
+ * whatever their IDs. The file is mapped in regions of {@link #RECORDS_PER_REGION} records, each mapped when its first
+ * slot is assigned, so the heap only holds a small view object per facility whatever the number of facilities, and the
+ * OS page cache keeps the records of the busy facilities in memory.
+ * <p>
+ * The file is scratch space, not storage: only occupancy is stored, not the bookings it belongs to, and slots are not
+ * persisted, so it cannot restore anything by itself. It is cleared when opened and never forced to disk. The timelines
+ * are rebuilt from the snapshot and journal of {@link org.ketchup.bookie.server.repository.BookingRepository}, if
+ * enabled.
+ * <p>
+ * Like the timelines, records are not thread-safe: each is guarded by the lock of its facility.
+ */
+public class MappedTimelineStore implements Closeable {
+    // ~5MB per region for a week of minutes
+    private static final int RECORDS_PER_REGION = 1 << 12;
+
+    private final int horizon;
+    private final int recordBytes;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+    // facilityId : slot of its record
+    private final Map<Integer, Integer> slots = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSlot = new AtomicInteger();
+
+    public MappedTimelineStore(Path path, int horizon) throws IOException {
+        this.horizon = horizon;
+        this.recordBytes = BitsetFacilityTimeline.wordCount(horizon) * Long.BYTES;
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        // Regions are mapped past the end of the file, which grows it with zeros (empty timelines)
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * @param facilityId
+     * @return a view of the record of the facility. Views of the same facility share the same data.
+     */
+    public FacilityTimeline getTimeline(int facilityId) {
+        int slot = slots.computeIfAbsent(facilityId, id -> nextSlot.getAndIncrement());
+        MappedByteBuffer region = getRegion(slot / RECORDS_PER_REGION);
+        int offset = (slot % RECORDS_PER_REGION) * recordBytes;
+        return new BitsetFacilityTimeline(horizon, region.slice(offset, recordBytes).order(ByteOrder.nativeOrder()).asLongBuffer());
+    }
+
+    private synchronized MappedByteBuffer getRegion(int regionIndex) {
+        while (regions.size() <= regionIndex) {
+            regions.add(null);
+        }
+        MappedByteBuffer region = regions.get(regionIndex);
+        if (region == null) {
+            long regionBytes = (long) RECORDS_PER_REGION * recordBytes;
+            try {
+                region = channel.map(FileChannel.MapMode.READ_WRITE, regionIndex * regionBytes, regionBytes);
+            } catch (IOException ioe) {
+                throw new IllegalStateException("[getRegion] Failed to map region " + regionIndex, ioe);
+            }
+            regions.set(regionIndex, region);
+        }
+        return region;
+    }
+
+    /**
+     * @return number of facilities with a record
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Close the file, without forcing the records to disk since they are not read back. The mapped regions stay usable
+     * until they are garbage-collected.
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
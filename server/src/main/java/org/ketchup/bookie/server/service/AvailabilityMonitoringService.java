@@ -1,12 +1,19 @@
 package org.ketchup.bookie.server.service;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.tuple.Pair;
 import org.ketchup.bookie.common.exception.SerializationException;
 import org.ketchup.bookie.common.exception.UnavailableFacilityException;
 import org.ketchup.bookie.common.pojo.Facility;
 import org.ketchup.bookie.common.pojo.Availability;
+import org.ketchup.bookie.common.pojo.AvailabilityDelta;
+import org.ketchup.bookie.common.util.SerializeUtils;
+import org.ketchup.bookie.server.config.Config;
+import org.ketchup.bookie.server.repository.BookingRepository;
 import org.ketchup.bookie.server.repository.FacilityRepository;
+import org.ketchup.bookie.server.repository.SubscriptionRepository;
+import org.ketchup.bookie.server.repository.SubscriptionRepository.Subscription;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.stereotype.Service;
 import org.tomato.bookie.distributedSystem.message.Response;
 
@@ -14,27 +21,81 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.net.SocketException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Keeps track of the clients monitoring each facility and sends them callbacks when its availability changes.
+ * Callbacks are sent by a dedicated notifier thread through a single shared socket, off the request path.
+ * <p>
+ * Each monitored facility has a feed of versioned availabilities. Subscribers get a full snapshot in the response to
+ * MONITOR_FACILITY, then only the changed ranges of each new version ({@link AvailabilityDelta}). A full snapshot is
+ * broadcast instead every server.monitor.snapshot.interval versions, so that clients which missed a delta can resync.
+ * <p>
+ * Changes to a facility are coalesced: the first change starts a window of server.monitor.coalesce.window.ms, and
+ * the availability is only exported and published once the window is over, whatever the number of changes within it.
+ * <p>
+ * A feed only lives as long as the facility has subscriptions: it is dropped with the last one, whether it expired or
+ * was removed, so memory and notifier work follow the live subscriptions.
+ */
 @Service
 @Slf4j
-public class AvailabilityMonitoringService {
+public class AvailabilityMonitoringService implements InitializingBean, DisposableBean {
 
+    /**
+     * Last availability sent to the subscribers of a facility. Also the lock ordering subscriptions against versions.
+     */
+    private static class FacilityFeed {
+        private Availability availability;
+        private long version = 0;
+
+        private FacilityFeed(Availability availability) {
+            this.availability = availability;
+        }
+    }
+
+    private final Config config;
     private final FacilityRepository facilityRepository;
+    private final BookingRepository bookingRepository;
+    private final SubscriptionRepository subscriptionRepository;
 
-    // { facilityId : List<requestId> }
-    private final Map<Integer, Set<UUID>> mailingList;
-    // { requestId : { clientAddress : clientPort }
-    private final Map<UUID, Pair<InetAddress, Integer>> mailingAddresses;
-    // { requestId : expiryTime }
-    private final Map<UUID, Long> subscriptionExpiry;
+    // { facilityId : feed }
+    private final Map<Integer, FacilityFeed> feeds;
+    // { facilityId : time of the first change not published yet }
+    private final Map<Integer, Long> pendingSince;
 
-    public AvailabilityMonitoringService(FacilityRepository facilityRepository) {
+    // Facilities with changes not published yet, in the order of their first change
+    private BlockingQueue<Integer> pendingNotifications;
+    private DatagramSocket notificationSocket;
+    private Thread notifierThread;
+
+    public AvailabilityMonitoringService(Config config, FacilityRepository facilityRepository, BookingRepository bookingRepository,
+                                         SubscriptionRepository subscriptionRepository) {
+        this.config = config;
         this.facilityRepository = facilityRepository;
-        mailingList = new HashMap<>();
-        mailingAddresses = new HashMap<>();
-        subscriptionExpiry = new HashMap<>();
+        this.bookingRepository = bookingRepository;
+        this.subscriptionRepository = subscriptionRepository;
+        feeds = new ConcurrentHashMap<>();
+        pendingSince = new ConcurrentHashMap<>();
+        subscriptionRepository.setFacilityUnsubscribedListener(this::dropFeedIfUnsubscribed);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        pendingNotifications = new ArrayBlockingQueue<>(config.getNotificationQueueCapacity());
+        notificationSocket = new DatagramSocket();
+        notifierThread = new Thread(this::sendNotifications, "availability-notifier");
+        notifierThread.setDaemon(true);
+        notifierThread.start();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        notificationSocket.close();
+        notifierThread.interrupt();
     }
 
     /**
@@ -44,64 +105,148 @@ public class AvailabilityMonitoringService {
      * @param clientPort
      * @param facilityId
      * @param monitorDuration
+     * @return data of the response to the subscription: a snapshot of the availability and its version, which
+     * subsequent deltas apply to
      * @throws UnavailableFacilityException
+     * @throws SerializationException
      */
-    public void addToMailingList(UUID requestId, InetAddress clientAddress, Integer clientPort, Integer facilityId, Integer monitorDuration) throws UnavailableFacilityException {
+    public Map<String, byte[]> addToMailingList(UUID requestId, InetAddress clientAddress, Integer clientPort, Integer facilityId, Integer monitorDuration) throws UnavailableFacilityException, SerializationException {
         if (facilityRepository.getFacilityById(facilityId).equals(Facility.NULL_INSTANCE)) {
             throw new UnavailableFacilityException();
         }
         if (monitorDuration <= 0) {
             throw new IllegalArgumentException("[addToMailingList] Monitor Duration must be positive");
         }
-        mailingList.putIfAbsent(facilityId, new HashSet<>());
-        mailingList.get(facilityId).add(requestId);
-        mailingAddresses.put(requestId, Pair.of(clientAddress, clientPort));
-        subscriptionExpiry.put(requestId, System.currentTimeMillis() + (long) monitorDuration * 60_000L);
+        while (true) {
+            FacilityFeed feed = feeds.computeIfAbsent(facilityId, id -> new FacilityFeed(bookingRepository.exportAvailability(id)));
+            synchronized (feed) {
+                // Dropped with the last subscription before the lock was acquired: subscribe to a new feed
+                if (feeds.get(facilityId) != feed) continue;
+                subscriptionRepository.addSubscription(new Subscription(requestId, facilityId, clientAddress, clientPort,
+                        System.currentTimeMillis() + (long) monitorDuration * 60_000L));
+                return snapshotData(feed);
+            }
+        }
+    }
+
+    /**
+     * Drop the feed of a facility which has no subscriptions left. Checked with the feed locked, since subscriptions
+     * are only added with their feed locked.
+     * @param facilityId
+     */
+    private void dropFeedIfUnsubscribed(int facilityId) {
+        FacilityFeed feed = feeds.get(facilityId);
+        if (Objects.isNull(feed)) return;
+        synchronized (feed) {
+            if (!subscriptionRepository.hasSubscriptions(facilityId)) {
+                feeds.remove(facilityId, feed);
+            }
+        }
+    }
+
+    /**
+     * @return number of facilities with a feed
+     */
+    int feedCount() {
+        return feeds.size();
     }
 
     /**
      * Invoked in a {@link org.ketchup.bookie.server.interceptor.ResponseInterceptor} every time a server successfully performs an operation which affects availability.
-     * Notify all clients subscribed to the affected facility of the current availability of that facility.
-     * Callbacks are directly sent from here.
-     * @param availability
+     * Queue a notification of the availability of the affected facility to all clients subscribed to it, unless one is
+     * already queued, in which case the change will be part of it.
+     * Returns immediately, the availability is exported and callbacks are sent by the notifier thread.
+     * @param facilityId
+     */
+    public void notifyClients(int facilityId) {
+        // Facilities which are not monitored have no feed to keep up to date
+        if (!feeds.containsKey(facilityId)) return;
+        if (Objects.nonNull(pendingSince.putIfAbsent(facilityId, System.currentTimeMillis()))) return;
+        if (!pendingNotifications.offer(facilityId)) {
+            pendingSince.remove(facilityId);
+            log.warn("[notifyClients] Notification queue is full - Dropped notification for facility {}", facilityId);
+        }
+    }
+
+    /**
+     * Notifier stage: publish the availability of each changed facility once its coalescing window is over, until the
+     * service is destroyed. Facilities are queued in the order of their first change, which is also the order their
+     * windows end in.
      */
-    public void notifyClients(Availability availability) {
-        if (Objects.isNull(mailingList.get(availability.getFacilityId()))) return;
-        for (UUID requestId : mailingList.get(availability.getFacilityId())) {
-            log.info("Notifying request {}", requestId);
-            if (System.currentTimeMillis() > subscriptionExpiry.get(requestId)) {   // Expired subscription
-                removeSubscription(requestId);
-                continue;
+    private void sendNotifications() {
+        while (!notificationSocket.isClosed()) {
+            try {
+                // Wake up at least every second to sweep expired subscriptions, even when nothing changes
+                Integer facilityId = pendingNotifications.poll(1, TimeUnit.SECONDS);
+                subscriptionRepository.removeExpired();
+                if (Objects.isNull(facilityId)) continue;
+                long delay = pendingSince.get(facilityId) + config.getCoalesceWindowMs() - System.currentTimeMillis();
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+                // Changes from now on start a new window. Those made before the export below are already part of it,
+                // the notification of the next window then skips them as an empty delta.
+                pendingSince.remove(facilityId);
+                sendNotification(bookingRepository.exportAvailability(facilityId));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable throwable) {
+                log.error("[sendNotifications] Failed to send notification", throwable);
             }
-            InetAddress clientAddress = mailingAddresses.get(requestId).getLeft();
-            int clientPort = mailingAddresses.get(requestId).getRight();
-            log.info("Notified address {}:{}", clientAddress.getHostAddress(), clientPort);
-            try (DatagramSocket socket = new DatagramSocket()) {
-                byte[] data = Response.success(requestId,
-                        Map.of(
-                                "availability", availability.toBytes()
-                        )
-                ).toBytes();
-                DatagramPacket packet = new DatagramPacket(data, data.length, clientAddress, clientPort);
-                socket.send(packet);
-            } catch (SerializationException sere) {
-                log.error("[notifyClients] Failed to serialize notification", sere);
-                throw new RuntimeException(sere);
-            } catch (SocketException se) {
-                log.error("[notifyClients] Failed to open socket", se);
-                throw new RuntimeException(se);
+        }
+    }
+
+    /**
+     * Publish the next version of the availability of a facility to its subscribers, as a delta of the changed ranges
+     * or as a full snapshot. The callback is serialized once, then only the requestId is patched for each subscriber.
+     * @param availability
+     * @throws SerializationException
+     */
+    private void sendNotification(Availability availability) throws SerializationException {
+        FacilityFeed feed = feeds.get(availability.getFacilityId());
+        if (Objects.isNull(feed)) return;
+        byte[] data;
+        List<Subscription> subscribers;
+        synchronized (feed) {
+            AvailabilityDelta delta = AvailabilityDelta.diff(feed.version + 1, feed.availability, availability);
+            if (delta.getRangeCount() == 0) return;
+            feed.availability = availability;
+            feed.version++;
+            boolean sendSnapshot = feed.version % Math.max(1, config.getSnapshotInterval()) == 0 ||
+                    delta.getChanges().length >= availability.getBookedBits().length;
+            Map<String, byte[]> callbackData = sendSnapshot ? snapshotData(feed) : Map.of("availabilityDelta", delta.toBytes());
+            data = Response.success(new UUID(0, 0), callbackData).toBytes();
+            // Clients subscribing from now on get this version in their snapshot
+            subscribers = subscriptionRepository.getSubscriptions(availability.getFacilityId());
+        }
+        DatagramPacket packet = new DatagramPacket(data, data.length);
+        for (Subscription subscription : subscribers) {
+            log.info("Notifying request {}", subscription.requestId());
+            InetAddress clientAddress = subscription.clientAddress();
+            int clientPort = subscription.clientPort();
+            // send() copies the data out before returning, so the same buffer can be patched for the next subscriber
+            Response.patchRequestId(data, subscription.requestId());
+            packet.setAddress(clientAddress);
+            packet.setPort(clientPort);
+            try {
+                notificationSocket.send(packet);
+                log.info("Notified address {}:{}", clientAddress.getHostAddress(), clientPort);
             } catch (IOException ioe) {
-                log.error("[notifyClients Failed to send notification", ioe);
-                throw new RuntimeException(ioe);
+                if (notificationSocket.isClosed()) return;
+                log.error("[sendNotification] Failed to send notification to {}:{}", clientAddress.getHostAddress(), clientPort, ioe);
             }
         }
     }
 
+    private static Map<String, byte[]> snapshotData(FacilityFeed feed) throws SerializationException {
+        return Map.of(
+                "availability", feed.availability.toBytes(),
+                "version", SerializeUtils.serializeLong(feed.version)
+        );
+    }
+
     public void removeSubscription(UUID requestId) {
-        for (int facilityId : mailingList.keySet()) {
-            mailingList.get(facilityId).remove(requestId);
-        }
-        mailingAddresses.remove(requestId);
-        subscriptionExpiry.remove(requestId);
+        subscriptionRepository.removeSubscription(requestId);
     }
 }
@@ -11,7 +11,7 @@ import org.ketchup.bookie.server.repository.FacilityRepository;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 @Slf4j
@@ -19,8 +19,6 @@ public class BookingManager {
 
     private final BookingRepository bookingRepository;
     private final FacilityRepository facilityRepository;
-    private final Random random = new Random(System.currentTimeMillis());
-
 
     public BookingManager(BookingRepository bookingRepository, FacilityRepository facilityRepository) {
         this.bookingRepository = bookingRepository;
@@ -58,9 +56,9 @@ public class BookingManager {
 
     public int addBooking(int facilityId, int startTime, int endTime) throws UnavailableFacilityException, UnavailableBookingException {
         // Generate booking Id
-        int bookingId = random.nextInt(1, Integer.MAX_VALUE);
+        int bookingId = ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
         while (bookingRepository.isBookingIdExist(bookingId)) {
-            bookingId = random.nextInt(1, Integer.MAX_VALUE);
+            bookingId = ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
         }
         Booking booking = new Booking(bookingId, facilityId, startTime, endTime);
         // Verify booking facility
@@ -0,0 +1,106 @@
+package org.ketchup.bookie.server.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.*;
+
+/**
+ * How {@link RequestListener} runs the handling of received datagrams.
+ */
+@Slf4j
+public enum ExecutionMode {
+    /**
+     * Receive, handle and send every datagram on the receiver thread, one at a time.
+     */
+    SINGLE,
+    /**
+     * Hand datagrams off to a fixed pool of worker threads with a bounded queue.
+     */
+    POOL,
+    /**
+     * Start a new (virtual, when supported by the JVM) thread for every datagram.
+     */
+    VIRTUAL;
+
+    public static ExecutionMode fromValue(String value) {
+        return switch (value.trim().toLowerCase()) {
+            case "single" -> SINGLE;
+            case "pool" -> POOL;
+            case "virtual" -> VIRTUAL;
+            default -> throw new IllegalArgumentException("[fromValue] Unknown execution mode: " + value);
+        };
+    }
+
+    /**
+     * Create the executor which runs request handling in this mode.
+     * @param workerThreads number of workers, only used by {@link #POOL}
+     * @param queueCapacity maximum number of waiting requests, only used by {@link #POOL}
+     * @return
+     */
+    public ExecutorService newExecutor(int workerThreads, int queueCapacity) {
+        return switch (this) {
+            case SINGLE -> new DirectExecutorService();
+            case POOL -> new ThreadPoolExecutor(
+                    workerThreads, workerThreads,
+                    0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    new CustomizableThreadFactory("request-worker-")
+            );
+            case VIRTUAL -> newThreadPerTaskExecutor();
+        };
+    }
+
+    /**
+     * Virtual threads are only available from Java 21 onwards while the project targets Java 17, so the executor is looked
+     * up reflectively. On older runtimes, fall back to a platform thread per request.
+     * @return
+     */
+    private static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("[newThreadPerTaskExecutor] Virtual threads are not supported by Java {}, using a platform thread per request instead", Runtime.version().feature());
+            return Executors.newCachedThreadPool(new CustomizableThreadFactory("request-worker-"));
+        }
+    }
+
+    /**
+     * Runs every task on the submitting thread.
+     */
+    private static class DirectExecutorService extends AbstractExecutorService {
+        private volatile boolean shutdown = false;
+
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown) throw new RejectedExecutionException("Executor has been shut down");
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public java.util.List<Runnable> shutdownNow() {
+            shutdown = true;
+            return java.util.List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return shutdown;
+        }
+    }
+}
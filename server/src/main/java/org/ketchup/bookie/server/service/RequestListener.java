@@ -5,10 +5,13 @@ import org.ketchup.bookie.common.exception.*;
 import org.ketchup.bookie.common.pojo.Facility;
 import org.ketchup.bookie.common.util.SerializeUtils;
 import org.ketchup.bookie.server.config.Config;
+import org.ketchup.bookie.server.config.Constants;
 import org.ketchup.bookie.server.handler.ExceptionHandler;
 import org.ketchup.bookie.server.interceptor.RequestInterceptor;
 import org.ketchup.bookie.server.interceptor.ResponseInterceptor;
 import org.ketchup.bookie.server.repository.FacilityRepository;
+import org.ketchup.bookie.server.transport.*;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
@@ -18,13 +21,10 @@ import org.tomato.bookie.distributedSystem.message.Request;
 import org.tomato.bookie.distributedSystem.message.Response;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.net.SocketException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Listens for requests, handle marshalling and unmarshalling of requests and responses.
@@ -33,7 +33,7 @@ import java.util.Map;
  */
 @Service
 @Slf4j
-public class RequestListener implements InitializingBean {
+public class RequestListener implements InitializingBean, DisposableBean {
 
     private final Config config;
     private final MessageLossSimulator messageLossSimulator;
@@ -45,10 +45,11 @@ public class RequestListener implements InitializingBean {
     private final FacilityRepository facilityRepository;
     private final AvailabilityMonitoringService availabilityMonitoringService;
 
-    private InetAddress clientAddress;
-
-    private int clientPort;
-
+    private final List<ServerTransport> transports = new ArrayList<>();
+    private final List<Thread> pipelineThreads = new ArrayList<>();
+    private final AtomicLong sentResponseCounter = new AtomicLong();
+    private ExecutionMode executionMode;
+    private ExecutorService workerPool;
 
     public RequestListener(Config config, MessageLossSimulator messageLossSimulator, Deduplicator deduplicator, RequestInterceptor requestInterceptor, ExceptionHandler exceptionHandler, ResponseInterceptor responseInterceptor, BookingManager bookingManager, FacilityRepository facilityRepository, AvailabilityMonitoringService availabilityMonitoringService) {
         this.config = config;
@@ -70,46 +71,152 @@ public class RequestListener implements InitializingBean {
         listenForRequests(config.getPort());
     }
 
+    @Override
+    public void destroy() throws Exception {
+        for (ServerTransport transport : transports) {
+            transport.close();
+        }
+        if (Objects.nonNull(workerPool)) {
+            workerPool.shutdownNow();
+        }
+        pipelineThreads.forEach(Thread::interrupt);
+    }
+
     /**
      * Listen for requests on the specified port and send responses.
+     * Starts a pipeline of 3 stages: a receiver thread which reads datagrams off the socket, workers which run
+     * {@link #handleClientRequest(byte[], InetAddress, int)} as configured by {@link ExecutionMode}, and a sender thread
+     * which writes responses back. In {@link ExecutionMode#SINGLE} mode, all 3 stages run on the receiver thread.
+     * <p>
+     * When more than 1 socket is configured, every socket is bound to the same port with SO_REUSEPORT and gets its own
+     * receiver and sender threads, letting the kernel spread incoming datagrams across them. Workers are shared.
      * @param port
+     * @throws IOException
      */
-    public void listenForRequests(int port) {
-        // Listening on port
-        byte[] buffer = new byte[SerializeUtils.MAX_SIZE];
-        int responseWithhold = config.getResponseWithhold();
+    public void listenForRequests(int port) throws IOException {
+        int workerThreads = config.getWorkerThreads() > 0 ? config.getWorkerThreads() : Runtime.getRuntime().availableProcessors();
+        int queueCapacity = config.getWorkerQueueCapacity();
+        int socketCount = Math.max(1, config.getSocketCount());
 
-        try (DatagramSocket socket = new DatagramSocket(port)) {
-            log.info("Server is listening on port {}", port);
+        executionMode = ExecutionMode.fromValue(config.getExecutionMode());
+        workerPool = executionMode.newExecutor(workerThreads, queueCapacity);
 
-            while (true) {
-                // Prepare packet for receiving data
-                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                socket.receive(packet); // Receive packet (blocking call)
+        for (int i = 0; i < socketCount; i++) {
+            ServerTransport transport = openTransport(port, socketCount > 1);
+            transports.add(transport);
+            BlockingQueue<Datagram> responseQueue = null;
+            if (executionMode != ExecutionMode.SINGLE) {
+                BlockingQueue<Datagram> queue = new ArrayBlockingQueue<>(queueCapacity);
+                startPipelineThread(() -> sendResponses(transport, queue), "response-sender-" + i);
+                responseQueue = queue;
+            }
+            BlockingQueue<Datagram> finalResponseQueue = responseQueue;
+            startPipelineThread(() -> receiveRequests(transport, finalResponseQueue), "request-receiver-" + i);
+        }
+        log.info("Server is listening on port {} ({} transport x {}, {} execution mode)", port, config.getTransport(), socketCount, executionMode);
+    }
 
-                // Process packet
-                if (messageLossSimulator.shouldDropMessage()) {
-                    log.info("[listenForRequests] Simulate message loss - Skipped message");
-                    continue;
-                }
-                clientAddress = packet.getAddress();
-                clientPort = packet.getPort();
-                log.info("[listenForRequests] Received request from {}:{}", clientAddress.getHostAddress(), clientPort);
-                byte[] response = handleClientRequest(packet.getData());
+    private ServerTransport openTransport(int port, boolean reusePort) throws IOException {
+        return switch (config.getTransport()) {
+            case "socket" -> new DatagramSocketTransport(port, reusePort);
+            // Receiver and sender each hold at most one buffer at a time
+            case "channel" -> new DatagramChannelTransport(port, reusePort, new DirectBufferPool(Constants.MAX_DATAGRAM_SIZE, 2));
+            default -> throw new IllegalArgumentException("[openTransport] Unknown transport: " + config.getTransport());
+        };
+    }
 
-                // Send a response back to the client
-                if (responseWithhold > 0) {
-                    responseWithhold--;
-                    continue;
-                } else if (responseWithhold == 0) {
-                    responseWithhold = config.getResponseWithhold();
-                }
-                DatagramPacket responsePacket = new DatagramPacket(
-                        response, response.length, clientAddress, clientPort);
-                socket.send(responsePacket);
+    private void startPipelineThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        pipelineThreads.add(thread);
+        thread.start();
+    }
+
+    /**
+     * Receiver stage: read datagrams off the socket and hand them off to the workers.
+     * Requests are dropped (and eventually retried by the client) when the worker queue is full.
+     * @param transport socket to read from
+     * @param responseQueue queue of the sender stage of this socket, null if responses are sent by the worker itself
+     */
+    private void receiveRequests(ServerTransport transport, BlockingQueue<Datagram> responseQueue) {
+        while (transport.isOpen()) {
+            Datagram request;
+            try {
+                request = transport.receive();
+            } catch (IOException ioe) {
+                if (!transport.isOpen()) break;
+                log.error("[receiveRequests] Failed to receive packet", ioe);
+                continue;
+            }
+
+            // Process packet
+            if (messageLossSimulator.shouldDropMessage()) {
+                log.info("[receiveRequests] Simulate message loss - Skipped message");
+                continue;
+            }
+            log.info("[receiveRequests] Received request from {}:{}", request.getAddress().getHostAddress(), request.getPort());
+            try {
+                workerPool.execute(() -> processRequest(request, transport, responseQueue));
+            } catch (RejectedExecutionException ree) {
+                log.warn("[receiveRequests] Worker queue is full - Dropped request from {}:{}", request.getAddress().getHostAddress(), request.getPort());
+            }
+        }
+    }
+
+    /**
+     * Worker stage: handle a single request and queue its response for the sender stage.
+     * @param request
+     * @param transport socket which received the request
+     * @param responseQueue queue of the sender stage of this socket, null to send the response directly
+     */
+    private void processRequest(Datagram request, ServerTransport transport, BlockingQueue<Datagram> responseQueue) {
+        try {
+            byte[] response = handleClientRequest(request.getData(), request.getAddress(), request.getPort());
+            if (Objects.isNull(response)) return;
+            Datagram responseDatagram = new Datagram(response, request.getAddress(), request.getPort());
+            if (Objects.isNull(responseQueue)) {
+                sendResponse(transport, responseDatagram);
+            } else {
+                responseQueue.put(responseDatagram);
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable throwable) {
+            log.error("[processRequest] Failed to handle request from {}:{}", request.getAddress().getHostAddress(), request.getPort(), throwable);
+        }
+    }
+
+    /**
+     * Sender stage: write queued responses back to their clients.
+     * @param transport
+     * @param responseQueue
+     */
+    private void sendResponses(ServerTransport transport, BlockingQueue<Datagram> responseQueue) {
+        while (transport.isOpen()) {
+            try {
+                sendResponse(transport, responseQueue.take());
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Send a response back to its client. Also responsible for simulating response loss: out of every
+     * (server.simulated.response.withhold + 1) responses, only the last one is sent.
+     * @param transport
+     * @param response
+     */
+    private void sendResponse(ServerTransport transport, Datagram response) {
+        int responseWithhold = config.getResponseWithhold();
+        if (responseWithhold > 0 && sentResponseCounter.getAndIncrement() % (responseWithhold + 1) < responseWithhold) {
+            return;
+        }
+        try {
+            transport.send(response);
+        } catch (IOException ioe) {
+            if (!transport.isOpen()) return;
+            log.error("[sendResponse] Failed to send response to {}:{}", response.getAddress().getHostAddress(), response.getPort(), ioe);
         }
     }
 
@@ -118,9 +225,11 @@ public class RequestListener implements InitializingBean {
      * -> Pass Request to request interceptor -> Call operation handler code -> Pass response to response interceptor
      * -> Call exception handler in case of exception -> serialize response
      * @param requestBytes
-     * @return
+     * @param clientAddress address of the client which sent the request
+     * @param clientPort port of the client which sent the request
+     * @return serialized response, or null if no response should be sent
      */
-    private byte[] handleClientRequest(byte[] requestBytes) {
+    private byte[] handleClientRequest(byte[] requestBytes, InetAddress clientAddress, int clientPort) {
         // When receiving a request, deserialize it to Request object
         Request request = new Request();
         try {
@@ -134,31 +243,52 @@ public class RequestListener implements InitializingBean {
             }
         }
 
-        // At-most-once semantic checking
-        if (config.isAtMostOnceEnabled()) {
-            if (deduplicator.isDuplicate(request.getRequestId()) && !request.isIdempotent()) {
-                try {
-                    return Response.error(request.getRequestId(), "Duplicate non-idempotent request detected").toBytes();
-                } catch (SerializationException se) {
-                    log.error("[execute] Error message serialization failed, message: [Duplicate non-idempotent request detected]", se);
-                    try {
-                        return Response.error(request.getRequestId()).toBytes();
-                    } catch (SerializationException ex) {
-                        throw new RuntimeException(ex);
-                    }
+        // At-most-once semantic checking: replay the reply of non-idempotent requests which have been executed already
+        boolean cacheReply = false;
+        if (config.isAtMostOnceEnabled() && !request.isIdempotent()) {
+            if (!deduplicator.recordRequest(request.getRequestId())) {
+                byte[] reply = deduplicator.getReply(request.getRequestId());
+                if (Objects.isNull(reply)) {
+                    log.info("[handleClientRequest] Duplicate of request {} which is still being executed - Ignored", request.getRequestId());
+                } else {
+                    log.info("[handleClientRequest] Duplicate of request {} - Resent cached reply", request.getRequestId());
                 }
+                return reply;
             }
+            cacheReply = true;
+        }
 
-            deduplicator.recordRequest(request.getRequestId());
+        try {
+            byte[] responseBytes = executeRequest(request, clientAddress, clientPort);
+            if (cacheReply) {
+                deduplicator.cacheReply(request.getRequestId(), responseBytes);
+            }
+            return responseBytes;
+        } catch (RuntimeException | Error e) {
+            // Otherwise retransmissions would be ignored as still being executed until the request ID expires
+            if (cacheReply) {
+                cacheErrorReply(request.getRequestId());
+            }
+            throw e;
         }
+    }
 
+    /**
+     * Pass Request to interceptors -> Call operation handler code -> Pass response to response interceptor
+     * -> Call exception handler in case of exception -> serialize response
+     * @param request
+     * @param clientAddress
+     * @param clientPort
+     * @return serialized response
+     */
+    private byte[] executeRequest(Request request, InetAddress clientAddress, int clientPort) {
         // Pass Request to interceptors
         request = requestInterceptor.intercept(request);
 
         // Pass Request object to handler
         Response response;
         try {
-            response = handleClientRequest(request);
+            response = handleClientRequest(request, clientAddress, clientPort);
             response = responseInterceptor.intercept(request, response);
         } catch (Throwable throwable) {
             response = exceptionHandler.handleException(request, throwable);
@@ -171,16 +301,33 @@ public class RequestListener implements InitializingBean {
         }
     }
 
+    /**
+     * Reply to the retransmissions of a request which failed to be handled with a generic error, rather than
+     * executing it again: it may have taken effect before failing. If even that reply cannot be serialized, the
+     * request is forgotten.
+     * @param requestId
+     */
+    private void cacheErrorReply(UUID requestId) {
+        try {
+            deduplicator.cacheReply(requestId, Response.error(requestId).toBytes());
+        } catch (SerializationException se) {
+            log.error("[cacheErrorReply] Failed to serialize error reply of request {}", requestId, se);
+            deduplicator.removeRequest(requestId);
+        }
+    }
+
     /**
      * Operation handler code: Extract parameters from request -> invoke business logic services -> collect response -> wrap response in {@link Response}.
      * @param request
+     * @param clientAddress
+     * @param clientPort
      * @return
      * @throws MalformedRequestException
      * @throws UnavailableFacilityException
      * @throws UnavailableBookingException
      * @throws MalformedResponseException
      */
-    private Response handleClientRequest(Request request) throws MalformedRequestException, UnavailableFacilityException, UnavailableBookingException, MalformedResponseException {
+    private Response handleClientRequest(Request request, InetAddress clientAddress, int clientPort) throws MalformedRequestException, UnavailableFacilityException, UnavailableBookingException, MalformedResponseException {
         log.info("[handleClientRequest] Received a {} request", request.getOperation().name());
         return switch (request.getOperation()) {
             case QUERY_AVAILABILITY -> {
@@ -221,14 +368,20 @@ public class RequestListener implements InitializingBean {
                 }
             }
             case MONITOR_FACILITY -> {
+                int facilityId;
+                int duration;
                 try {
-                    int facilityId = SerializeUtils.deserializeInt(request.getParameters().get("facilityId"));
-                    int duration = SerializeUtils.deserializeInt(request.getParameters().get("duration"));
-                    availabilityMonitoringService.addToMailingList(request.getRequestId(), clientAddress, clientPort, facilityId, duration);
-                    yield Response.success(request.getRequestId());
+                    facilityId = SerializeUtils.deserializeInt(request.getParameters().get("facilityId"));
+                    duration = SerializeUtils.deserializeInt(request.getParameters().get("duration"));
                 } catch (SerializationException se) {
                     throw new MalformedRequestException("[handleClientRequest] Bad params for MONITOR_FACILITY", se);
                 }
+                try {
+                    yield Response.success(request.getRequestId(),
+                            availabilityMonitoringService.addToMailingList(request.getRequestId(), clientAddress, clientPort, facilityId, duration));
+                } catch (SerializationException se) {
+                    throw new MalformedResponseException("[handleClientRequest] Failed to construct response for MONITOR_FACILITY");
+                }
             }
             case LIST_FACILITIES -> {
                 try {
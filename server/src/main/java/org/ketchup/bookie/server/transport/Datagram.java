@@ -0,0 +1,18 @@
+package org.ketchup.bookie.server.transport;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.net.InetAddress;
+
+/**
+ * A single UDP payload together with the client endpoint it came from (or is going to).
+ * Travels through the listener pipeline so that no stage has to rely on shared per-client state.
+ */
+@Getter
+@AllArgsConstructor
+public class Datagram {
+    private final byte[] data;
+    private final InetAddress address;
+    private final int port;
+}
@@ -0,0 +1,78 @@
+package org.ketchup.bookie.server.transport;
+
+import org.ketchup.bookie.server.config.Constants;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * {@link ServerTransport} backed by a blocking NIO {@link DatagramChannel}. Datagrams are received into and sent from
+ * pooled direct buffers sized to the maximum UDP payload, so the kernel copies straight into native memory and only the
+ * received bytes are copied onto the heap.
+ */
+public class DatagramChannelTransport implements ServerTransport {
+
+    private final DatagramChannel channel;
+    private final DirectBufferPool bufferPool;
+
+    /**
+     * @param port
+     * @param reusePort bind with SO_REUSEPORT so that multiple transports can share the port
+     * @param bufferPool
+     * @throws IOException
+     */
+    public DatagramChannelTransport(int port, boolean reusePort, DirectBufferPool bufferPool) throws IOException {
+        this.channel = DatagramChannel.open();
+        if (reusePort) {
+            if (!channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                channel.close();
+                throw new UnsupportedOperationException("SO_REUSEPORT is not supported on this platform");
+            }
+            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        }
+        this.channel.bind(new InetSocketAddress(port));
+        this.bufferPool = bufferPool;
+    }
+
+    @Override
+    public Datagram receive() throws IOException {
+        ByteBuffer buffer = bufferPool.acquire();
+        try {
+            InetSocketAddress sender = (InetSocketAddress) channel.receive(buffer); // Receive packet (blocking call)
+            buffer.flip();
+            byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            return new Datagram(data, sender.getAddress(), sender.getPort());
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    @Override
+    public void send(Datagram datagram) throws IOException {
+        if (datagram.getData().length > Constants.MAX_DATAGRAM_SIZE) {
+            throw new IOException("Datagram of " + datagram.getData().length + " bytes exceeds the maximum UDP payload");
+        }
+        ByteBuffer buffer = bufferPool.acquire();
+        try {
+            buffer.put(datagram.getData());
+            buffer.flip();
+            channel.send(buffer, new InetSocketAddress(datagram.getAddress(), datagram.getPort()));
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
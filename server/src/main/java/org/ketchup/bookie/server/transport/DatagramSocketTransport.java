@@ -0,0 +1,61 @@
+package org.ketchup.bookie.server.transport;
+
+import org.ketchup.bookie.server.config.Constants;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.util.Arrays;
+
+/**
+ * {@link ServerTransport} backed by a classic {@link DatagramSocket}.
+ */
+public class DatagramSocketTransport implements ServerTransport {
+
+    private final DatagramSocket socket;
+
+    // Only touched by the receiving thread
+    private final byte[] receiveBuffer = new byte[Constants.MAX_DATAGRAM_SIZE];
+    private final DatagramPacket receivePacket = new DatagramPacket(receiveBuffer, receiveBuffer.length);
+
+    /**
+     * @param port
+     * @param reusePort bind with SO_REUSEPORT so that multiple transports can share the port
+     * @throws IOException
+     */
+    public DatagramSocketTransport(int port, boolean reusePort) throws IOException {
+        this.socket = new DatagramSocket(null);
+        if (reusePort) {
+            if (!socket.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                socket.close();
+                throw new UnsupportedOperationException("SO_REUSEPORT is not supported on this platform");
+            }
+            socket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        }
+        socket.bind(new InetSocketAddress(port));
+    }
+
+    @Override
+    public Datagram receive() throws IOException {
+        receivePacket.setLength(receiveBuffer.length);
+        socket.receive(receivePacket); // Receive packet (blocking call)
+        return new Datagram(Arrays.copyOf(receiveBuffer, receivePacket.getLength()), receivePacket.getAddress(), receivePacket.getPort());
+    }
+
+    @Override
+    public void send(Datagram datagram) throws IOException {
+        socket.send(new DatagramPacket(datagram.getData(), datagram.getData().length, datagram.getAddress(), datagram.getPort()));
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !socket.isClosed();
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+    }
+}
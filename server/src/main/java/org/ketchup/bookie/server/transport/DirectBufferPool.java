@@ -0,0 +1,49 @@
+package org.ketchup.bookie.server.transport;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe pool of fixed-size direct {@link ByteBuffer}s. Direct buffers are expensive to allocate and are only
+ * reclaimed by the GC lazily, so they are recycled instead of being allocated per datagram.
+ */
+public class DirectBufferPool {
+
+    private final int bufferSize;
+    private final int maxPooledBuffers;
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledBuffers = new AtomicInteger();
+
+    public DirectBufferPool(int bufferSize, int maxPooledBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    /**
+     * Take a cleared buffer from the pool, allocating a new one if the pool is empty.
+     * @return
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooledBuffers.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Return a buffer to the pool. Buffers beyond the pool capacity are left to the GC.
+     * @param buffer
+     */
+    public void release(ByteBuffer buffer) {
+        buffer.clear();
+        if (pooledBuffers.incrementAndGet() <= maxPooledBuffers) {
+            buffers.offer(buffer);
+        } else {
+            pooledBuffers.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.ketchup.bookie.server.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A bound UDP endpoint from which the server receives requests and through which it sends responses.
+ */
+public interface ServerTransport extends Closeable {
+    /**
+     * Block until a datagram arrives. The returned {@link Datagram} only contains the received bytes.
+     * @return
+     * @throws IOException
+     */
+    Datagram receive() throws IOException;
+
+    /**
+     * Send a datagram to the address and port it carries.
+     * @param datagram
+     * @throws IOException
+     */
+    void send(Datagram datagram) throws IOException;
+
+    boolean isOpen();
+}
@@ -10,47 +10,181 @@ import org.ketchup.bookie.common.pojo.Facility;
 import org.ketchup.bookie.server.config.Constants;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
 
 @Slf4j
 public class CsvUtils {
 
     public static final List<String> FACILITY_CSV_COLS = List.of("id", "name", "type");
 
+    // Rows are parsed in chunks of about this size, in parallel
+    private static final int CHUNK_BYTES = 1 << 20;
+
     public static List<Facility> readFacilitiesFromCsv() throws IOException {
+        return readFacilitiesFromCsv(Path.of(Constants.FACILITIES_CSV_PATH));
+    }
+
+    /**
+     * @param csvPath
+     * @return the facilities of a CSV file, in the order of the file
+     * @throws IOException
+     */
+    public static List<Facility> readFacilitiesFromCsv(Path csvPath) throws IOException {
+        // { chunk index : facilities of the chunk }, each chunk being parsed by a single thread
+        Map<Integer, List<Facility>> facilitiesByChunk = new ConcurrentSkipListMap<>();
+        readChunks(csvPath, chunkIndex -> facilitiesByChunk.computeIfAbsent(chunkIndex, index -> new ArrayList<>())::add);
         List<Facility> facilities = new ArrayList<>();
-        try (CSVParser csvParser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(
-                new BufferedReader(new FileReader(Constants.FACILITIES_CSV_PATH, StandardCharsets.UTF_8)))
-        ) {
-
-            for (CSVRecord csvRecord : csvParser) {
-                int id = Integer.parseInt(csvRecord.get(FACILITY_CSV_COLS.get(0)));
-                String name = csvRecord.get(FACILITY_CSV_COLS.get(1));
-                int typeValue = Integer.parseInt(csvRecord.get(FACILITY_CSV_COLS.get(2)));
-                facilities.add(new Facility(id, name, FacilityType.fromValue(typeValue)));
+        facilitiesByChunk.values().forEach(facilities::addAll);
+        return facilities;
+    }
+
+    /**
+     * Stream the facilities of a CSV file to facilityConsumer without materializing them. The file is split into
+     * chunks of whole rows, which are parsed in parallel: facilityConsumer must be thread-safe, and is not called in
+     * the order of the file. Callers which keep facilities by ID must check the file has no duplicate IDs, since which
+     * of their rows comes last is arbitrary.
+     * @param csvPath
+     * @param facilityConsumer
+     * @return number of facilities read
+     * @throws IOException
+     */
+    public static long readFacilitiesFromCsv(Path csvPath, Consumer<Facility> facilityConsumer) throws IOException {
+        return readChunks(csvPath, chunkIndex -> facilityConsumer);
+    }
+
+    /**
+     * @param csvPath
+     * @param chunkConsumers gives the consumer of the facilities of each chunk, called with the rows of the chunk in
+     *                       the order of the file
+     * @return number of facilities read
+     * @throws IOException
+     */
+    private static long readChunks(Path csvPath, IntFunction<Consumer<Facility>> chunkConsumers) throws IOException {
+        try (FileChannel channel = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("[readFacilitiesFromCsv] CSV file larger than 2GB: " + csvPath);
+            }
+            ByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            List<int[]> chunks = splitRows(content, CHUNK_BYTES);
+            if (chunks.isEmpty()) {
+                throw new IOException("[readFacilitiesFromCsv] Missing header in " + csvPath);
             }
+            int[] header = chunks.remove(0);
+            List<String> columns;
+            try (CSVParser headerParser = CSVFormat.DEFAULT.parse(new StringReader(decode(content, header)))) {
+                columns = headerParser.getRecords().get(0).toList();
+            }
+            int idColumn = columnIndex(columns, FACILITY_CSV_COLS.get(0));
+            int nameColumn = columnIndex(columns, FACILITY_CSV_COLS.get(1));
+            int typeColumn = columnIndex(columns, FACILITY_CSV_COLS.get(2));
 
+            return IntStream.range(0, chunks.size()).parallel().mapToLong(chunkIndex -> {
+                Consumer<Facility> facilityConsumer = chunkConsumers.apply(chunkIndex);
+                long rowCount = 0;
+                try (CSVParser csvParser = CSVFormat.DEFAULT.parse(new StringReader(decode(content, chunks.get(chunkIndex))))) {
+                    for (CSVRecord csvRecord : csvParser) {
+                        int id = Integer.parseInt(csvRecord.get(idColumn));
+                        String name = csvRecord.get(nameColumn);
+                        int typeValue = Integer.parseInt(csvRecord.get(typeColumn));
+                        facilityConsumer.accept(new Facility(id, name, FacilityType.fromValue(typeValue)));
+                        rowCount++;
+                    }
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+                return rowCount;
+            }).sum();
+        } catch (UncheckedIOException uioe) {
+            log.error("[readFacilitiesFromCsv] Error reading CSV file", uioe.getCause());
+            throw uioe.getCause();
         } catch (IOException ioe) {
             log.error("[readFacilitiesFromCsv] Error reading CSV file", ioe);
             throw ioe;
         }
-        return facilities;
+    }
+
+    /**
+     * Split CSV content into the header row, then chunks of whole rows of about chunkBytes. A line break only ends a
+     * row outside a quoted value, which is known by counting quotes (an escaped quote counts twice).
+     * @return [start, end) byte offsets of each chunk
+     */
+    static List<int[]> splitRows(ByteBuffer content, int chunkBytes) {
+        List<int[]> chunks = new ArrayList<>();
+        int chunkStart = 0;
+        boolean inQuotes = false;
+        for (int i = 0; i < content.limit(); i++) {
+            byte b = content.get(i);
+            if (b == '"') {
+                inQuotes = !inQuotes;
+            } else if (b == '\n' && !inQuotes && (chunks.isEmpty() || i + 1 - chunkStart >= chunkBytes)) {
+                chunks.add(new int[] {chunkStart, i + 1});
+                chunkStart = i + 1;
+            }
+        }
+        if (chunkStart < content.limit()) {
+            chunks.add(new int[] {chunkStart, content.limit()});
+        }
+        return chunks;
+    }
+
+    private static String decode(ByteBuffer content, int[] chunk) {
+        // Line breaks never split a UTF-8 character
+        return StandardCharsets.UTF_8.decode(content.slice(chunk[0], chunk[1] - chunk[0])).toString();
+    }
+
+    private static int columnIndex(List<String> columns, String column) throws IOException {
+        int index = columns.indexOf(column);
+        if (index < 0) {
+            throw new IOException("[columnIndex] Missing column " + column + " in CSV header " + columns);
+        }
+        return index;
     }
 
     public static void writeFacilitiesToCsv(List<Facility> facilities) throws IOException {
+        writeFacilitiesToCsv(Path.of(Constants.FACILITIES_CSV_PATH), facilities);
+    }
+
+    /**
+     * Write the facilities to a temporary file, then atomically replace the CSV file with it, so that a crash while
+     * writing leaves the previous CSV file in place. Returns once the replacement itself is on disk.
+     * @param csvPath
+     * @param facilities
+     * @throws IOException
+     */
+    public static void writeFacilitiesToCsv(Path csvPath, Collection<Facility> facilities) throws IOException {
         CSVFormat csvFormat = CSVFormat.DEFAULT.builder().setHeader(FACILITY_CSV_COLS.toArray(String[]::new)).build();
-        try (
-                BufferedWriter writer = new BufferedWriter(new FileWriter(Constants.FACILITIES_CSV_PATH, StandardCharsets.UTF_8));
-                CSVPrinter csvPrinter = new CSVPrinter(writer, csvFormat)
-        ) {
-            for (Facility facility : facilities) {
-                csvPrinter.printRecord(facility.getId(), facility.getName(), facility.getType().getValue());
+        Path tempPath = csvPath.resolveSibling(csvPath.getFileName() + ".tmp");
+        try {
+            try (
+                    FileOutputStream out = new FileOutputStream(tempPath.toFile());
+                    BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                    CSVPrinter csvPrinter = new CSVPrinter(writer, csvFormat)
+            ) {
+                for (Facility facility : facilities) {
+                    csvPrinter.printRecord(facility.getId(), facility.getName(), facility.getType().getValue());
+                }
+                csvPrinter.flush();
+                out.getFD().sync();
             }
-            csvPrinter.flush();
+            // Only once the file is closed: an open file cannot be replaced on Windows
+            Files.move(tempPath, csvPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            FileUtils.forceDirectory(csvPath);
         } catch (IOException ioe) {
             log.error("[writeFacilitiesToCsv] Error writing to csv ", ioe);
             throw ioe;
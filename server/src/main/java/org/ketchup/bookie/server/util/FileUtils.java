@@ -0,0 +1,40 @@
+package org.ketchup.bookie.server.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+@Slf4j
+public class FileUtils {
+
+    private FileUtils() {
+    }
+
+    /**
+     * Force the directory holding a file to disk, so that the file's creation, rename or deletion survives a crash.
+     * Does nothing on platforms which cannot open directories, such as Windows.
+     * @param path
+     * @throws IOException
+     */
+    public static void forceDirectory(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory == null) return;
+        FileChannel channel = openDirectory(directory);
+        if (channel == null) return;
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private static FileChannel openDirectory(Path directory) {
+        try {
+            return FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("[openDirectory] Cannot open directory {} to force it: {}", directory, e.toString());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.ketchup.bookie.server.repository;
+
+import org.junit.jupiter.api.Test;
+import org.ketchup.bookie.common.enums.FacilityType;
+import org.ketchup.bookie.common.exception.UnavailableFacilityException;
+import org.ketchup.bookie.common.pojo.Booking;
+import org.ketchup.bookie.common.pojo.Facility;
+import org.ketchup.bookie.server.repository.timeline.FacilityTimelineType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookingRepositoryTest {
+
+    @Test
+    void droppedFacilityCannotBeBooked() throws UnavailableFacilityException {
+        BookingRepository repository = new BookingRepository(FacilityTimelineType.BITSET);
+        Facility facility = new Facility(1, "Room 1", FacilityType.MEETING_ROOM);
+        repository.addFacility(facility);
+        assertTrue(repository.addBooking(new Booking(1, 1, 0, 60)));
+        assertTrue(repository.addBooking(new Booking(2, 1, 120, 180)));
+
+        repository.dropFacility(facility);
+        assertThrows(UnavailableFacilityException.class, () -> repository.addBooking(new Booking(3, 1, 300, 360)));
+        assertThrows(UnavailableFacilityException.class, () -> repository.changeBooking(1, 600));
+        assertThrows(UnavailableFacilityException.class, () -> repository.extendBooking(1, 30));
+        assertThrows(UnavailableFacilityException.class, () -> repository.checkAvailability(1, 300, 360));
+        assertFalse(repository.isBookingIdExist(3));
+        assertEquals(new Booking(1, 1, 0, 60), repository.queryBooking(1));
+
+        // Existing bookings can still be cancelled
+        assertTrue(repository.removeBooking(2));
+        assertFalse(repository.isBookingIdExist(2));
+
+        // Adding the facility again makes it bookable, with the bookings it kept
+        repository.addFacility(facility);
+        assertFalse(repository.addBooking(new Booking(3, 1, 30, 90)));
+        assertTrue(repository.addBooking(new Booking(3, 1, 120, 180)));
+        assertTrue(repository.changeBooking(1, 600));
+    }
+
+    @Test
+    void unknownFacilityCannotBeBooked() {
+        BookingRepository repository = new BookingRepository(FacilityTimelineType.INTERVAL);
+        assertThrows(UnavailableFacilityException.class, () -> repository.addBooking(new Booking(1, 42, 0, 60)));
+        assertThrows(UnavailableFacilityException.class, () -> repository.checkAvailability(42, 0, 60));
+    }
+}
@@ -0,0 +1,225 @@
+package org.ketchup.bookie.server.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ketchup.bookie.common.enums.FacilityType;
+import org.ketchup.bookie.common.exception.UnavailableFacilityException;
+import org.ketchup.bookie.common.pojo.Booking;
+import org.ketchup.bookie.common.pojo.Facility;
+import org.ketchup.bookie.server.config.Config;
+import org.ketchup.bookie.server.repository.journal.FacilityChange;
+import org.ketchup.bookie.server.repository.journal.FacilityChangeLog;
+import org.ketchup.bookie.server.repository.timeline.FacilityTimelineType;
+import org.ketchup.bookie.server.util.CsvUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FacilityRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private long compactionThreshold = 1_000;
+
+    private class ChangeLogConfig extends Config {
+        @Override
+        public String getFacilityChangelogPath() {
+            return directory.resolve("facilities.changelog").toString();
+        }
+
+        @Override
+        public long getFacilityChangelogCompactionThreshold() {
+            return compactionThreshold;
+        }
+    }
+
+    private Path csvPath() {
+        return directory.resolve("facilities.csv");
+    }
+
+    private Path changeLogPath() {
+        return directory.resolve("facilities.changelog");
+    }
+
+    private Path compactingPath() {
+        return directory.resolve("facilities.changelog.compacting");
+    }
+
+    private FacilityRepository start() throws Exception {
+        return start(new BookingRepository(FacilityTimelineType.BITSET));
+    }
+
+    private FacilityRepository start(BookingRepository bookingRepository) throws Exception {
+        FacilityRepository repository = new FacilityRepository(bookingRepository, new ChangeLogConfig(), csvPath());
+        repository.afterPropertiesSet();
+        return repository;
+    }
+
+    private void writeCsv(int facilityCount) throws Exception {
+        List<Facility> facilities = new ArrayList<>();
+        for (int id = 1; id <= facilityCount; id++) {
+            facilities.add(new Facility(id, "Room " + id, FacilityType.MEETING_ROOM));
+        }
+        CsvUtils.writeFacilitiesToCsv(csvPath(), facilities);
+    }
+
+    private static List<Facility> sorted(List<Facility> facilities) {
+        return facilities.stream().sorted(Comparator.comparingInt(Facility::getId)).toList();
+    }
+
+    @Test
+    void replayChangesAfterCrash() throws Exception {
+        writeCsv(3);
+        FacilityRepository repository = start();
+        repository.addFacility(new Facility(4, "Pod, \"quiet\"", FacilityType.STUDY_POD));
+        assertTrue(repository.dropFacility(1));
+        assertFalse(repository.dropFacility(42));
+        repository.addFacility(new Facility(2, "Renamed", FacilityType.LECTURE_THEATER));
+        List<Facility> expected = sorted(repository.listAllFacilities());
+
+        // Crash: the repository is not destroyed, and the CSV was never rewritten
+        BookingRepository bookingRepository = new BookingRepository(FacilityTimelineType.BITSET);
+        FacilityRepository recovered = start(bookingRepository);
+        assertEquals(expected, sorted(recovered.listAllFacilities()));
+        assertEquals(Facility.NULL_INSTANCE, recovered.getFacilityById(1));
+        assertEquals(List.of(new Facility(2, "Renamed", FacilityType.LECTURE_THEATER)), recovered.getFacilitiesByName("Renamed"));
+        assertEquals(List.of(), recovered.getFacilitiesByName("Room 2"));
+        assertEquals(List.of(new Facility(4, "Pod, \"quiet\"", FacilityType.STUDY_POD)),
+                recovered.getFacilitiesByType(FacilityType.STUDY_POD));
+        // Replayed changes are applied to the bookings too
+        assertTrue(bookingRepository.addBooking(new Booking(1, 4, 0, 60)));
+        assertThrows(UnavailableFacilityException.class, () -> bookingRepository.addBooking(new Booking(2, 1, 0, 60)));
+        recovered.destroy();
+    }
+
+    @Test
+    void rejectDuplicateIdsInCsv() throws Exception {
+        CsvUtils.writeFacilitiesToCsv(csvPath(), List.of(
+                new Facility(1, "Room 1", FacilityType.MEETING_ROOM),
+                new Facility(2, "Room 2", FacilityType.MEETING_ROOM),
+                new Facility(1, "Pod", FacilityType.STUDY_POD)
+        ));
+        IOException e = assertThrows(IOException.class, this::start);
+        assertTrue(e.getMessage().contains("3 rows for 2 facilities"), e.getMessage());
+    }
+
+    @Test
+    void compactWhileChangesArrive() throws Exception {
+        writeCsv(10);
+        compactionThreshold = 50;
+        FacilityRepository repository = start();
+        int threadCount = 4;
+        int changesPerThread = 500;
+        CountDownLatch started = new CountDownLatch(threadCount);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            int firstId = 1_000 * (t + 1);
+            threads.add(new Thread(() -> {
+                started.countDown();
+                try {
+                    for (int i = 0; i < changesPerThread; i++) {
+                        repository.addFacility(new Facility(firstId + i, "Pod " + (firstId + i), FacilityType.STUDY_POD));
+                        // Drop every other facility added before
+                        if (i % 2 == 1) {
+                            assertTrue(repository.dropFacility(firstId + i - 1));
+                        }
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        started.await();
+        // Explicit compactions, on top of the ones triggered by the threshold
+        for (int i = 0; i < 5; i++) {
+            repository.writeToCsv();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of(), failures);
+        List<Facility> expected = sorted(repository.listAllFacilities());
+        assertEquals(10 + threadCount * changesPerThread / 2, expected.size());
+
+        // Waits for the last compaction. Every change was already on disk, so this is as good as a crash
+        repository.destroy();
+        assertFalse(Files.exists(compactingPath()));
+        FacilityRepository recovered = start();
+        assertEquals(expected, sorted(recovered.listAllFacilities()));
+        recovered.destroy();
+    }
+
+    @Test
+    void finishFailedCompactionBeforeNextOne() throws Exception {
+        writeCsv(3);
+        FacilityRepository repository = start();
+        repository.addFacility(new Facility(4, "Pod", FacilityType.STUDY_POD));
+        // Makes the CSV write fail
+        Path tempCsvPath = directory.resolve("facilities.csv.tmp");
+        Files.createDirectory(tempCsvPath);
+        assertThrows(IOException.class, repository::writeToCsv);
+        assertTrue(Files.exists(compactingPath()));
+        Files.delete(tempCsvPath);
+
+        repository.addFacility(new Facility(5, "Court", FacilityType.BADMINTON_COURT));
+        repository.writeToCsv();
+        assertFalse(Files.exists(compactingPath()));
+        List<Facility> expected = sorted(repository.listAllFacilities());
+        assertEquals(5, expected.size());
+        List<Facility> csvFacilities = new ArrayList<>(CsvUtils.readFacilitiesFromCsv(csvPath()));
+        assertEquals(expected, sorted(csvFacilities));
+        repository.destroy();
+
+        FacilityRepository restarted = start();
+        assertEquals(expected, sorted(restarted.listAllFacilities()));
+        restarted.destroy();
+    }
+
+    @Test
+    void finishCompactionInterruptedAfterCsvRename() throws Exception {
+        writeCsv(3);
+        FacilityRepository repository = start();
+        repository.addFacility(new Facility(4, "Pod", FacilityType.STUDY_POD));
+        assertTrue(repository.dropFacility(3));
+        List<Facility> compacted = repository.listAllFacilities();
+        repository.destroy();
+
+        // As left by a crash in writeToCsv() after the CSV was replaced, but before the moved log was deleted, with
+        // one more change logged meanwhile
+        Files.move(changeLogPath(), compactingPath());
+        CsvUtils.writeFacilitiesToCsv(csvPath(), compacted);
+        try (FacilityChangeLog changeLog = new FacilityChangeLog(changeLogPath(), 0)) {
+            changeLog.append(new FacilityChange(FacilityChange.Type.DROP, new Facility(1, "Room 1", FacilityType.MEETING_ROOM)));
+        }
+
+        FacilityRepository recovered = start();
+        List<Facility> expected = List.of(
+                new Facility(2, "Room 2", FacilityType.MEETING_ROOM),
+                new Facility(4, "Pod", FacilityType.STUDY_POD)
+        );
+        assertEquals(expected, sorted(recovered.listAllFacilities()));
+        // The compaction was finished: the CSV alone holds the catalog
+        assertFalse(Files.exists(compactingPath()));
+        assertEquals(0, FacilityChangeLog.replay(changeLogPath(), change -> {}));
+        List<Facility> csvFacilities = new ArrayList<>();
+        CsvUtils.readFacilitiesFromCsv(csvPath(), csvFacilities::add);
+        assertEquals(expected, sorted(csvFacilities));
+        recovered.destroy();
+
+        FacilityRepository restarted = start();
+        assertEquals(expected, sorted(restarted.listAllFacilities()));
+        restarted.destroy();
+    }
+}
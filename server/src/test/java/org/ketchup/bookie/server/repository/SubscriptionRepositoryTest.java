@@ -0,0 +1,88 @@
+package org.ketchup.bookie.server.repository;
+
+import org.junit.jupiter.api.Test;
+import org.ketchup.bookie.server.repository.SubscriptionRepository.Subscription;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubscriptionRepositoryTest {
+
+    private final AtomicLong clock = new AtomicLong(10_000);
+    private final SubscriptionRepository repository = new SubscriptionRepository(clock::get);
+    private final List<Integer> unsubscribed = new ArrayList<>();
+
+    SubscriptionRepositoryTest() {
+        repository.setFacilityUnsubscribedListener(unsubscribed::add);
+    }
+
+    private Subscription subscribe(int facilityId, long expiry) {
+        Subscription subscription = new Subscription(UUID.randomUUID(), facilityId, InetAddress.getLoopbackAddress(), 5000, expiry);
+        repository.addSubscription(subscription);
+        return subscription;
+    }
+
+    @Test
+    void removeExpiredSliceBySlice() {
+        Subscription first = subscribe(1, 10_500);
+        Subscription sameSlice = subscribe(2, 10_900);
+        Subscription nextSlice = subscribe(1, 11_200);
+        Subscription later = subscribe(2, 15_000);
+
+        // Expired subscriptions are no longer notified, even before they are removed
+        clock.set(10_600);
+        assertEquals(List.of(nextSlice), repository.getSubscriptions(1));
+        // The slice of the first two is not over yet
+        assertEquals(0, repository.removeExpired());
+        assertEquals(4, repository.size());
+
+        clock.set(11_000);
+        assertEquals(2, repository.removeExpired());
+        assertNull(repository.getSubscription(first.requestId()));
+        assertNull(repository.getSubscription(sameSlice.requestId()));
+        assertTrue(repository.hasSubscriptions(1));
+        assertTrue(repository.hasSubscriptions(2));
+        assertEquals(List.of(), unsubscribed);
+
+        // Slices missed between two sweeps are swept too
+        clock.set(14_000);
+        assertEquals(1, repository.removeExpired());
+        assertEquals(List.of(1), unsubscribed);
+        assertFalse(repository.hasSubscriptions(1));
+        assertEquals(List.of(), repository.getSubscriptions(1));
+        assertEquals(List.of(later), repository.getSubscriptions(2));
+
+        clock.set(16_000);
+        assertEquals(1, repository.removeExpired());
+        assertEquals(List.of(1, 2), unsubscribed);
+        assertEquals(0, repository.size());
+        assertEquals(0, repository.removeExpired());
+    }
+
+    @Test
+    void notifyLastSubscriptionRemoved() {
+        Subscription first = subscribe(1, 20_000);
+        Subscription second = subscribe(1, 30_000);
+
+        assertEquals(first, repository.removeSubscription(first.requestId()));
+        assertNull(repository.removeSubscription(first.requestId()));
+        assertEquals(List.of(), unsubscribed);
+        assertEquals(second, repository.removeSubscription(second.requestId()));
+        assertEquals(List.of(1), unsubscribed);
+
+        // Replacing the only subscription to a facility by one to another facility leaves the first unsubscribed
+        Subscription third = subscribe(2, 20_000);
+        repository.addSubscription(new Subscription(third.requestId(), 3, third.clientAddress(), third.clientPort(), 20_000));
+        assertEquals(List.of(1, 2), unsubscribed);
+        assertEquals(1, repository.getSubscriptions(3).size());
+
+        clock.set(21_000);
+        assertEquals(1, repository.removeExpired());
+        assertEquals(List.of(1, 2, 3), unsubscribed);
+    }
+}
@@ -0,0 +1,189 @@
+package org.ketchup.bookie.server.repository.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ketchup.bookie.common.pojo.Booking;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookingJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private static JournalEvent event(JournalEvent.Type type, int bookingId) {
+        return new JournalEvent(type, new Booking(bookingId, 7, bookingId * 60, bookingId * 60 + 30));
+    }
+
+    private static List<JournalEvent> replayAll(Path path, long afterSeq, List<Long> seqs) throws IOException {
+        List<JournalEvent> events = new ArrayList<>();
+        BookingJournal.replay(path, afterSeq, (seq, event) -> {
+            seqs.add(seq);
+            events.add(event);
+        });
+        return events;
+    }
+
+    @Test
+    void appendThenReplay() throws IOException {
+        Path path = directory.resolve("bookings.journal");
+        List<JournalEvent> appended = List.of(
+                event(JournalEvent.Type.ADD, 1),
+                event(JournalEvent.Type.ADD, 2),
+                event(JournalEvent.Type.MOVE, 1),
+                event(JournalEvent.Type.REMOVE, 2)
+        );
+        try (BookingJournal journal = new BookingJournal(path, FsyncPolicy.ALWAYS, 100, 0)) {
+            for (JournalEvent event : appended) {
+                journal.awaitDurable(journal.append(event));
+            }
+        }
+
+        List<Long> seqs = new ArrayList<>();
+        assertEquals(appended, replayAll(path, 0, seqs));
+        assertEquals(List.of(1L, 2L, 3L, 4L), seqs);
+        assertEquals(4, BookingJournal.replay(path, 0, (seq, event) -> {}));
+
+        // Appending resumes after the last event, across segments
+        try (BookingJournal journal = new BookingJournal(path, FsyncPolicy.NONE, 100, 4)) {
+            assertEquals(5, journal.rotate());
+            assertEquals(5, journal.append(event(JournalEvent.Type.ADD, 3)));
+        }
+        seqs.clear();
+        assertEquals(List.of(event(JournalEvent.Type.REMOVE, 2), event(JournalEvent.Type.ADD, 3)), replayAll(path, 3, seqs));
+        assertEquals(List.of(4L, 5L), seqs);
+    }
+
+    @Test
+    void truncateTornTail() throws IOException {
+        Path path = directory.resolve("bookings.journal");
+        try (BookingJournal journal = new BookingJournal(path, FsyncPolicy.NONE, 100, 0)) {
+            journal.append(event(JournalEvent.Type.ADD, 1));
+            journal.append(event(JournalEvent.Type.ADD, 2));
+        }
+        Path segment = directory.resolve("bookings.journal.1");
+        long validLength;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // Cut the second record short, as a crash in the middle of a write would
+            validLength = channel.size();
+            channel.truncate(validLength - 3);
+        }
+
+        List<Long> seqs = new ArrayList<>();
+        assertEquals(List.of(event(JournalEvent.Type.ADD, 1)), replayAll(path, 0, seqs));
+        assertEquals(List.of(1L), seqs);
+        assertTrue(Files.size(segment) < validLength - 3, "Torn record must be truncated");
+
+        // New events follow the last valid one
+        try (BookingJournal journal = new BookingJournal(path, FsyncPolicy.NONE, 100, 1)) {
+            assertEquals(2, journal.append(event(JournalEvent.Type.ADD, 3)));
+        }
+        seqs.clear();
+        assertEquals(List.of(event(JournalEvent.Type.ADD, 1), event(JournalEvent.Type.ADD, 3)), replayAll(path, 0, seqs));
+        assertEquals(List.of(1L, 2L), seqs);
+    }
+
+    @Test
+    void replaySegmentLargerThanReadBuffer() throws IOException {
+        Path path = directory.resolve("bookings.journal");
+        Path segment = directory.resolve("bookings.journal.1");
+        int eventCount = 0;
+        try (BookingJournal journal = new BookingJournal(path, FsyncPolicy.ALWAYS, 100, 0)) {
+            while (Files.size(segment) < 3L * JournalRecords.READ_BUFFER_SIZE) {
+                for (int i = 0; i < 1000; i++) {
+                    journal.append(event(JournalEvent.Type.ADD, ++eventCount));
+                }
+                journal.awaitDurable(eventCount);
+            }
+        }
+        long validLength = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(validLength - 1);
+        }
+
+        List<Long> seqs = new ArrayList<>();
+        List<JournalEvent> events = replayAll(path, 0, seqs);
+        assertEquals(eventCount - 1, events.size());
+        assertEquals(event(JournalEvent.Type.ADD, eventCount - 1), events.get(events.size() - 1));
+        assertEquals(eventCount - 1, seqs.get(seqs.size() - 1));
+        assertTrue(Files.size(segment) < validLength - 1, "Torn record must be truncated");
+    }
+
+    @Test
+    void groupCommitConcurrentAppends() throws Exception {
+        Path path = directory.resolve("bookings.journal");
+        int threadCount = 8;
+        int appendsPerThread = 100;
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        long syncCount;
+        try (BookingJournal journal = new BookingJournal(path, FsyncPolicy.ALWAYS, 100, 0)) {
+            CountDownLatch started = new CountDownLatch(threadCount);
+            for (int t = 0; t < threadCount; t++) {
+                int firstBookingId = t * appendsPerThread;
+                threads.add(new Thread(() -> {
+                    started.countDown();
+                    try {
+                        started.await();
+                        for (int i = 1; i <= appendsPerThread; i++) {
+                            long seq = journal.append(event(JournalEvent.Type.ADD, firstBookingId + i));
+                            journal.awaitDurable(seq);
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            syncCount = journal.getSyncCount();
+        }
+        assertEquals(List.of(), failures);
+        // Every event waits for an fsync, but an fsync can cover the events of several threads
+        assertTrue(syncCount >= 1 && syncCount <= threadCount * appendsPerThread, "fsyncs: " + syncCount);
+
+        List<Long> seqs = new ArrayList<>();
+        List<JournalEvent> events = replayAll(path, 0, seqs);
+        assertEquals(threadCount * appendsPerThread, events.size());
+        for (int i = 0; i < seqs.size(); i++) {
+            assertEquals(i + 1, seqs.get(i));
+        }
+        // The events of each thread are in the order it appended them
+        int[] lastBookingIds = new int[threadCount];
+        for (JournalEvent event : events) {
+            int bookingId = event.getBooking().getBookingId();
+            int thread = (bookingId - 1) / appendsPerThread;
+            assertTrue(bookingId > lastBookingIds[thread]);
+            lastBookingIds[thread] = bookingId;
+        }
+    }
+
+    @Test
+    void refuseAppendsAfterWriterFailure() throws IOException {
+        Path path = directory.resolve("bookings.journal");
+        BookingJournal journal = new BookingJournal(path, FsyncPolicy.NONE, 100, 0);
+        long seq = journal.append(event(JournalEvent.Type.ADD, 1));
+        // The next segment cannot be created
+        Files.createDirectory(directory.resolve("bookings.journal.2"));
+
+        assertThrows(IOException.class, journal::rotate);
+        assertThrows(IOException.class, () -> journal.append(event(JournalEvent.Type.ADD, 2)));
+        // Reported even though the policy does not wait for fsyncs
+        assertThrows(IOException.class, () -> journal.awaitDurable(seq));
+        assertThrows(IOException.class, journal::flush);
+        assertThrows(IOException.class, journal::close);
+    }
+}
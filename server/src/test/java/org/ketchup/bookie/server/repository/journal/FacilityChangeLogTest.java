@@ -0,0 +1,107 @@
+package org.ketchup.bookie.server.repository.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ketchup.bookie.common.enums.FacilityType;
+import org.ketchup.bookie.common.pojo.Facility;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FacilityChangeLogTest {
+
+    @TempDir
+    Path directory;
+
+    private static final FacilityChange ADD_POD = new FacilityChange(FacilityChange.Type.ADD,
+            new Facility(10, "Pod, \"quiet\"", FacilityType.STUDY_POD));
+    private static final FacilityChange DROP_ROOM = new FacilityChange(FacilityChange.Type.DROP,
+            new Facility(1, "Room 1", FacilityType.MEETING_ROOM));
+    private static final FacilityChange ADD_COURT = new FacilityChange(FacilityChange.Type.ADD,
+            new Facility(11, "Court", FacilityType.BADMINTON_COURT));
+
+    private static List<FacilityChange> replayAll(Path path) throws IOException {
+        List<FacilityChange> changes = new ArrayList<>();
+        assertEquals(FacilityChangeLog.replay(path, changes::add), changes.size());
+        return changes;
+    }
+
+    @Test
+    void appendThenReplay() throws IOException {
+        Path path = directory.resolve("facilities.changelog");
+        assertEquals(List.of(), replayAll(path));
+        try (FacilityChangeLog changeLog = new FacilityChangeLog(path, 0)) {
+            changeLog.append(ADD_POD);
+            changeLog.append(DROP_ROOM);
+            assertEquals(2, changeLog.getRecordCount());
+        }
+        assertEquals(List.of(ADD_POD, DROP_ROOM), replayAll(path));
+
+        try (FacilityChangeLog changeLog = new FacilityChangeLog(path, 2)) {
+            changeLog.append(ADD_COURT);
+            assertEquals(3, changeLog.getRecordCount());
+
+            // Changes after a rotation go to a new log
+            Path compactingPath = directory.resolve("facilities.changelog.compacting");
+            changeLog.rotate(compactingPath);
+            assertEquals(0, changeLog.getRecordCount());
+            changeLog.append(DROP_ROOM);
+            assertEquals(List.of(ADD_POD, DROP_ROOM, ADD_COURT), replayAll(compactingPath));
+            assertEquals(List.of(DROP_ROOM), replayAll(path));
+
+            changeLog.truncate();
+            assertEquals(0, changeLog.getRecordCount());
+        }
+        assertEquals(List.of(), replayAll(path));
+    }
+
+    @Test
+    void keepAppendingAfterFailedRotation() throws IOException {
+        Path path = directory.resolve("facilities.changelog");
+        Path compactingPath = directory.resolve("facilities.changelog.compacting");
+        try (FacilityChangeLog changeLog = new FacilityChangeLog(path, 0)) {
+            changeLog.append(ADD_POD);
+            changeLog.rotate(compactingPath);
+            changeLog.append(DROP_ROOM);
+
+            // The moved log of a compaction which did not finish is not replaced
+            assertThrows(IOException.class, () -> changeLog.rotate(compactingPath));
+            // Nor is the log moved where it cannot be
+            assertThrows(IOException.class, () -> changeLog.rotate(directory.resolve("missing").resolve("log")));
+            assertEquals(1, changeLog.getRecordCount());
+            changeLog.append(ADD_COURT);
+            assertEquals(2, changeLog.getRecordCount());
+        }
+        assertEquals(List.of(ADD_POD), replayAll(compactingPath));
+        assertEquals(List.of(DROP_ROOM, ADD_COURT), replayAll(path));
+    }
+
+    @Test
+    void truncateTornTail() throws IOException {
+        Path path = directory.resolve("facilities.changelog");
+        try (FacilityChangeLog changeLog = new FacilityChangeLog(path, 0)) {
+            changeLog.append(ADD_POD);
+            changeLog.append(ADD_COURT);
+        }
+        long fullLength = Files.size(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(fullLength - 2);
+        }
+
+        assertEquals(List.of(ADD_POD), replayAll(path));
+        assertTrue(Files.size(path) < fullLength - 2, "Torn record must be truncated");
+
+        // New changes follow the last valid one
+        try (FacilityChangeLog changeLog = new FacilityChangeLog(path, 1)) {
+            changeLog.append(DROP_ROOM);
+        }
+        assertEquals(List.of(ADD_POD, DROP_ROOM), replayAll(path));
+    }
+}
@@ -0,0 +1,55 @@
+package org.ketchup.bookie.server.repository.timeline;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ketchup.bookie.server.config.Constants;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedTimelineStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shareRecordOfFacility() throws IOException {
+        try (MappedTimelineStore store = new MappedTimelineStore(directory.resolve("timelines.dat"), Constants.MINUTES_IN_WEEK)) {
+            FacilityTimeline timeline = store.getTimeline(7);
+            timeline.occupy(1, 60, 120);
+            assertFalse(store.getTimeline(7).isFree(90, 100));
+            assertTrue(store.getTimeline(8).isFree(0, Constants.MINUTES_IN_WEEK));
+            assertTrue(store.getTimeline(7).release(1, 60, 120));
+            assertTrue(timeline.isFree(0, Constants.MINUTES_IN_WEEK));
+        }
+    }
+
+    @Test
+    void sparseIdsUseDenseRecords() throws IOException {
+        Path path = directory.resolve("timelines.dat");
+        try (MappedTimelineStore store = new MappedTimelineStore(path, Constants.MINUTES_IN_WEEK)) {
+            store.getTimeline(0).occupy(1, 0, 60);
+            store.getTimeline(Integer.MAX_VALUE).occupy(2, 0, 60);
+            store.getTimeline(-5).occupy(3, 0, 60);
+            assertEquals(3, store.size());
+            // A single region, whatever the IDs
+            assertTrue(Files.size(path) < 16L << 20, "File grew to " + Files.size(path) + " bytes");
+            assertFalse(store.getTimeline(Integer.MAX_VALUE).isFree(0, 1));
+        }
+    }
+
+    @Test
+    void clearedWhenOpened() throws IOException {
+        Path path = directory.resolve("timelines.dat");
+        try (MappedTimelineStore store = new MappedTimelineStore(path, Constants.MINUTES_IN_WEEK)) {
+            store.getTimeline(1).occupy(1, 0, 60);
+        }
+        try (MappedTimelineStore store = new MappedTimelineStore(path, Constants.MINUTES_IN_WEEK)) {
+            assertEquals(0, store.size());
+            assertTrue(store.getTimeline(1).isFree(0, Constants.MINUTES_IN_WEEK));
+        }
+    }
+}
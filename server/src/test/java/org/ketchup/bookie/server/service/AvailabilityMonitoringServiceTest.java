@@ -0,0 +1,70 @@
+package org.ketchup.bookie.server.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ketchup.bookie.common.enums.FacilityType;
+import org.ketchup.bookie.common.pojo.Facility;
+import org.ketchup.bookie.server.config.Config;
+import org.ketchup.bookie.server.repository.BookingRepository;
+import org.ketchup.bookie.server.repository.FacilityRepository;
+import org.ketchup.bookie.server.repository.SubscriptionRepository;
+import org.ketchup.bookie.server.repository.timeline.FacilityTimelineType;
+import org.ketchup.bookie.server.util.CsvUtils;
+
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AvailabilityMonitoringServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private class ChangeLogConfig extends Config {
+        @Override
+        public String getFacilityChangelogPath() {
+            return directory.resolve("facilities.changelog").toString();
+        }
+    }
+
+    @Test
+    void dropFeedWithLastSubscription() throws Exception {
+        Path csvPath = directory.resolve("facilities.csv");
+        CsvUtils.writeFacilitiesToCsv(csvPath, List.of(
+                new Facility(1, "Room 1", FacilityType.MEETING_ROOM),
+                new Facility(2, "Room 2", FacilityType.MEETING_ROOM)
+        ));
+        Config config = new ChangeLogConfig();
+        BookingRepository bookingRepository = new BookingRepository(FacilityTimelineType.BITSET);
+        FacilityRepository facilityRepository = new FacilityRepository(bookingRepository, config, csvPath);
+        facilityRepository.afterPropertiesSet();
+        SubscriptionRepository subscriptionRepository = new SubscriptionRepository();
+        // The notifier thread is not started: expired subscriptions are swept by the test
+        AvailabilityMonitoringService service = new AvailabilityMonitoringService(config, facilityRepository,
+                bookingRepository, subscriptionRepository);
+
+        InetAddress address = InetAddress.getLoopbackAddress();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        service.addToMailingList(first, address, 5000, 1, 10);
+        service.addToMailingList(second, address, 5001, 1, 10);
+        service.addToMailingList(UUID.randomUUID(), address, 5002, 2, 10);
+        assertEquals(2, service.feedCount());
+
+        service.removeSubscription(first);
+        assertEquals(2, service.feedCount());
+        service.removeSubscription(second);
+        assertEquals(1, service.feedCount());
+
+        // Monitoring the facility again starts a new feed
+        UUID third = UUID.randomUUID();
+        assertNotNull(service.addToMailingList(third, address, 5000, 1, 10).get("availability"));
+        assertEquals(2, service.feedCount());
+        service.removeSubscription(third);
+        assertEquals(1, service.feedCount());
+        facilityRepository.destroy();
+    }
+}
@@ -0,0 +1,94 @@
+package org.ketchup.bookie.server.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ketchup.bookie.common.enums.FacilityType;
+import org.ketchup.bookie.common.pojo.Facility;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvUtilsTest {
+
+    @TempDir
+    Path directory;
+
+    private static List<String> splitRows(String content, int chunkBytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+        return CsvUtils.splitRows(buffer, chunkBytes).stream()
+                .map(chunk -> new String(buffer.array(), chunk[0], chunk[1] - chunk[0], StandardCharsets.UTF_8))
+                .toList();
+    }
+
+    @Test
+    void splitRowsOutsideQuotes() {
+        String content = "id,name,type\n1,\"Two-line\nroom\",0\n2,\"The \"\"big\"\"\nroom\",1\n3,Room,2\n";
+        // One row per chunk
+        assertEquals(List.of("id,name,type\n", "1,\"Two-line\nroom\",0\n", "2,\"The \"\"big\"\"\nroom\",1\n", "3,Room,2\n"),
+                splitRows(content, 1));
+        // The header is always a chunk of its own
+        assertEquals(List.of("id,name,type\n", content.substring(13)), splitRows(content, 1 << 20));
+    }
+
+    @Test
+    void splitRowsWithoutTrailingLineBreak() {
+        assertEquals(List.of("id,name,type\n", "1,Room,0\n", "2,\"Room\n2\",1"),
+                splitRows("id,name,type\n1,Room,0\n2,\"Room\n2\",1", 1));
+        assertEquals(List.of("id,name,type"), splitRows("id,name,type", 1));
+        assertEquals(List.of(), splitRows("", 1));
+    }
+
+    @Test
+    void splitCrlfRows() {
+        assertEquals(List.of("id,name,type\r\n", "1,\"Room\r\n1\",0\r\n", "2,Room,1\r\n"),
+                splitRows("id,name,type\r\n1,\"Room\r\n1\",0\r\n2,Room,1\r\n", 1));
+    }
+
+    @Test
+    void readCrlfCsvInFileOrder() throws Exception {
+        Path csvPath = directory.resolve("facilities.csv");
+        StringBuilder content = new StringBuilder("id,name,type\r\n");
+        List<Facility> facilities = new ArrayList<>();
+        // Descending IDs, so that the order of the file is not the order of the IDs
+        for (int id = 100_000; id > 0; id--) {
+            content.append(id).append(",\"Room\r\n").append(id).append("\",").append(id % 6).append("\r\n");
+            facilities.add(new Facility(id, "Room\r\n" + id, FacilityType.fromValue(id % 6)));
+        }
+        Files.writeString(csvPath, content, StandardCharsets.UTF_8);
+        assertTrue(Files.size(csvPath) > 2 << 20, "CSV must span several chunks");
+
+        assertEquals(facilities, CsvUtils.readFacilitiesFromCsv(csvPath));
+    }
+
+    @Test
+    void readLargeCsvInParallelChunks() throws Exception {
+        int facilityCount = 200_000;
+        List<Facility> facilities = new ArrayList<>(facilityCount);
+        for (int id = 1; id <= facilityCount; id++) {
+            // Names with commas, quotes and line breaks, some of which straddle chunk boundaries
+            String name = switch (id % 4) {
+                case 0 -> "Room, level " + id % 7;
+                case 1 -> "The \"big\" room " + id;
+                case 2 -> "Two-line\nroom " + id;
+                default -> "Room " + id;
+            };
+            facilities.add(new Facility(id, name, FacilityType.fromValue(id % 6)));
+        }
+        Path csvPath = directory.resolve("facilities.csv");
+        CsvUtils.writeFacilitiesToCsv(csvPath, facilities);
+        assertTrue(Files.size(csvPath) > 2 << 20, "CSV must span several chunks");
+
+        Queue<Facility> read = new ConcurrentLinkedQueue<>();
+        assertEquals(facilityCount, CsvUtils.readFacilitiesFromCsv(csvPath, read::add));
+        assertEquals(facilities, read.stream().sorted(Comparator.comparingInt(Facility::getId)).toList());
+    }
+}